@@ -1,4 +1,8 @@
 @echo off
 
-java -Xmx256M -cp meterman2.jar;lib\*;jars\* -splash:assets/meterman2/splash-screen.png ^
+rem Use the class-data sharing archive made by the "cds.archive" build target, if present.
+set CDS_OPTS=
+if exist meterman2.jsa set CDS_OPTS=-XX:SharedArchiveFile=meterman2.jsa -Xshare:auto
+
+java -Xmx256M %CDS_OPTS% -cp meterman2.jar;lib\*;jars\* -splash:assets/meterman2/splash-screen.png ^
     com.illcode.meterman2.Meterman2
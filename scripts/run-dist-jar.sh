@@ -1,4 +1,10 @@
 #!/bin/sh
 
-java -Xmx256M -cp "meterman2.jar:lib/*:jars/*" -splash:assets/meterman2/splash-screen.png \
+# Use the class-data sharing archive made by the "cds.archive" build target, if present.
+CDS_OPTS=""
+if [ -f meterman2.jsa ]; then
+    CDS_OPTS="-XX:SharedArchiveFile=meterman2.jsa -Xshare:auto"
+fi
+
+java -Xmx256M $CDS_OPTS -cp "meterman2.jar:lib/*:jars/*" -splash:assets/meterman2/splash-screen.png \
     com.illcode.meterman2.Meterman2
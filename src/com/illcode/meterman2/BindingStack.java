@@ -0,0 +1,206 @@
+package com.illcode.meterman2;
+
+/**
+ * A stack of temporary variable bindings ("frames"), shared by the script and template engines of a session.
+ * <p/>
+ * Pushing or popping a frame only writes a slot in the stack. The bindings are carried into an engine's
+ * context lazily, when the engine next runs a script or renders a template, so that binding, say, "entity"
+ * around a description that turns out to be plain text costs nothing in either engine. Only when an engine
+ * is already running (as when a script pushes a binding), or has been given a frame that is being popped,
+ * is the engine brought up to date at once.
+ * <p/>
+ * Each frame names the engines it applies to ({@link #SCRIPT}, {@link #TEMPLATE}, or {@link #ALL}). The
+ * stack grows as needed but never shrinks, so that once warmed up, pushing and popping allocate nothing.
+ */
+public final class BindingStack
+{
+    /** Target of a frame that applies to the script engine. */
+    public static final int SCRIPT = 1;
+
+    /** Target of a frame that applies to the template engine. */
+    public static final int TEMPLATE = 2;
+
+    /** Target of a frame that applies to both engines. */
+    public static final int ALL = SCRIPT | TEMPLATE;
+
+    private String[] names;
+    private Object[] values;
+    private int[] targets;
+    private int size;
+    private int version;  // incremented whenever the frames change
+
+    private Client[] clients;
+    private int numClients;
+
+    public BindingStack() {
+        names = new String[8];
+        values = new Object[8];
+        targets = new int[8];
+        clients = new Client[2];
+    }
+
+    /**
+     * Push a binding frame.
+     * @param name variable name
+     * @param value value; if null, the variable will be unbound while the frame is on the stack
+     * @param target the engines to which the frame applies
+     */
+    public void push(String name, Object value, int target) {
+        if (size == names.length) {
+            final int newLength = size * 2;
+            final String[] newNames = new String[newLength];
+            final Object[] newValues = new Object[newLength];
+            final int[] newTargets = new int[newLength];
+            System.arraycopy(names, 0, newNames, 0, size);
+            System.arraycopy(values, 0, newValues, 0, size);
+            System.arraycopy(targets, 0, newTargets, 0, size);
+            names = newNames;
+            values = newValues;
+            targets = newTargets;
+        }
+        names[size] = name;
+        values[size] = value;
+        targets[size] = target;
+        size++;
+        version++;
+        for (int i = 0; i < numClients; i++) {
+            final Client c = clients[i];
+            if ((c.target & target) != 0 && c.activeDepth > 0)
+                c.sync();
+        }
+    }
+
+    /**
+     * Pop the most recently pushed frame binding a given name for the given engines, restoring the
+     * binding in effect before it was pushed. If no such frame is on the stack, nothing happens.
+     * @param name variable name
+     * @param target the engines to which the frame applies, as passed to {@link #push}
+     */
+    public void pop(String name, int target) {
+        int idx = size - 1;
+        while (idx >= 0 && (targets[idx] != target || !names[idx].equals(name)))
+            idx--;
+        if (idx == -1)
+            return;
+        size--;
+        if (idx < size) {  // frames are normally popped in order, but don't insist on it
+            System.arraycopy(names, idx + 1, names, idx, size - idx);
+            System.arraycopy(values, idx + 1, values, idx, size - idx);
+            System.arraycopy(targets, idx + 1, targets, idx, size - idx);
+        }
+        names[size] = null;
+        values[size] = null;
+        version++;
+        for (int i = 0; i < numClients; i++) {
+            final Client c = clients[i];
+            if ((c.target & target) != 0 && (c.activeDepth > 0 || c.isApplied(name)))
+                c.sync();
+        }
+    }
+
+    private void addClient(Client c) {
+        if (numClients == clients.length) {
+            final Client[] newClients = new Client[numClients * 2];
+            System.arraycopy(clients, 0, newClients, 0, numClients);
+            clients = newClients;
+        }
+        clients[numClients++] = c;
+    }
+
+    /**
+     * The view of the stack from one engine. The engine calls {@link #enter()} before it runs any code that
+     * may read bindings, and {@link #exit()} afterwards.
+     */
+    abstract static class Client
+    {
+        private final BindingStack stack;
+        private final int target;
+
+        // Names we've bound from the stack, and the values they had before.
+        private String[] appliedNames;
+        private Object[] savedValues;
+        private int numApplied;
+
+        private int syncedVersion;
+        private int activeDepth;
+
+        /**
+         * Create a client and register it with a stack.
+         * @param stack binding stack
+         * @param target the target ({@link #SCRIPT} or {@link #TEMPLATE}) of the frames this client applies
+         */
+        Client(BindingStack stack, int target) {
+            this.stack = stack;
+            this.target = target;
+            appliedNames = new String[8];
+            savedValues = new Object[8];
+            syncedVersion = -1;
+            stack.addClient(this);
+        }
+
+        /** Return the current value of a variable in the engine, or null if it is unbound. */
+        abstract Object getBinding(String name);
+
+        /** Set the value of a variable in the engine; a null value unbinds it. */
+        abstract void setBinding(String name, Object value);
+
+        /** Bring the engine up to date with the stack, and note that it's running. */
+        final void enter() {
+            activeDepth++;
+            sync();
+        }
+
+        /** Note that the engine has finished running what it ran after the matching {@link #enter()}. */
+        final void exit() {
+            activeDepth--;
+        }
+
+        /** Forget what was bound from the stack, as after the engine has cleared all its bindings. */
+        final void reset() {
+            for (int i = 0; i < numApplied; i++) {
+                appliedNames[i] = null;
+                savedValues[i] = null;
+            }
+            numApplied = 0;
+            syncedVersion = -1;
+        }
+
+        final boolean isApplied(String name) {
+            for (int i = 0; i < numApplied; i++)
+                if (appliedNames[i].equals(name))
+                    return true;
+            return false;
+        }
+
+        final void sync() {
+            if (syncedVersion == stack.version)
+                return;
+            // Restore what we've bound, and then bind the topmost frame for each name anew; the stack is
+            // only ever a few frames deep, so this is cheaper than working out what changed.
+            for (int i = numApplied - 1; i >= 0; i--) {
+                setBinding(appliedNames[i], savedValues[i]);
+                appliedNames[i] = null;
+                savedValues[i] = null;
+            }
+            numApplied = 0;
+            for (int i = stack.size - 1; i >= 0; i--) {
+                final String name = stack.names[i];
+                if ((stack.targets[i] & target) == 0 || isApplied(name))
+                    continue;
+                if (numApplied == appliedNames.length) {
+                    final String[] newNames = new String[numApplied * 2];
+                    final Object[] newValues = new Object[numApplied * 2];
+                    System.arraycopy(appliedNames, 0, newNames, 0, numApplied);
+                    System.arraycopy(savedValues, 0, newValues, 0, numApplied);
+                    appliedNames = newNames;
+                    savedValues = newValues;
+                }
+                appliedNames[numApplied] = name;
+                savedValues[numApplied] = getBinding(name);
+                numApplied++;
+                setBinding(name, stack.values[i]);
+            }
+            syncedVersion = stack.version;
+        }
+    }
+}
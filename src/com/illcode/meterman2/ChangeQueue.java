@@ -0,0 +1,213 @@
+package com.illcode.meterman2;
+
+import com.illcode.meterman2.model.Entity;
+import com.illcode.meterman2.model.EntityContainer;
+import com.illcode.meterman2.model.Room;
+
+import java.util.*;
+
+/**
+ * Collects the changes made to entities and rooms over the course of a turn, so that the
+ * {@link GameManager} can bring the UI up to date at the end of the turn with the smallest set
+ * of updates.
+ * <p/>
+ * Changes are coalesced per object: the kinds of change are OR'ed together as flags, the numbers
+ * of changed attributes and exit positions are accumulated, and a series of moves
+ * A &rarr; B &rarr; C within a turn is recorded as the single move A &rarr; C.
+ */
+final class ChangeQueue
+{
+    /** The name of the object has changed. */
+    static final int NAME = 1;
+    /** One or more attributes have changed; see {@link Change#attributes}. */
+    static final int ATTRIBUTES = 1 << 1;
+    /** The entity has moved; see {@link EntityChange#fromContainer}. */
+    static final int MOVED = 1 << 2;
+    /** One or more exit labels of the room have changed; see {@link RoomChange#exitMask}. */
+    static final int EXITS = 1 << 3;
+    /** Some unspecified part of the object's state has changed, and everything should be refreshed. */
+    static final int STATE = 1 << 4;
+
+    /** The changes that have been made to a single object during a turn. */
+    static class Change
+    {
+        /** Bitwise OR of the change flags. */
+        int flags;
+        /** The attribute numbers that have changed, if the {@link #ATTRIBUTES} flag is set. */
+        final BitSet attributes = new BitSet();
+
+        boolean has(int flag) {
+            return (flags & flag) != 0;
+        }
+
+        void clear() {
+            flags = 0;
+            attributes.clear();
+        }
+    }
+
+    static final class EntityChange extends Change
+    {
+        Entity entity;
+        /** The container the entity was in before its first move this turn, if {@link #MOVED} is set. */
+        EntityContainer fromContainer;
+
+        void clear() {
+            super.clear();
+            entity = null;
+            fromContainer = null;
+        }
+    }
+
+    static final class RoomChange extends Change
+    {
+        Room room;
+        /** Bit <em>n</em> is set if the label of exit position <em>n</em> has changed. */
+        int exitMask;
+
+        void clear() {
+            super.clear();
+            room = null;
+            exitMask = 0;
+        }
+    }
+
+    private Map<Entity,EntityChange> entityChanges;
+    private Map<Room,RoomChange> roomChanges;
+
+    // Change records are recycled after they're processed, to avoid allocation each turn.
+    private Deque<EntityChange> entityChangePool;
+    private Deque<RoomChange> roomChangePool;
+
+    ChangeQueue() {
+        entityChanges = new LinkedHashMap<>();
+        roomChanges = new LinkedHashMap<>();
+        entityChangePool = new ArrayDeque<>();
+        roomChangePool = new ArrayDeque<>();
+    }
+
+    /** Record that some part of an entity has changed.
+     * @param e entity that changed
+     * @param flags one or more of {@link #NAME} and {@link #STATE} */
+    void entityChanged(Entity e, int flags) {
+        entityChange(e).flags |= flags;
+    }
+
+    /** Record that an attribute of an entity has changed. */
+    void entityAttributeChanged(Entity e, int attrNum) {
+        final EntityChange c = entityChange(e);
+        c.flags |= ATTRIBUTES;
+        c.attributes.set(attrNum);
+    }
+
+    /**
+     * Record that an entity has moved. Only the first move in a turn records its source container,
+     * so that the record shows where the entity was when the turn began.
+     * @param e entity that moved
+     * @param fromContainer the container the entity was in before this move
+     */
+    void entityMoved(Entity e, EntityContainer fromContainer) {
+        final EntityChange c = entityChange(e);
+        if (!c.has(MOVED)) {
+            c.flags |= MOVED;
+            c.fromContainer = fromContainer;
+        }
+    }
+
+    /** Record that some part of a room has changed.
+     * @param r room that changed
+     * @param flags one or more of {@link #NAME} and {@link #STATE} */
+    void roomChanged(Room r, int flags) {
+        roomChange(r).flags |= flags;
+    }
+
+    /** Record that an attribute of a room has changed. */
+    void roomAttributeChanged(Room r, int attrNum) {
+        final RoomChange c = roomChange(r);
+        c.flags |= ATTRIBUTES;
+        c.attributes.set(attrNum);
+    }
+
+    /** Record that the label for a given exit position of a room has changed. */
+    void roomExitChanged(Room r, int position) {
+        final RoomChange c = roomChange(r);
+        c.flags |= EXITS;
+        c.exitMask |= 1 << position;
+    }
+
+    boolean hasEntityChanges() {
+        return !entityChanges.isEmpty();
+    }
+
+    boolean hasRoomChanges() {
+        return !roomChanges.isEmpty();
+    }
+
+    /**
+     * Move the queued entity changes into a list, leaving the queue empty so that changes made while
+     * processing the list are collected anew. Pass the list to {@link #recycleEntityChanges(List)}
+     * when finished.
+     */
+    void drainEntityChanges(List<EntityChange> list) {
+        list.addAll(entityChanges.values());
+        entityChanges.clear();
+    }
+
+    /** Return processed entity change records to the pool, and clear the list. */
+    void recycleEntityChanges(List<EntityChange> list) {
+        for (EntityChange c : list) {
+            c.clear();
+            entityChangePool.push(c);
+        }
+        list.clear();
+    }
+
+    /** The room counterpart of {@link #drainEntityChanges(List)}. */
+    void drainRoomChanges(List<RoomChange> list) {
+        list.addAll(roomChanges.values());
+        roomChanges.clear();
+    }
+
+    /** The room counterpart of {@link #recycleEntityChanges(List)}. */
+    void recycleRoomChanges(List<RoomChange> list) {
+        for (RoomChange c : list) {
+            c.clear();
+            roomChangePool.push(c);
+        }
+        list.clear();
+    }
+
+    /** Discard all queued changes. */
+    void clear() {
+        for (EntityChange c : entityChanges.values()) {
+            c.clear();
+            entityChangePool.push(c);
+        }
+        entityChanges.clear();
+        for (RoomChange c : roomChanges.values()) {
+            c.clear();
+            roomChangePool.push(c);
+        }
+        roomChanges.clear();
+    }
+
+    private EntityChange entityChange(Entity e) {
+        EntityChange c = entityChanges.get(e);
+        if (c == null) {
+            c = entityChangePool.isEmpty() ? new EntityChange() : entityChangePool.pop();
+            c.entity = e;
+            entityChanges.put(e, c);
+        }
+        return c;
+    }
+
+    private RoomChange roomChange(Room r) {
+        RoomChange c = roomChanges.get(r);
+        if (c == null) {
+            c = roomChangePool.isEmpty() ? new RoomChange() : roomChangePool.pop();
+            c.room = r;
+            roomChanges.put(r, c);
+        }
+        return c;
+    }
+}
@@ -37,20 +37,23 @@ public final class GameManager
     private int numTurns;
 
     private EventHandlerManager handlerManager;
+    private TurnScheduler turnScheduler;
     private GameObjectProperties objectProps;
 
     private StringBuilder outputBuilder;  // To be used in composing text before sending it off to the UI.
     private StringBuilder transcript;  // the game transcript
 
     private StringBuilder commonTextBuilder, paragraphBuilder; // See queueLookText()
-    private List<Action> actions; // Used for composing UI actions - reuse same list to avoid allocation
+    private Map<Entity,CachedActions> actionsCache;  // see getEntityActions()
+    private int actionsStamp;  // the stamp given to the most recently computed action list
+    private int displayedActionsStamp;  // the stamp of the action list shown in the UI, or 0 if none
+    private int displayedActionsTextVersion;  // MMActions.getTextVersion() when the action list was last refreshed
     private boolean alwaysLook; // see setAlwaysLook()
 
     // See processChangedObjects()
-    private Set<Entity> changedEntities;
-    private List<Entity> entityProcessingList;
-    private Set<Room> changedRooms;
-    private List<Room> roomProcessingList;
+    private ChangeQueue changeQueue;
+    private List<ChangeQueue.EntityChange> entityProcessingList;
+    private List<ChangeQueue.RoomChange> roomProcessingList;
 
     // To update our UI at the transition of turns
     private boolean roomRefreshNeeded;
@@ -61,11 +64,13 @@ public final class GameManager
     private boolean endGameSignalled;
 
     private List<Entity> entityList;  // temporary list to avoid allocation; always clear() after using
+    private List<String> listIds, listNames;  // used in composing the UI entity lists; always clear() after using
 
     private StatusBarProvider statusBarProvider;
 
     GameManager() {
         handlerManager = new EventHandlerManager();
+        turnScheduler = new TurnScheduler();
         objectProps = new GameObjectProperties();
         putBinding("props", objectProps);
 
@@ -74,14 +79,15 @@ public final class GameManager
         commonTextBuilder = new StringBuilder(1024);
         paragraphBuilder = new StringBuilder(1024);
 
-        actions = new ArrayList<>(16);
+        actionsCache = new HashMap<>();
 
-        changedEntities = new HashSet<>();
+        changeQueue = new ChangeQueue();
         entityProcessingList = new ArrayList<>();
-        changedRooms = new HashSet<>();
         roomProcessingList = new ArrayList<>();
 
         entityList = new ArrayList<>();
+        listIds = new ArrayList<>(16);
+        listNames = new ArrayList<>(16);
 
         outputSeparator = bundles.getPassage("output-separator").getText() + "\n";
         alwaysLook = Utils.booleanPref("always-look", true);
@@ -93,16 +99,19 @@ public final class GameManager
 
         player = null;
         handlerManager = null;
+        turnScheduler = null;
         objectProps = null;
         outputBuilder = null;
         transcript = null;
         commonTextBuilder = null;
         paragraphBuilder = null;
-        actions = null;
-        changedEntities = null;
-        changedRooms = null;
+        actionsCache = null;
+        changeQueue = null;
+        entityProcessingList = null;
         roomProcessingList = null;
         entityList = null;
+        listIds = null;
+        listNames = null;
     }
 
     /**
@@ -118,6 +127,9 @@ public final class GameManager
         ui.setFrameImageVisible(Meterman2.gamesList.getGameFrameImageVisible(gameName));
         Meterman2.assets.setGameAssetsPath(Meterman2.gamesList.getGameAssetsPath(gameName));
         final String packageName = Meterman2.gamesList.getGamePackageName(gameName);
+        Meterman2.script.selectEngine(Meterman2.gamesList.getGameScriptEngine(gameName),
+                                      Meterman2.gamesList.getGameClassLoader());
+        Meterman2.script.setClassLoader(Meterman2.gamesList.getGameClassLoader());
         if (!packageName.isEmpty())
             Meterman2.script.importPackage(packageName);
         ui.clearText();
@@ -150,6 +162,7 @@ public final class GameManager
             r.gameStarting();
         handlerManager.fireGameStarting(true);
         game.start(true);
+        updateAllLighting();
         currentRoom.entered(null);
         lookCommand();
         setAttr(currentRoom, VISITED);
@@ -163,6 +176,9 @@ public final class GameManager
         ui.setFrameImageVisible(Meterman2.gamesList.getGameFrameImageVisible(gameName));
         Meterman2.assets.setGameAssetsPath(Meterman2.gamesList.getGameAssetsPath(gameName));
         final String packageName = Meterman2.gamesList.getGamePackageName(gameName);
+        Meterman2.script.selectEngine(Meterman2.gamesList.getGameScriptEngine(gameName),
+                                      Meterman2.gamesList.getGameClassLoader());
+        Meterman2.script.setClassLoader(Meterman2.gamesList.getGameClassLoader());
         if (!packageName.isEmpty())
             Meterman2.script.importPackage(packageName);
         game.init();
@@ -177,9 +193,18 @@ public final class GameManager
 
         restoreGameObjectProperties(entityIdMap, roomIdMap, player, state);
         restoreHandlers(state, game);
+        final Set<GameEventHandler> restoredHandlers = new HashSet<>();
         for (List<? extends GameEventHandler> handlerList : handlerManager.getEventHandlerMap().values())
             for (GameEventHandler h : handlerList)
-                h.restoreHandlerState(state.handlerStateMap.get(h.getHandlerId()));
+                if (restoredHandlers.add(h))
+                    h.restoreHandlerState(state.handlerStateMap.get(h.getHandlerId()));
+        for (ScopedHandlerList<? extends GameEventHandler> scopedList : handlerManager.getScopedHandlerMap().values())
+            for (GameEventHandler h : scopedList.getScopeMap().keySet())
+                if (restoredHandlers.add(h))
+                    h.restoreHandlerState(state.handlerStateMap.get(h.getHandlerId()));
+        for (TurnScheduler.ScheduledTurn st : turnScheduler.getScheduledTurns())
+            if (restoredHandlers.add(st.getListener()))
+                st.getListener().restoreHandlerState(state.handlerStateMap.get(st.getListener().getHandlerId()));
         currentRoom = roomIdMap.get(state.currentRoomId);
         numTurns = state.numTurns;
         selectedEntity = null;
@@ -200,20 +225,23 @@ public final class GameManager
             r.gameStarting();
         handlerManager.fireGameStarting(false);
         game.start(false);
+        updateAllLighting();
         outputText();  // since no nextTurn() is called, we update the text area...
         refreshUI();   // ...and UI ourselves.
     }
 
     private void closeGame() {
         handlerManager.clearListenerLists();
+        turnScheduler.clear();
         objectProps.clear();
         player = null;
         currentRoom = null;
         gameStateMap = null;
         entityIdMap = null;
         roomIdMap = null;
-        changedEntities.clear();
-        changedRooms.clear();
+        changeQueue.clear();
+        actionsCache.clear();
+        displayedActionsStamp = 0;
         roomRefreshNeeded = false;
         entityRefreshNeeded = false;
         inventoryRefreshNeeded = false;
@@ -313,6 +341,10 @@ public final class GameManager
         entityList.clear();
         currentRoom = toRoom;  // we've moved!
         putBinding("currentRoom", currentRoom);
+        // The player's inventory lights whichever room he's in.
+        final DarkRoom litBefore = fromRoom instanceof DarkRoom ? (DarkRoom) fromRoom : null;
+        for (Entity e : player.getEntities())
+            moveLighting(e, litBefore);
         toRoom.entered(fromRoom);
         GameUtils.gatherEntitiesRecursive(toRoom, entityList);
         for (Entity e : entityList)
@@ -337,12 +369,12 @@ public final class GameManager
             return;
         final boolean inInventoryBefore = GameUtils.isParentContainer(player, fromContainer);
         final boolean inInventoryAfter = GameUtils.isParentContainer(player, toContainer);
-        if (inInventoryBefore) {
-            if (!inInventoryAfter) {
+        if (inInventoryBefore && !inInventoryAfter) {
+            if (isEquipped(e)) {
                 player.unequipEntity(e);
-                e.dropped();
+                queueInventoryUIRefresh();
             }
-            queueInventoryUIRefresh();
+            e.dropped();
         }
         final boolean inScopeBefore = GameUtils.getRoom(fromContainer) == currentRoom;
         final boolean inScopeAfter = GameUtils.getRoom(toContainer) == currentRoom;
@@ -354,9 +386,15 @@ public final class GameManager
                 _e.exitingScope();
             entityList.clear();
         }
+        final DarkRoom litBefore = roomLitFrom(fromContainer);
+        final DarkRoom contentsLitBefore = e instanceof EntityContainer ? roomLitFrom((EntityContainer) e) : null;
         // Now move the entity.
         GameUtils.putInContainer(e, toContainer);
         // done moving!
+        moveLighting(e, litBefore);
+        if (e instanceof EntityContainer)
+            for (Entity ce : ((EntityContainer) e).getEntities())
+                moveLighting(ce, contentsLitBefore);
         if (!inScopeBefore && inScopeAfter) {
             entityList.add(e);
             if (e instanceof EntityContainer)
@@ -365,15 +403,11 @@ public final class GameManager
                 _e.enterScope();
             entityList.clear();
         }
-        if (fromContainer == currentRoom || toContainer == currentRoom)
-            queueRoomUIRefresh();
+        changeQueue.entityMoved(e, fromContainer);  // the lists are updated at the end of the turn
         if (e == selectedEntity)
             entitySelected(null);
-        if (inInventoryAfter) {
-            if (!inInventoryBefore)
-                e.taken();
-            queueInventoryUIRefresh();
-        }
+        if (inInventoryAfter && !inInventoryBefore)
+            e.taken();
     }
 
     /** Returns true if the given entity is in the player inventory. */
@@ -418,16 +452,64 @@ public final class GameManager
 
     private void refreshEntityUI() {
         if (selectedEntity != null) {
-            actions.clear();
-            actions.addAll(selectedEntity.getActions());
-            handlerManager.fireProcessEntityActions(selectedEntity, actions);
-            ui.clearActions();
-            for (Action a : actions)
-                ui.addAction(a);
+            final CachedActions ca = getEntityActions(selectedEntity);
+            if (ca.stamp != displayedActionsStamp) {  // otherwise the UI is already showing this list
+                ui.setActions(ca.actions);
+                displayedActionsStamp = ca.stamp;
+            }
         } else {
             ui.clearActions();
             ui.setEntityImage(UIConstants.NO_IMAGE);
+            displayedActionsStamp = 0;
+        }
+    }
+
+    /* Return the cached action list of an entity, as processed by the EntityActionsProcessors, computing
+       it anew only if something it depends on has changed: the entity's attributes, container, room, or
+       equipped status, its state as reported through entityChanged(), the registered processors, or the text
+       of any action (see MMActions.getTextVersion()). Unless every processor is a StableEntityActionsProcessor,
+       a list is also recomputed each turn. */
+    private CachedActions getEntityActions(Entity e) {
+        CachedActions ca = actionsCache.get(e);
+        if (ca == null) {
+            ca = new CachedActions();
+            actionsCache.put(e, ca);
+        } else if (ca.valid && ca.processorsVersion == handlerManager.getEntityActionsProcessorsVersion()
+                && ca.textVersion == MMActions.getTextVersion()
+                && (ca.turn == numTurns || handlerManager.entityActionsProcessorsStable())
+                && ca.container == e.getContainer() && ca.room == GameUtils.getRoom(e)
+                && ca.equipped == isEquipped(e) && ca.attributes.equals(e.getAttributes().asBitSet())) {
+            return ca;
         }
+        ca.actions.clear();
+        ca.actions.addAll(e.getActions());
+        handlerManager.fireProcessEntityActions(e, ca.actions);
+        ca.attributes.clear();
+        ca.attributes.or(e.getAttributes().asBitSet());
+        ca.container = e.getContainer();
+        ca.room = GameUtils.getRoom(e);
+        ca.equipped = isEquipped(e);
+        ca.turn = numTurns;
+        ca.processorsVersion = handlerManager.getEntityActionsProcessorsVersion();
+        ca.textVersion = MMActions.getTextVersion();
+        ca.stamp = ++actionsStamp;
+        ca.valid = true;
+        return ca;
+    }
+
+    // An entity's action list, and the state from which it was computed.
+    private static final class CachedActions
+    {
+        final List<Action> actions = new ArrayList<>(16);
+        final BitSet attributes = new BitSet();
+        EntityContainer container;
+        Room room;
+        boolean equipped;
+        int turn;
+        int processorsVersion;
+        int textVersion;
+        int stamp;
+        boolean valid;  // cleared when the entity reports a change
     }
 
     // Indicate the room UI should be refreshed at the end of turn.
@@ -440,10 +522,15 @@ public final class GameManager
         for (int pos = 0; pos < UIConstants.NUM_EXIT_BUTTONS; pos++)
             ui.setExitLabel(pos, currentRoom.getExitLabel(pos));
         Entity savedSE = selectedEntity;
-        ui.clearRoomEntities();
-        for (Entity e : GameUtils.getRoomEntities(currentRoom))
-            if (!e.getAttributes().get(SystemAttributes.CONCEALED))
-                ui.addRoomEntity(e.getId(), e.getName());
+        for (Entity e : GameUtils.getRoomEntities(currentRoom)) {
+            if (!e.getAttributes().get(SystemAttributes.CONCEALED)) {
+                listIds.add(e.getId());
+                listNames.add(e.getName());
+            }
+        }
+        ui.setRoomEntities(listIds, listNames);  // only the rows that differ are touched
+        listIds.clear();
+        listNames.clear();
         if (savedSE != null)
             ui.selectEntity(savedSE.getId());
     }
@@ -457,16 +544,21 @@ public final class GameManager
         Entity savedSE = selectedEntity;
         List<Entity> inventory = player.getEntities();
         Collection<Entity> equippedItems = player.getEquippedEntities();
-        ui.clearInventoryEntities();
-        // We make two passes through the player inventory, first adding equipped items, and then the rest.
+        // Equipped items are listed first, and then the rest.
+        int numEquipped = 0;
         for (Entity item : inventory) {
-            if (equippedItems.contains(item))
-                ui.addInventoryEntity(item.getId(), item.getName() + " (e)");
-        }
-        for (Entity item : inventory) {
-            if (!equippedItems.contains(item))
-                ui.addInventoryEntity(item.getId(), item.getName());
+            if (equippedItems.contains(item)) {
+                listIds.add(numEquipped, item.getId());
+                listNames.add(numEquipped, item.getName() + " (e)");
+                numEquipped++;
+            } else {
+                listIds.add(item.getId());
+                listNames.add(item.getName());
+            }
         }
+        ui.setInventoryEntities(listIds, listNames);
+        listIds.clear();
+        listNames.clear();
         if (savedSE != null)
             ui.selectEntity(savedSE.getId());
     }
@@ -522,43 +614,201 @@ public final class GameManager
      * Called to indicate that the given entity's state has changed in such
      * a way that the UI may need to be refreshed. Any such UI updates will
      * be performed not at the time of the method call, but at the end of the turn.
+     * <p/>
+     * If it is known exactly what has changed, prefer {@link #entityNameChanged(Entity)} or
+     * {@link #entityAttributeChanged(Entity, int)}, which allow a smaller UI update.
      * @param e entity that has changed
      */
     public void entityChanged(Entity e) {
-        changedEntities.add(e);
+        changeQueue.entityChanged(e, ChangeQueue.NAME | ChangeQueue.STATE);
+        // We don't know what changed, so it may have been lit or doused, or locked or unlocked.
+        updateLighting(e);
+        if (e instanceof EntityContainer)
+            updateContentsLighting((EntityContainer) e);
+    }
+
+    /**
+     * Called to indicate that the name of an entity has changed. The entity lists will
+     * be updated at the end of the turn.
+     * @param e entity whose name has changed
+     */
+    public void entityNameChanged(Entity e) {
+        changeQueue.entityChanged(e, ChangeQueue.NAME);
     }
 
-    private void entityChangedImpl(Entity e) {
+    /**
+     * Called to indicate that an attribute of an entity has been set or cleared. Any UI updates
+     * will be performed at the end of the turn.
+     * @param e entity whose attribute has changed
+     * @param attrNum attribute number
+     */
+    public void entityAttributeChanged(Entity e, int attrNum) {
+        changeQueue.entityAttributeChanged(e, attrNum);
+        if (attrNum == SystemAttributes.LIGHTSOURCE)
+            updateLighting(e);
+        else if (attrNum == SystemAttributes.LOCKED && e instanceof EntityContainer)
+            updateContentsLighting((EntityContainer) e);  // locking a container hides any light within
+    }
+
+    /* The dark room, if any, lit by light sources directly in a given container. That's the room itself, the room
+       holding an entity container, or, for the player's inventory, the current room. Light sources more deeply
+       nested don't light anything. */
+    private DarkRoom roomLitFrom(EntityContainer c) {
+        Room r = null;
+        if (c == player)
+            r = currentRoom;
+        else if (c instanceof Room)
+            r = (Room) c;
+        else if (c instanceof Entity && ((Entity) c).getContainer() instanceof Room)
+            r = (Room) ((Entity) c).getContainer();
+        return r instanceof DarkRoom ? (DarkRoom) r : null;
+    }
+
+    // Returns true if an entity lights the room given by roomLitFrom(e.getContainer()).
+    private static boolean givesLight(Entity e) {
+        if (!hasAttr(e, SystemAttributes.LIGHTSOURCE))
+            return false;
+        final EntityContainer c = e.getContainer();
+        return !(c instanceof Entity && hasAttr((Entity) c, SystemAttributes.LOCKED));
+    }
+
+    // Have the dark room an entity is placed to light count it, or not, among its light sources.
+    private void updateLighting(Entity e) {
+        final DarkRoom r = roomLitFrom(e.getContainer());
+        if (r != null)
+            r.lightSourceChanged(e, givesLight(e));
+    }
+
+    private void updateContentsLighting(EntityContainer c) {
+        for (Entity ce : c.getEntities())
+            updateLighting(ce);
+    }
+
+    // Update the lighting after an entity has moved, given the dark room it was placed to light beforehand.
+    private void moveLighting(Entity e, DarkRoom litBefore) {
+        final DarkRoom r = roomLitFrom(e.getContainer());
+        if (litBefore != null && litBefore != r)
+            litBefore.lightSourceChanged(e, false);
+        if (r != null)
+            r.lightSourceChanged(e, givesLight(e));
+    }
+
+    // Bring the darkness of every dark room in line with its light sources, as when a game starts.
+    private void updateAllLighting() {
+        for (Room r : roomIdMap.values())
+            if (r instanceof DarkRoom)
+                ((DarkRoom) r).updateLighting();
+    }
+
+    private void entityChangedImpl(ChangeQueue.EntityChange c) {
+        final Entity e = c.entity;
         if (e == null)
             return;
-        if (e.getContainer() == currentRoom) {
-            ui.updateRoomEntity(e.getId(), e.getName());
-        } else if (isInInventory(e)) {
-            String listname;
-            if (isEquipped(e))
-                listname = e.getName() + " (e)";
-            else
-                listname = e.getName();
-            ui.updateInventoryEntity(e.getId(), listname);
+        if (c.has(ChangeQueue.MOVED) && c.fromContainer != e.getContainer())
+            entityMovedImpl(e, c.fromContainer, e.getContainer());
+        if (c.has(ChangeQueue.NAME)) {
+            if (e.getContainer() == currentRoom) {
+                ui.updateRoomEntity(e.getId(), e.getName());
+            } else if (isInInventory(e)) {
+                String listname;
+                if (isEquipped(e))
+                    listname = e.getName() + " (e)";
+                else
+                    listname = e.getName();
+                ui.updateInventoryEntity(e.getId(), listname);
+            }
+        }
+        // Concealing or revealing an entity changes which entities the room list shows.
+        if (c.has(ChangeQueue.ATTRIBUTES) && c.attributes.get(SystemAttributes.CONCEALED)
+                && e.getContainer() == currentRoom)
+            queueRoomUIRefresh();
+        // The actions available for an entity depend on its state, but not its name.
+        if (c.has(ChangeQueue.ATTRIBUTES) || c.has(ChangeQueue.STATE)) {
+            final CachedActions ca = actionsCache.get(e);
+            if (ca != null)
+                ca.valid = false;
+            if (e == selectedEntity)
+                queueEntityUIRefresh();
+        }
+    }
+
+    /* Bring the room and inventory lists in line with a move made during the turn. Only entities directly
+       in the room or inventory are listed, so moves in and out of nested containers affect nothing. If a
+       full refresh of a list is already queued, that refresh will pick up the move. */
+    private void entityMovedImpl(Entity e, EntityContainer from, EntityContainer to) {
+        if (!roomRefreshNeeded && (from == currentRoom || to == currentRoom)) {
+            if (hasAttr(currentRoom, SystemAttributes.DARK))
+                queueRoomUIRefresh();  // a dark room shows its own list of entities
+            else if (from == currentRoom)
+                ui.removeRoomEntity(e.getId());
+            else if (!hasAttr(e, SystemAttributes.CONCEALED))
+                ui.addRoomEntity(e.getId(), e.getName());
+        }
+        if (!inventoryRefreshNeeded) {
+            if (from == player)
+                ui.removeInventoryEntity(e.getId());
+            else if (to == player)
+                ui.addInventoryEntity(e.getId(), e.getName());  // an item just taken is never equipped
         }
-        if (e == selectedEntity)
-            queueEntityUIRefresh();
     }
 
     /**
      * Called when a room's internal state changes in such a way that the UI
      * may have to be updated to reflect the change. Any such UI updates will
      * be performed not at the time of the method call, but at the end of the turn.
+     * <p/>
+     * If it is known exactly what has changed, prefer {@link #roomNameChanged(Room)},
+     * {@link #roomExitChanged(Room, int)}, or {@link #roomAttributeChanged(Room, int)}.
      * @param r room that has changed
      */
     public void roomChanged(Room r) {
-        changedRooms.add(r);
+        changeQueue.roomChanged(r, ChangeQueue.NAME | ChangeQueue.STATE);
     }
 
-    private void roomChangedImpl(Room r) {
+    /**
+     * Called to indicate that the name or exit name of a room has changed.
+     * @param r room whose name has changed
+     */
+    public void roomNameChanged(Room r) {
+        changeQueue.roomChanged(r, ChangeQueue.NAME);
+    }
+
+    /**
+     * Called to indicate that the exit or exit label for a given position of a room has changed.
+     * @param r room whose exit has changed
+     * @param position one of the button constants in {@link UIConstants}
+     */
+    public void roomExitChanged(Room r, int position) {
+        changeQueue.roomExitChanged(r, position);
+    }
+
+    /**
+     * Called to indicate that an attribute of a room has been set or cleared.
+     * @param r room whose attribute has changed
+     * @param attrNum attribute number
+     */
+    public void roomAttributeChanged(Room r, int attrNum) {
+        changeQueue.roomAttributeChanged(r, attrNum);
+    }
+
+    private void roomChangedImpl(ChangeQueue.RoomChange c) {
+        final Room r = c.room;
         if (r == currentRoom) {
-            queueRoomUIRefresh();
-        } else {
+            // Darkness changes the room name and the entities shown, so we refresh everything.
+            if (c.has(ChangeQueue.STATE) ||
+                    (c.has(ChangeQueue.ATTRIBUTES) && c.attributes.get(SystemAttributes.DARK))) {
+                queueRoomUIRefresh();
+                return;
+            }
+            if (roomRefreshNeeded)
+                return;
+            if (c.has(ChangeQueue.NAME))
+                ui.setRoomName(GameUtils.getRoomName(r));
+            if (c.has(ChangeQueue.EXITS))
+                for (int pos = 0; pos < UIConstants.NUM_EXIT_BUTTONS; pos++)
+                    if ((c.exitMask & (1 << pos)) != 0)
+                        ui.setExitLabel(pos, r.getExitLabel(pos));
+        } else if (c.has(ChangeQueue.NAME)) {
             // If the changed room is adjacent to the current room, it's possible that
             // the exit label it supplied will have changed as well.
             for (int pos = 0; pos < UIConstants.NUM_EXIT_BUTTONS; pos++)
@@ -567,24 +817,21 @@ public final class GameManager
         }
     }
 
-    /* Go through our changed object queues and refresh the UI as necessary. We make copies
-       of the changed-object sets before iterating over them to avoid potentially infinite
-       loops where a UI refresh triggers some cycle of adding the same objects to the sets
-       over and over. */
+    /* Go through our change queue and refresh the UI as necessary. We drain the queue into a list
+       before processing it, to avoid potentially infinite loops where a UI refresh triggers some
+       cycle of queueing changes to the same objects over and over. */
     private void processChangedObjects() {
-        if (!changedEntities.isEmpty()) {
-            entityProcessingList.addAll(changedEntities);
-            changedEntities.clear();
-            for (Entity e : entityProcessingList)
-                entityChangedImpl(e);
-            entityProcessingList.clear();
+        if (changeQueue.hasEntityChanges()) {
+            changeQueue.drainEntityChanges(entityProcessingList);
+            for (ChangeQueue.EntityChange c : entityProcessingList)
+                entityChangedImpl(c);
+            changeQueue.recycleEntityChanges(entityProcessingList);
         }
-        if (!changedRooms.isEmpty()) {
-            roomProcessingList.addAll(changedRooms);
-            changedRooms.clear();
-            for (Room r : roomProcessingList)
-                roomChangedImpl(r);
-            roomProcessingList.clear();
+        if (changeQueue.hasRoomChanges()) {
+            changeQueue.drainRoomChanges(roomProcessingList);
+            for (ChangeQueue.RoomChange c : roomProcessingList)
+                roomChangedImpl(c);
+            changeQueue.recycleRoomChanges(roomProcessingList);
         }
     }
 
@@ -605,9 +852,10 @@ public final class GameManager
             refreshRoomUI();
             roomRefreshNeeded = false;
         }
-        if (entityRefreshNeeded) {
+        if (entityRefreshNeeded || displayedActionsTextVersion != MMActions.getTextVersion()) {
             refreshEntityUI();
             entityRefreshNeeded = false;
+            displayedActionsTextVersion = MMActions.getTextVersion();
         }
         if (inventoryRefreshNeeded) {
             refreshInventoryUI();
@@ -622,7 +870,8 @@ public final class GameManager
     /** Called as one turn is transitioning to the next. */
     void nextTurn() {
         if (!endGameSignalled) {
-            handlerManager.fireTurn();
+            handlerManager.fireTurn(currentRoom);
+            turnScheduler.fireDue(numTurns);
             currentRoom.eachTurn();
             if (lookNeeded) {  // set when we're moving rooms
                 lookNeeded = false;
@@ -656,8 +905,22 @@ public final class GameManager
         nextTurn();
     }
 
-    /** Called by when the user clicks an action button (or selects an action
-     *  from the combo box when there are many actions) */
+    /**
+     * Called by when the user clicks an action button (or selects an action from the combo box when there are
+     * many actions) for the entity then selected. Since the UI may post several actions before the first is
+     * processed, as with a double-click, the action is dropped if that entity is no longer selected or no longer
+     * offers the action.
+     * @param entityId ID of the entity selected when the action was chosen
+     * @param action action
+     */
+    public void entityActionSelected(String entityId, Action action) {
+        if (selectedEntity == null || !selectedEntity.getId().equals(entityId) ||
+                !getEntityActions(selectedEntity).actions.contains(action))
+            return;
+        entityActionSelected(action);
+    }
+
+    /** Perform an action on the selected entity, as if the user had chosen it. */
     public void entityActionSelected(Action action) {
         boolean actionHandled = false;
         actionChain:
@@ -776,6 +1039,8 @@ public final class GameManager
         ui.showWaitDialog("Loading game...");
         GameState state;
         try {
+            // The state may hold instances of classes from a jar installed since startup.
+            Meterman2.persistence.setClassLoader(Meterman2.gamesList.getGameClassLoader());
             state = Meterman2.persistence.loadGameState(in);
         } catch (Exception ex) {
             ui.hideWaitDialog();
@@ -896,6 +1161,29 @@ public final class GameManager
             addOutputTextProcessor((OutputTextProcessor) g.getEventHandler(id));
         for (String id : state.gameHandlers.get("lookListeners"))
             addLookListener((LookListener) g.getEventHandler(id));
+        if (state.scopedHandlers != null) {
+            for (GameState.ScopedHandlerState sh : state.scopedHandlers) {
+                final GameEventHandler h = g.getEventHandler(sh.handlerId);
+                final HandlerScope scope = HandlerScope.of(HandlerScope.Type.valueOf(sh.scopeType), sh.scopeIds);
+                switch (sh.listName) {
+                case "playerMovementListeners":
+                    addPlayerMovementListener((PlayerMovementListener) h, scope);
+                    break;
+                case "turnListeners":
+                    addTurnListener((TurnListener) h, scope);
+                    break;
+                case "entityActionsProcessors":
+                    addEntityActionsProcessor((EntityActionsProcessor) h, scope);
+                    break;
+                case "lookListeners":
+                    addLookListener((LookListener) h, scope);
+                    break;
+                }
+            }
+        }
+        if (state.scheduledTurns != null)
+            for (GameState.ScheduledTurnState st : state.scheduledTurns)
+                turnScheduler.schedule((TurnListener) g.getEventHandler(st.handlerId), st.turn, st.period);
     }
 
     /** Called by the UI when it's time to save a game. */
@@ -963,6 +1251,42 @@ public final class GameManager
             }
             state.gameHandlers.put(listName, handlerIds.toArray(new String[0]));
         }
+        final ArrayList<GameState.ScopedHandlerState> scopedHandlers = new ArrayList<>();
+        for (Map.Entry<String,ScopedHandlerList<? extends GameEventHandler>>
+                entry : handlerManager.getScopedHandlerMap().entrySet()) {
+            for (Map.Entry<? extends GameEventHandler,HandlerScope> scopeEntry : entry.getValue().getScopeMap().entrySet()) {
+                final GameEventHandler handler = scopeEntry.getKey();
+                final String handlerId = handler.getHandlerId();
+                if (handlerId != null && !handlerId.startsWith("#")) {
+                    final GameState.ScopedHandlerState handlerState = new GameState.ScopedHandlerState();
+                    handlerState.listName = entry.getKey();
+                    handlerState.handlerId = handlerId;
+                    handlerState.scopeType = scopeEntry.getValue().getType().name();
+                    handlerState.scopeIds = scopeEntry.getValue().getIds();
+                    scopedHandlers.add(handlerState);
+                    final Object hs = handler.getHandlerState();
+                    if (hs != null)
+                        state.handlerStateMap.put(handlerId, hs);
+                }
+            }
+        }
+        state.scopedHandlers = scopedHandlers.toArray(new GameState.ScopedHandlerState[0]);
+        final ArrayList<GameState.ScheduledTurnState> scheduledTurns = new ArrayList<>();
+        for (TurnScheduler.ScheduledTurn st : turnScheduler.getScheduledTurns()) {
+            final TurnListener l = st.getListener();
+            final String handlerId = l.getHandlerId();
+            if (handlerId != null && !handlerId.startsWith("#")) {
+                final GameState.ScheduledTurnState turnState = new GameState.ScheduledTurnState();
+                turnState.handlerId = handlerId;
+                turnState.turn = st.getTurn();
+                turnState.period = st.getPeriod();
+                scheduledTurns.add(turnState);
+                final Object handlerState = l.getHandlerState();
+                if (handlerState != null)
+                    state.handlerStateMap.put(handlerId, handlerState);
+            }
+        }
+        state.scheduledTurns = scheduledTurns.toArray(new GameState.ScheduledTurnState[0]);
         state.entityIdPropertyMap = Utils.createSizedHashMap(objectProps.getEntityPropertyMap());
         state.roomIdPropertyMap = Utils.createSizedHashMap(objectProps.getRoomPropertyMap());
         objectProps.saveToIdMaps(state.entityIdPropertyMap, state.roomIdPropertyMap);
@@ -995,12 +1319,33 @@ public final class GameManager
 
     public void addPlayerMovementListener(PlayerMovementListener l) {handlerManager.addPlayerMovementListener(l);}
     public void removePlayerMovementListener(PlayerMovementListener l) {handlerManager.removePlayerMovementListener(l);}
+    public void addPlayerMovementListener(PlayerMovementListener l, HandlerScope scope) {handlerManager.addPlayerMovementListener(l, scope);}
 
     public void addTurnListener(TurnListener l) {handlerManager.addTurnListener(l);}
     public void removeTurnListener(TurnListener l) {handlerManager.removeTurnListener(l);}
+    public void addTurnListener(TurnListener l, HandlerScope scope) {handlerManager.addTurnListener(l, scope);}
+
+    /**
+     * Schedule a TurnListener to be called once, at the transition of a given turn, rather than every turn.
+     * @param l listener to schedule
+     * @param turn turn number, as returned by {@link #getNumTurns()} during that turn
+     * @see TurnScheduler
+     */
+    public void scheduleTurnListener(TurnListener l, int turn) {turnScheduler.schedule(l, turn, 0);}
+
+    /**
+     * Schedule a TurnListener to be called at the transition of a given turn, and every {@code period}
+     * turns thereafter.
+     * @see TurnScheduler
+     */
+    public void scheduleTurnListener(TurnListener l, int turn, int period) {turnScheduler.schedule(l, turn, period);}
+
+    /** Cancel all turns scheduled for a TurnListener. */
+    public void unscheduleTurnListener(TurnListener l) {turnScheduler.unschedule(l);}
 
     public void addEntityActionsProcessor(EntityActionsProcessor l) {handlerManager.addEntityActionsProcessor(l);}
     public void removeEntityActionsProcessor(EntityActionsProcessor l) {handlerManager.removeEntityActionsProcessor(l);}
+    public void addEntityActionsProcessor(EntityActionsProcessor l, HandlerScope scope) {handlerManager.addEntityActionsProcessor(l, scope);}
 
     public void addEntitySelectionListener(EntitySelectionListener l) {handlerManager.addEntitySelectionListener(l);}
     public void removeEntitySelectionListener(EntitySelectionListener l) {handlerManager.removeEntitySelectionListener(l);}
@@ -1010,6 +1355,7 @@ public final class GameManager
 
     public void addLookListener(LookListener l) {handlerManager.addLookListener(l);}
     public void removeLookListener(LookListener l) {handlerManager.removeLookListener(l);}
+    public void addLookListener(LookListener l, HandlerScope scope) {handlerManager.addLookListener(l, scope);}
     //endregion
 
     /**
@@ -0,0 +1,116 @@
+package com.illcode.meterman2;
+
+import com.illcode.meterman2.bundle.BundleGroup;
+import com.illcode.meterman2.bundle.XBundle;
+import com.illcode.meterman2.state.KryoPersistence;
+
+/**
+ * A GameSession bundles together the per-game parts of the engine: the {@link GameManager}, the
+ * {@link MMScript} interpreter, the {@link MMTemplate} engine, the {@link BundleGroup} into which game
+ * bundles are loaded, and the persistence instance used for saving and loading.
+ * <p/>
+ * The system bundles are shared, read-only, among all sessions; the assets, sound, actions, attributes,
+ * UI and games list remain global.
+ * <p/>
+ * The engine reaches its components through the static fields of {@link Meterman2}, so only one session
+ * is <em>active</em> at a time: {@link #activate()} points those fields at this session's components.
+ * {@link Meterman2} creates the session at startup and disposes it at shutdown. To host more than one game
+ * in a JVM, a session would be activated, on the game thread, before each unit of work for it (a command
+ * from a player, say); sessions can thus be kept alive side-by-side, but their turns do not run in parallel.
+ * Also note that actions and attributes are registered globally, so sessions running different games must
+ * register them compatibly.
+ */
+public final class GameSession
+{
+    // Guards the static fields of Meterman2 while a session is active.
+    private static final Object activeLock = new Object();
+
+    private static GameSession activeSession;
+
+    BundleGroup bundles;
+    BindingStack bindingStack;
+    MMTemplate template;
+    MMScript script;
+    KryoPersistence persistence;
+    GameManager gm;
+
+    private GameSession() {
+    }
+
+    /**
+     * Create a new session, sharing the given system bundles, and make it the active session.
+     * @param systemBundles the system bundles, which must not be modified while sessions are using them
+     * @return new session
+     */
+    public static GameSession create(XBundle... systemBundles) {
+        synchronized (activeLock) {
+            GameSession s = new GameSession();
+            s.bundles = new BundleGroup();
+            s.bundles.setSystemBundles(systemBundles);
+            s.bindingStack = new BindingStack();
+            s.template = new MMTemplate(s.bindingStack);
+            s.template.initSystemHash(s.bundles);
+            s.script = new MMScript(s.bindingStack);
+            s.persistence = new KryoPersistence();
+            s.activate();  // the GameManager constructor expects our components to be in place
+            s.gm = new GameManager();
+            Meterman2.gm = s.gm;
+            if (Meterman2.ui != null)  // otherwise the bindings are added once the UI is created
+                Meterman2.addScriptBindings();
+            return s;
+        }
+    }
+
+    /** Return the active session, or null if none has been created. */
+    public static GameSession getActiveSession() {
+        synchronized (activeLock) {
+            return activeSession;
+        }
+    }
+
+    /** Make this the active session, pointing the static fields of {@link Meterman2} at its components. */
+    public void activate() {
+        synchronized (activeLock) {
+            Meterman2.bundles = bundles;
+            Meterman2.bindingStack = bindingStack;
+            Meterman2.template = template;
+            Meterman2.script = script;
+            Meterman2.persistence = persistence;
+            Meterman2.gm = gm;
+            activeSession = this;
+        }
+    }
+
+    /**
+     * Free the resources held by this session. The session must not be used afterwards. The UI must
+     * still be alive when this is called, since the GameManager closes its game.
+     */
+    public void dispose() {
+        synchronized (activeLock) {
+            final GameSession previous = activeSession;
+            activate();
+            gm.dispose();
+            persistence.dispose();
+            script.dispose();
+            template.dispose();
+            bundles.dispose();
+            gm = null;
+            persistence = null;
+            script = null;
+            template = null;
+            bindingStack = null;
+            bundles = null;
+            if (previous == this) {
+                Meterman2.gm = null;
+                Meterman2.persistence = null;
+                Meterman2.script = null;
+                Meterman2.template = null;
+                Meterman2.bindingStack = null;
+                Meterman2.bundles = null;
+                activeSession = null;
+            } else if (previous != null) {
+                previous.activate();
+            }
+        }
+    }
+}
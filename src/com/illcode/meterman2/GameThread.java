@@ -0,0 +1,129 @@
+package com.illcode.meterman2;
+
+import java.awt.SecondaryLoop;
+import java.awt.Toolkit;
+import java.util.concurrent.*;
+import java.util.logging.Level;
+
+import javax.swing.SwingUtilities;
+
+import static com.illcode.meterman2.MMLogging.logger;
+
+/**
+ * The thread on which game turns run, so that a long turn (a slow script, say) doesn't keep the event dispatch
+ * thread from repainting the window.
+ * <p/>
+ * Everything that reads or changes game state runs here, one task at a time, in the order the UI handed it over.
+ * The UI updates a task makes are batched by {@link com.illcode.meterman2.ui.MMUI MMUI} and applied together when
+ * the task finishes.
+ */
+final class GameThread
+{
+    private final ThreadPoolExecutor executor;
+    private volatile Thread thread;
+
+    GameThread() {
+        executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+            new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    final Thread t = new Thread(r, "game");
+                    t.setDaemon(true);
+                    thread = t;
+                    return t;
+                }
+            });
+        executor.prestartCoreThread();  // so that getThread() has something to return
+    }
+
+    /** Return the game thread itself. */
+    Thread getThread() {
+        return thread;
+    }
+
+    /** Run a task on the game thread, and return without waiting for it. */
+    void post(final Runnable task) {
+        executor.execute(new Runnable() {
+            public void run() {
+                try {
+                    task.run();
+                } catch (RuntimeException ex) {
+                    logger.log(Level.WARNING, "GameThread task", ex);
+                } finally {
+                    Meterman2.ui.flushUpdates();
+                }
+            }
+        });
+    }
+
+    /**
+     * Run a task on the game thread and return its result, rethrowing anything it threw.
+     * <p/>
+     * If called on the event dispatch thread, events continue to be dispatched while the task runs, so that
+     * the task may show dialogs and the window is repainted. If called while the game thread is itself waiting for
+     * a modal dialog to close (see {@link com.illcode.meterman2.ui.MMUI#isCallerWaiting()}), the task is run
+     * directly, since the game thread is blocked and can't run it; otherwise, as when a dialog responder has yet
+     * to answer, the task waits its turn.
+     */
+    <T> T call(final Callable<T> task) {
+        if (Thread.currentThread() == thread ||
+                (SwingUtilities.isEventDispatchThread() && Meterman2.ui.isCallerWaiting())) {
+            try {
+                return task.call();
+            } catch (RuntimeException ex) {
+                throw ex;
+            } catch (Exception ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+        final FutureTask<T> future;
+        if (SwingUtilities.isEventDispatchThread()) {
+            final SecondaryLoop loop = Toolkit.getDefaultToolkit().getSystemEventQueue().createSecondaryLoop();
+            future = new FutureTask<T>(task) {
+                protected void done() {
+                    // Posted as an event, so that it can't overtake loop.enter() below.
+                    SwingUtilities.invokeLater(new Runnable() {
+                        public void run() {
+                            loop.exit();
+                        }
+                    });
+                }
+            };
+            executor.execute(flushing(future));
+            loop.enter();
+        } else {
+            future = new FutureTask<>(task);
+            executor.execute(flushing(future));
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the game thread", ex);
+        } catch (ExecutionException ex) {
+            final Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    // Wrap a task so that its UI updates are flushed when it finishes.
+    private static Runnable flushing(final Runnable task) {
+        return new Runnable() {
+            public void run() {
+                try {
+                    task.run();
+                } finally {
+                    Meterman2.ui.flushUpdates();
+                }
+            }
+        };
+    }
+
+    /** Stop the game thread once the tasks already handed to it have run. */
+    void dispose() {
+        executor.shutdown();
+    }
+}
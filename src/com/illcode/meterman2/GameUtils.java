@@ -253,13 +253,13 @@ public final class GameUtils
     }
 
     /**
-     * Pushes a binding to both the script game namespace and template data model.
+     * Pushes a binding to both the script game namespace and template data model. The binding is
+     * carried into each lazily, when that engine next runs (see {@link BindingStack}).
      * @param name variable name
      * @param value new value; if null, the binding will be removed.
      */
     public static void pushBinding(String name, Object value) {
-        Meterman2.script.pushBinding(name, value);
-        Meterman2.template.pushBinding(name, value);
+        Meterman2.bindingStack.push(name, value, BindingStack.ALL);
     }
 
     /**
@@ -267,8 +267,7 @@ public final class GameUtils
      * @param name variable name
      */
     public static void popBinding(String name) {
-        Meterman2.script.popBinding(name);
-        Meterman2.template.popBinding(name);
+        Meterman2.bindingStack.pop(name, BindingStack.ALL);
     }
 
     /**
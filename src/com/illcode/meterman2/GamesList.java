@@ -5,34 +5,74 @@ import org.jdom2.Element;
 import org.jdom2.JDOMException;
 import org.jdom2.input.SAXBuilder;
 
-import java.io.IOException;
-import java.nio.file.DirectoryStream;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.io.*;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
 import java.util.logging.Level;
 
 import static com.illcode.meterman2.MMLogging.logger;
+import static java.nio.file.StandardWatchEventKinds.*;
 
 /**
  * Handles the discovery and loading of games at system startup.
+ * <p/>
+ * The glue files are parsed once, and what was read from them is kept in an index persisted across runs
+ * (see the "glue-index-path" preference), keyed by the path, modification time, and size of each file, so
+ * that only glue files that are new or have changed since the last run are parsed again.
+ * <p/>
+ * Unless the "watch-games" preference is false, the glue and jars directories are also watched, so that
+ * games installed while the program is running appear in the games list without a restart. Game classes
+ * in jars that were not on the class path at startup are loaded through {@link #getGameClassLoader()}.
  */
 public final class GamesList
 {
+    private static final int INDEX_MAGIC = 0x474C5532;  // "GLU2"
+
     private List<String> gameNames;
     private Map<String,PieceOfGlue> gamesMap;
 
+    private Path indexPath, jarsPath;
+    private Map<String,IndexEntry> glueIndex;  // keyed by absolute path of the glue file
+
+    private Set<Path> loaderJars;  // jars, not on the class path at startup, in gameClassLoader
+    private ClassLoader gameClassLoader;
+
+    private WatchService watchService;
+    private volatile boolean stale;
+
     GamesList() {
+        indexPath = Paths.get(Utils.pref("glue-index-path", "config/glue-index.dat"));
+        jarsPath = Paths.get(Utils.pref("jars-path", "jars"));
+        glueIndex = readIndex(indexPath);
+        loaderJars = new HashSet<>();
+        gameClassLoader = GamesList.class.getClassLoader();
         loadGamesFromGlue();
+        if (Utils.booleanPref("watch-games", true))
+            startWatching();
     }
 
-    void dispose() {
+    synchronized void dispose() {
+        if (watchService != null) {
+            try {
+                watchService.close();  // this stops the watcher thread
+            } catch (IOException ex) {
+                logger.log(Level.WARNING, "GamesList.dispose()", ex);
+            }
+            watchService = null;
+        }
         gamesMap = null;
         gameNames = null;
+        glueIndex = null;
+        gameClassLoader = null;
     }
 
     /** Returns true if a game with the given name exists. */
-    public boolean gameExists(String gameName) {
+    public synchronized boolean gameExists(String gameName) {
+        refreshIfStale();
         return gamesMap.containsKey(gameName);
     }
 
@@ -41,20 +81,21 @@ public final class GamesList
      * @param gameName name of the game
      * @return a new game instance
      */
-    public Game createGame(String gameName) {
-        return gamesMap.get(gameName).createGame();
+    public synchronized Game createGame(String gameName) {
+        return gamesMap.get(gameName).createGame(gameClassLoader);
     }
 
     /** Return a list of all game names. */
-    public List<String> getGameNames() {
+    public synchronized List<String> getGameNames() {
+        refreshIfStale();
         return gameNames;
     }
 
-    public String getGameVersion(String gameName) {
+    public synchronized String getGameVersion(String gameName) {
         return gamesMap.get(gameName).version;
     }
 
-    public boolean getGameFrameImageVisible(String gameName) {
+    public synchronized boolean getGameFrameImageVisible(String gameName) {
         return gamesMap.get(gameName).frameImageVisible;
     }
 
@@ -63,7 +104,7 @@ public final class GamesList
      * @param gameName game name
      * @return string assets path
      */
-    public String getGameAssetsPath(String gameName) {
+    public synchronized String getGameAssetsPath(String gameName) {
         return gamesMap.get(gameName).assetsPath;
     }
 
@@ -72,60 +113,252 @@ public final class GamesList
      * @param gameName game name
      * @return package name
      */
-    public String getGamePackageName(String gameName) {
+    public synchronized String getGamePackageName(String gameName) {
         return gamesMap.get(gameName).getGamePackageName();
     }
 
-    public void loadGamesFromGlue() {
-        gamesMap = new HashMap<>();
+    /**
+     * Return the script engine selected by a game, as passed to {@link MMScript#selectEngine(String, ClassLoader)}.
+     * @param gameName game name
+     * @return engine name, which is {@link MMScript#DEFAULT_ENGINE} if the glue file names none
+     */
+    public synchronized String getGameScriptEngine(String gameName) {
+        return gamesMap.get(gameName).scriptEngine;
+    }
+
+    /**
+     * Return the class loader through which game classes are loaded. This can see the jars in the jars
+     * directory that were installed after startup, as well as everything on the class path.
+     */
+    public synchronized ClassLoader getGameClassLoader() {
+        return gameClassLoader;
+    }
+
+    /**
+     * Scan the glue directory, parsing any glue files that are not in the index or have changed since they
+     * were indexed, and rebuild the games list.
+     */
+    public synchronized void loadGamesFromGlue() {
+        stale = false;
+        final Map<String,PieceOfGlue> newGamesMap = new HashMap<>();
+        final Map<String,IndexEntry> newIndex = new HashMap<>();
+        boolean indexChanged = false;
+        SAXBuilder sax = null;
         try (DirectoryStream<Path> dirStream = Files.newDirectoryStream(Meterman2.gluePath)) {
-            SAXBuilder sax = new SAXBuilder();
             for (Path p : dirStream) {
-                String filename = p.getFileName().toString().toLowerCase();
-                if (filename.endsWith(".xml")) {
-                    boolean validGlue = false;
-                    parseGlue:
-                    try {
-                        Document doc = sax.build(p.toFile());
-                        if (!doc.hasRootElement())
-                            break parseGlue;
-                        Element root = doc.getRootElement();
-                        if (!root.getName().equals("game"))
-                            break parseGlue;
-                        String name = root.getChildText("name");
-                        String version = root.getChildText("version");
-                        String assetsPath = root.getChildText("assets-path");
-                        String gameClassName = root.getChildText("class-name");
-                        boolean frameImageVisible = Utils.parseBoolean(root.getChildText("frame-image-visible"));
-                        if (name != null && version != null && assetsPath != null && gameClassName != null) {
-                            gamesMap.put(name, new PieceOfGlue(version, assetsPath, gameClassName, frameImageVisible));
-                            validGlue = true;
-                        }
-                    } catch (IOException|JDOMException e) {
-                        logger.log(Level.WARNING, "GamesList.loadGamesFromGlue()", e);
-                    }
-                    if (!validGlue)
-                        logger.warning("Invalid XML glue definition: " + filename);
+                final String filename = p.getFileName().toString();
+                if (!filename.toLowerCase().endsWith(".xml"))
+                    continue;
+                final String key = p.toAbsolutePath().toString();
+                final BasicFileAttributes attrs = Files.readAttributes(p, BasicFileAttributes.class);
+                final long mtime = attrs.lastModifiedTime().toMillis();
+                IndexEntry entry = glueIndex.get(key);
+                if (entry == null || entry.mtime != mtime || entry.size != attrs.size()) {
+                    if (sax == null)
+                        sax = new SAXBuilder();
+                    entry = new IndexEntry(mtime, attrs.size(), parseGlue(sax, p));
+                    indexChanged = true;
                 }
+                newIndex.put(key, entry);
+                if (entry.glue != null)
+                    newGamesMap.put(entry.glue.name, entry.glue);
+                else
+                    logger.warning("Invalid XML glue definition: " + filename);
             }
         } catch (IOException e) {
             logger.log(Level.WARNING, "GamesList.loadGamesFromGlue()", e);
         }
+        if (indexChanged || !newIndex.keySet().equals(glueIndex.keySet()))
+            writeIndex(indexPath, newIndex);
+        glueIndex = newIndex;
+        gamesMap = newGamesMap;
         gameNames = new ArrayList<>(gamesMap.keySet());
         Collections.sort(gameNames);  // alphabetical order please
+        updateGameClassLoader();
+    }
+
+    private void refreshIfStale() {
+        if (stale)
+            loadGamesFromGlue();
+    }
+
+    // Returns null if the file is not a valid glue definition.
+    private static PieceOfGlue parseGlue(SAXBuilder sax, Path p) {
+        try {
+            Document doc = sax.build(p.toFile());
+            if (!doc.hasRootElement())
+                return null;
+            Element root = doc.getRootElement();
+            if (!root.getName().equals("game"))
+                return null;
+            String name = root.getChildText("name");
+            String version = root.getChildText("version");
+            String assetsPath = root.getChildText("assets-path");
+            String gameClassName = root.getChildText("class-name");
+            boolean frameImageVisible = Utils.parseBoolean(root.getChildText("frame-image-visible"));
+            String scriptEngine = root.getChildTextTrim("script-engine");
+            if (scriptEngine == null || scriptEngine.isEmpty())
+                scriptEngine = MMScript.DEFAULT_ENGINE;
+            if (name != null && version != null && assetsPath != null && gameClassName != null)
+                return new PieceOfGlue(name, version, assetsPath, gameClassName, frameImageVisible, scriptEngine);
+        } catch (IOException|JDOMException e) {
+            logger.log(Level.WARNING, "GamesList.parseGlue()", e);
+        }
+        return null;
+    }
+
+    // Jars found in the jars directory that aren't on the class path (because they were installed after
+    // startup) are added to a new game class loader. Jars that were removed stay in the loader, since
+    // classes may already have been loaded from them.
+    private void updateGameClassLoader() {
+        if (Files.notExists(jarsPath))
+            return;
+        final Set<Path> classPathJars = new HashSet<>();
+        for (String s : System.getProperty("java.class.path", "").split(File.pathSeparator))
+            if (!s.isEmpty())
+                classPathJars.add(Paths.get(s).toAbsolutePath().normalize());
+        final Set<Path> jars = new HashSet<>(loaderJars);
+        try (DirectoryStream<Path> dirStream = Files.newDirectoryStream(jarsPath, "*.jar")) {
+            for (Path p : dirStream) {
+                final Path jar = p.toAbsolutePath().normalize();
+                if (!classPathJars.contains(jar))
+                    jars.add(jar);
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "GamesList.updateGameClassLoader()", e);
+            return;
+        }
+        if (jars.equals(loaderJars))
+            return;
+        final List<URL> urls = new ArrayList<>(jars.size());
+        try {
+            for (Path jar : jars)
+                urls.add(jar.toUri().toURL());
+        } catch (MalformedURLException e) {
+            logger.log(Level.WARNING, "GamesList.updateGameClassLoader()", e);
+            return;
+        }
+        gameClassLoader = new URLClassLoader(urls.toArray(new URL[urls.size()]), GamesList.class.getClassLoader());
+        loaderJars = jars;
+        logger.info("Game class loader updated with " + jars.size() + " installed jar(s)");
+    }
+
+    private void startWatching() {
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            Meterman2.gluePath.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+            if (Files.isDirectory(jarsPath))
+                jarsPath.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+        } catch (IOException|UnsupportedOperationException ex) {
+            logger.log(Level.WARNING, "GamesList.startWatching()", ex);
+            if (watchService != null) {
+                try {
+                    watchService.close();
+                } catch (IOException ignored) {
+                }
+                watchService = null;
+            }
+            return;
+        }
+        final WatchService ws = watchService;
+        final Thread watcher = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    while (true) {
+                        final WatchKey key = ws.take();
+                        // We only note that something changed; the rescan is done lazily, when
+                        // the games list is next asked for, so that a burst of events costs one rescan.
+                        if (!key.pollEvents().isEmpty())
+                            stale = true;
+                        key.reset();
+                    }
+                } catch (InterruptedException|ClosedWatchServiceException ex) {
+                    // we're done
+                }
+            }
+        }, "glue-watcher");
+        watcher.setDaemon(true);
+        watcher.setPriority(Thread.MIN_PRIORITY);
+        watcher.start();
+    }
+
+    private static Map<String,IndexEntry> readIndex(Path path) {
+        final Map<String,IndexEntry> index = new HashMap<>();
+        if (Files.notExists(path))
+            return index;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != INDEX_MAGIC)
+                return index;
+            final int n = in.readInt();
+            for (int i = 0; i < n; i++) {
+                final String key = in.readUTF();
+                final long mtime = in.readLong();
+                final long size = in.readLong();
+                PieceOfGlue glue = null;
+                if (in.readBoolean())
+                    glue = new PieceOfGlue(in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF(), in.readBoolean(),
+                                           in.readUTF());
+                index.put(key, new IndexEntry(mtime, size, glue));
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "GamesList.readIndex()", e);
+            index.clear();  // we'll reparse everything
+        }
+        return index;
+    }
+
+    private static void writeIndex(Path path, Map<String,IndexEntry> index) {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            out.writeInt(INDEX_MAGIC);
+            out.writeInt(index.size());
+            for (Map.Entry<String,IndexEntry> me : index.entrySet()) {
+                final IndexEntry entry = me.getValue();
+                out.writeUTF(me.getKey());
+                out.writeLong(entry.mtime);
+                out.writeLong(entry.size);
+                out.writeBoolean(entry.glue != null);
+                if (entry.glue != null) {
+                    out.writeUTF(entry.glue.name);
+                    out.writeUTF(entry.glue.version);
+                    out.writeUTF(entry.glue.assetsPath);
+                    out.writeUTF(entry.glue.gameClassName);
+                    out.writeBoolean(entry.glue.frameImageVisible);
+                    out.writeUTF(entry.glue.scriptEngine);
+                }
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "GamesList.writeIndex()", e);
+        }
+    }
+
+    private static final class IndexEntry {
+        final long mtime;
+        final long size;
+        final PieceOfGlue glue;  // null if the file was not a valid glue definition
+
+        IndexEntry(long mtime, long size, PieceOfGlue glue) {
+            this.mtime = mtime;
+            this.size = size;
+            this.glue = glue;
+        }
     }
 
     private static final class PieceOfGlue {
+        final String name;
         final String version;
         final String assetsPath;
         final String gameClassName;
         final boolean frameImageVisible;
+        final String scriptEngine;
 
-        private PieceOfGlue(String version, String assetsPath, String gameClassName, boolean frameImageVisible) {
+        private PieceOfGlue(String name, String version, String assetsPath, String gameClassName,
+                            boolean frameImageVisible, String scriptEngine) {
+            this.name = name;
             this.version = version;
             this.assetsPath = assetsPath;
             this.gameClassName = gameClassName;
             this.frameImageVisible = frameImageVisible;
+            this.scriptEngine = scriptEngine;
         }
 
         public String getGamePackageName() {
@@ -136,9 +369,9 @@ public final class GamesList
                 return gameClassName.substring(0, idx);
         }
 
-        public Game createGame() {
+        public Game createGame(ClassLoader loader) {
             try {
-                Class<?> gameClass = Class.forName(gameClassName);
+                Class<?> gameClass = Class.forName(gameClassName, true, loader);
                 return (Game) gameClass.newInstance();
             } catch (Exception ex) {
                 logger.log(Level.WARNING, "GamesList.createGame()", ex);
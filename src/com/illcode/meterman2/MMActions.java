@@ -7,6 +7,7 @@ import org.mini2Dx.gdx.utils.ObjectMap;
 import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.List;
+import java.util.Objects;
 
 /**
  * This class handles registration of actions.
@@ -24,6 +25,8 @@ public final class MMActions
     private List<Action> systemActions;
     private List<Action> gameActions;
 
+    private static int textVersion;  // incremented whenever the text of an action changes
+
     MMActions() {
         actionNumSet = new BitSet();
         sysActionNumSet = new BitSet();
@@ -162,6 +165,14 @@ public final class MMActions
         return gameActions;
     }
 
+    /**
+     * Return a number that changes whenever the template-text or fixed-text of any action is changed, so that
+     * anything that caches the text of actions, such as the game manager's action lists, knows to refresh it.
+     */
+    public static int getTextVersion() {
+        return textVersion;
+    }
+
     /** Returns true if the given action is a system action. */
     public boolean isSystemAction(Action a) {
         return sysActionNumSet.get(a.actionNo);
@@ -241,7 +252,10 @@ public final class MMActions
         }
 
         public void setTemplateText(String templateText) {
-            this.templateText = templateText;
+            if (!Objects.equals(this.templateText, templateText)) {
+                this.templateText = templateText;
+                textVersion++;
+            }
         }
 
         public String getFixedText() {
@@ -249,7 +263,10 @@ public final class MMActions
         }
 
         public void setFixedText(String fixedText) {
-            this.fixedText = fixedText;
+            if (!Objects.equals(this.fixedText, fixedText)) {
+                this.fixedText = fixedText;
+                textVersion++;
+            }
         }
 
         /**
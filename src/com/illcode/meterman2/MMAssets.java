@@ -11,10 +11,19 @@ import java.util.logging.Level;
 
 import static com.illcode.meterman2.MMLogging.logger;
 
+/**
+ * Resolves the paths of system and game assets, which may be kept in directories or ZIP files.
+ * <p/>
+ * Assets in a ZIP file are addressed through the zipfs provider, but unless the "indexed-zip-assets" preference
+ * is false, the file is also indexed by a {@link ZipAssetStore}, and reads made through
+ * {@link Utils#newInputStream(Path)}, {@link Utils#readAllBytes(Path)} and {@link Utils#pathToURL(Path)} are
+ * served from the index instead of zipfs.
+ */
 public final class MMAssets
 {
     private Path assetsPath, systemAssetsPath, gameAssetsPath;
     private FileSystem systemZipFs, gameZipFs;
+    private ZipAssetStore systemStore, gameStore;
 
     public MMAssets() {
     }
@@ -25,6 +34,10 @@ public final class MMAssets
     }
 
     private void closeSystemZipFs() {
+        if (systemStore != null) {
+            systemStore.close();
+            systemStore = null;
+        }
         if (systemZipFs != null) {
             try {
                 systemZipFs.close();
@@ -36,6 +49,10 @@ public final class MMAssets
     }
 
     private void closeGameZipFs() {
+        if (gameStore != null) {
+            gameStore.close();
+            gameStore = null;
+        }
         if (gameZipFs != null) {
             try {
                 gameZipFs.close();
@@ -70,6 +87,7 @@ public final class MMAssets
             if (isZip) {
                 try {
                     systemZipFs = FileSystems.newFileSystem(systemAssetsPath, null);
+                    systemStore = openStore(systemAssetsPath, systemZipFs);
                     systemAssetsPath = systemZipFs.getPath("/");
                 } catch (IOException e) {
                     logger.log(Level.WARNING, "MMAssets.setSystemAssetsPath()", e);
@@ -97,6 +115,7 @@ public final class MMAssets
             if (isZip) {
                 try {
                     gameZipFs = FileSystems.newFileSystem(gameAssetsPath, null);
+                    gameStore = openStore(gameAssetsPath, gameZipFs);
                     gameAssetsPath = gameZipFs.getPath("/");
                 } catch (IOException e) {
                     logger.log(Level.WARNING, "MMAssets.setGameAssetsPath()", e);
@@ -108,6 +127,18 @@ public final class MMAssets
         }
     }
 
+    // Returns null if indexing is disabled or fails, in which case reads go through zipfs.
+    private static ZipAssetStore openStore(Path zipPath, FileSystem zipFs) {
+        if (!Utils.booleanPref("indexed-zip-assets", true))
+            return null;
+        try {
+            return ZipAssetStore.open(zipPath, zipFs);
+        } catch (IOException e) {
+            logger.log(Level.INFO, "MMAssets: not indexing " + zipPath, e);
+            return null;
+        }
+    }
+
     /**
      * Returns a Path representing the given asset, resolved against the game assets path.
      * @param asset path (relative to the game assets path) of the asset we want
@@ -9,29 +9,53 @@ import org.apache.commons.lang3.StringUtils;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.List;
+import java.util.concurrent.Callable;
 
+import static com.illcode.meterman2.Meterman2.gameThread;
 import static com.illcode.meterman2.Meterman2.gm;
 import static com.illcode.meterman2.Meterman2.ui;
 
+/**
+ * Handles the UI's requests by running them on the game thread: commands that begin a turn are posted, and the
+ * UI goes on without waiting; requests whose result the UI needs are called, and it waits for them.
+ */
 public class MMHandler implements UIHandler
 {
+    private String selectedEntityId;  // the entity selected in the UI, as last reported to us
+
     public void uiInitialized() {
         GameUtils.setActionShortcuts(Meterman2.bundles.getElement("system-action-shortcuts"));
     }
 
     public boolean isGameActive() {
-        return gm.getGame() != null;
+        return gameThread.call(new Callable<Boolean>() {
+            public Boolean call() {
+                return gm.getGame() != null;
+            }
+        });
     }
 
     public void aboutMenuClicked() {
-        Game g = gm.getGame();
-        if (g != null)
-            g.about();
+        gameThread.post(new Runnable() {
+            public void run() {
+                Game g = gm.getGame();
+                if (g != null)
+                    g.about();
+            }
+        });
     }
 
-    public void debugCommand(String cmd) {
+    public void debugCommand(final String cmd) {
         if (cmd == null || cmd.isEmpty())
             return;
+        gameThread.post(new Runnable() {
+            public void run() {
+                debugCommandImpl(cmd);
+            }
+        });
+    }
+
+    private void debugCommandImpl(String cmd) {
         Game g = gm.getGame();
         if (g != null) {
             String[] args = StringUtils.split(cmd);
@@ -74,6 +98,12 @@ public class MMHandler implements UIHandler
                     }
                 }
                 break;
+            case "imagecache":
+                ui.showTextDialogImpl("Image Cache", ui.getImageCacheStats(), "OK");
+                break;
+            case "soundcache":
+                ui.showTextDialogImpl("Sound Cache", Meterman2.sound.getCacheStats(), "OK");
+                break;
             default:
                 g.debugCommand(args);
                 break;
@@ -82,10 +112,23 @@ public class MMHandler implements UIHandler
     }
 
     public List<String> getGameNames() {
-        return Meterman2.gamesList.getGameNames();
+        return gameThread.call(new Callable<List<String>>() {
+            public List<String> call() {
+                return Meterman2.gamesList.getGameNames();
+            }
+        });
+    }
+
+    public void newGame(final String gameName) {
+        gameThread.call(new Callable<Void>() {
+            public Void call() {
+                newGameImpl(gameName);
+                return null;
+            }
+        });
     }
 
-    public void newGame(String gameName) {
+    private void newGameImpl(String gameName) {
         if (!Meterman2.gamesList.gameExists(gameName)) {
             ui.showTextDialogImpl("Invalid Game", "\"" + gameName + "\"is not a valid game.", "Ayaa");
         } else {
@@ -97,82 +140,157 @@ public class MMHandler implements UIHandler
         }
     }
 
-    public void loadGameState(InputStream in) {
-        gm.loadGameState(in);
+    // The streams are the caller's to close, so we load and save before returning.
+    public void loadGameState(final InputStream in) {
+        gameThread.call(new Callable<Void>() {
+            public Void call() {
+                gm.loadGameState(in);
+                return null;
+            }
+        });
     }
 
-    public void saveGameState(OutputStream out) {
-        gm.saveGameState(out);
+    public void saveGameState(final OutputStream out) {
+        gameThread.call(new Callable<Void>() {
+            public Void call() {
+                gm.saveGameState(out);
+                return null;
+            }
+        });
     }
 
     public void endGame() {
-        gm.endGame();
-        gm.nextTurn();
+        gameThread.post(new Runnable() {
+            public void run() {
+                gm.endGame();
+                gm.nextTurn();
+            }
+        });
     }
 
     public void lookCommand() {
-        gm.lookCommand();
+        gameThread.post(new Runnable() {
+            public void run() {
+                gm.lookCommand();
+            }
+        });
     }
 
     public void waitCommand() {
-        gm.waitCommand();
+        gameThread.post(new Runnable() {
+            public void run() {
+                gm.waitCommand();
+            }
+        });
     }
 
-    public void entitySelected(String id) {
-        gm.entitySelected(id);
+    public void entitySelected(final String id) {
+        selectedEntityId = id;
+        gameThread.post(new Runnable() {
+            public void run() {
+                gm.entitySelected(id);
+            }
+        });
     }
 
-    public void entityActionSelected(MMActions.Action action) {
-        gm.entityActionSelected(action);
+    public void entityActionSelected(final MMActions.Action action) {
+        final String id = selectedEntityId;
+        gameThread.post(new Runnable() {
+            public void run() {
+                gm.entityActionSelected(id, action);
+            }
+        });
     }
 
-    public void exitSelected(int buttonPos) {
-        gm.exitSelected(buttonPos);
+    public void exitSelected(final int buttonPos) {
+        gameThread.post(new Runnable() {
+            public void run() {
+                gm.exitSelected(buttonPos);
+            }
+        });
     }
 
-    public void setMusicEnabled(boolean enabled) {
-        Meterman2.sound.setMusicEnabled(enabled);
+    public void setMusicEnabled(final boolean enabled) {
+        gameThread.post(new Runnable() {
+            public void run() {
+                Meterman2.sound.setMusicEnabled(enabled);
+            }
+        });
     }
 
     public boolean isMusicEnabled() {
-        return Meterman2.sound.isMusicEnabled();
+        return gameThread.call(new Callable<Boolean>() {
+            public Boolean call() {
+                return Meterman2.sound.isMusicEnabled();
+            }
+        });
     }
 
-    public void setSoundEnabled(boolean enabled) {
-        Meterman2.sound.setSoundEnabled(enabled);
+    public void setSoundEnabled(final boolean enabled) {
+        gameThread.post(new Runnable() {
+            public void run() {
+                Meterman2.sound.setSoundEnabled(enabled);
+            }
+        });
     }
 
     public boolean isSoundEnabled() {
-        return Meterman2.sound.isSoundEnabled();
+        return gameThread.call(new Callable<Boolean>() {
+            public Boolean call() {
+                return Meterman2.sound.isSoundEnabled();
+            }
+        });
     }
 
-    public void setAlwaysLook(boolean alwaysLook) {
-        gm.setAlwaysLook(alwaysLook);
+    public void setAlwaysLook(final boolean alwaysLook) {
+        gameThread.post(new Runnable() {
+            public void run() {
+                gm.setAlwaysLook(alwaysLook);
+            }
+        });
     }
 
     public boolean isAlwaysLook() {
-        return gm.isAlwaysLook();
+        return gameThread.call(new Callable<Boolean>() {
+            public Boolean call() {
+                return gm.isAlwaysLook();
+            }
+        });
     }
 
-    public UIHandler transcribe(String text) {
-        if (isGameActive())
-            gm.print(text);
+    public UIHandler transcribe(final String text) {
+        gameThread.call(new Callable<Void>() {
+            public Void call() {
+                if (gm.getGame() != null)
+                    gm.print(text);
+                return null;
+            }
+        });
         return this;
     }
 
-    public UIHandler transcribe(String text, boolean newPar) {
-        if (isGameActive()) {
-            if (newPar)
-                gm.newPar();
-            gm.print(text);
-        }
+    public UIHandler transcribe(final String text, final boolean newPar) {
+        gameThread.call(new Callable<Void>() {
+            public Void call() {
+                if (gm.getGame() != null) {
+                    if (newPar)
+                        gm.newPar();
+                    gm.print(text);
+                }
+                return null;
+            }
+        });
         return this;
     }
 
     public String getTranscript() {
-        if (isGameActive())
-            return gm.getTranscript();
-        else
-            return null;
+        return gameThread.call(new Callable<String>() {
+            public String call() {
+                if (gm.getGame() != null)
+                    return gm.getTranscript();
+                else
+                    return null;
+            }
+        });
     }
 }
@@ -1,7 +1,8 @@
 package com.illcode.meterman2;
 
-import bsh.*;
-import org.apache.commons.lang3.ArrayUtils;
+import com.illcode.meterman2.script.BshScriptEngine;
+import com.illcode.meterman2.script.ScriptEngine;
+import com.illcode.meterman2.script.ScriptException;
 
 import java.util.*;
 import java.util.logging.Level;
@@ -9,7 +10,10 @@ import java.util.logging.Level;
 import static com.illcode.meterman2.MMLogging.logger;
 
 /**
- * This class handles Meterman's interaction with a scripting engine, in our case BeanShell.
+ * This class handles Meterman's interaction with a scripting engine, by default BeanShell.
+ * <p/>
+ * The engine itself is reached through the {@link ScriptEngine} interface, and may be changed
+ * for each game (see {@link #selectEngine(String, ClassLoader)}).
  * <p/>
  * It is <em>not</em> thread-safe!
  *
@@ -19,80 +23,128 @@ public final class MMScript
     /** A marker singleton to indicate that a method had a void return type. */
     public static final Object VOID_RETURN = new Object();
 
-    /**
-     * The global BeanShell interpreter that is created once upon construction and used
-     * for all script evaluation.
-     */
-    private Interpreter intr;
+    /** The name by which games select the default, BeanShell, engine. */
+    public static final String DEFAULT_ENGINE = "beanshell";
 
-    /**
-     * The NameSpace that holds Meterman system imports, utility methods, and references
-     * to the various manager classes.
-     */
-    private NameSpace systemNameSpace;
+    private ScriptEngine engine;
 
-    /**
-     * The NameSpace used by an individual game, which is used as the parent namespace
-     * for all scripted objects. This namespace is populated by the game itself when it's
-     * loaded and should not be modified by scripts because it's not persisted.
-     */
-    private NameSpace gameNameSpace;
+    // System bindings are kept so that they can be put into a newly selected engine.
+    private Map<String,Object> systemBindings;
 
     // Used for push/pop binding.
-    private Map<String,Deque<Object>> savedBindings;
+    private BindingStack bindingStack;
+    private BindingStack.Client stackClient;
 
-    // Used to gather up the output emitted by a script using the out() BeanShell method.
+    // Used to gather up the output emitted by a script using the out() script method.
     private StringBuilder outputBuilder;
 
-    public MMScript() {
-        intr = new Interpreter();
-        systemNameSpace = intr.getNameSpace();
-        unimportUnneededDefaults(systemNameSpace);
-        initSystemNameSpace();
-        gameNameSpace = new NameSpace(systemNameSpace, "gameNameSpace");
-        savedBindings = new HashMap<>();
+    // Compiles hot scripts marked for compilation.
+    private ScriptCompiler compiler;
+
+    /**
+     * Create a new MMScript instance, using the default engine.
+     * @param bindingStack the binding stack, shared with the template engine, from which
+     *          pushed bindings are carried into the game namespace
+     */
+    public MMScript(BindingStack bindingStack) {
+        systemBindings = new LinkedHashMap<>();
+        outputBuilder = new StringBuilder(1024);
+        engine = new BshScriptEngine();
+        engine.init(outputBuilder);
+        compiler = new ScriptCompiler();
+        this.bindingStack = bindingStack;
+        stackClient = new BindingStack.Client(bindingStack, BindingStack.SCRIPT) {
+            Object getBinding(String name) {
+                return engine.getBinding(name);
+            }
+
+            void setBinding(String name, Object value) {
+                engine.putBinding(name, value);
+            }
+        };
     }
 
     /** Free any resources allocated by this MMScript instance. */
     public void dispose() {
-        savedBindings = null;
-        gameNameSpace = null;
-        systemNameSpace = null;
-        intr = null;
+        engine.dispose();
+        engine = null;
+        systemBindings = null;
+        stackClient = null;
+        bindingStack = null;
+        compiler.dispose();
+        compiler = null;
     }
 
-    private void unimportUnneededDefaults(NameSpace ns) {
-        ns.unimportPackage("javax.swing.event");
-        ns.unimportPackage("javax.swing");
-        ns.unimportPackage("java.awt.event");
-        ns.unimportPackage("java.awt");
-        ns.unimportPackage("java.net");
-        ns.unimportPackage("java.io");
-        ns.unimportCommands("/bsh/commands");
+    /**
+     * Select the engine that runs scripts. If a different engine is selected than the current one,
+     * the system bindings are carried over to it, while any game bindings and imports are lost;
+     * so the engine should be selected before a game is loaded.
+     * @param name {@link #DEFAULT_ENGINE}, or the name of a class implementing {@link ScriptEngine}
+     * @param loader class loader through which to load the engine class
+     * @return true if the engine was selected; false if it could not be created, in which case
+     *          the current engine remains
+     */
+    public boolean selectEngine(String name, ClassLoader loader) {
+        final Class<? extends ScriptEngine> engineClass = getEngineClass(name, loader);
+        if (engineClass == null)
+            return false;
+        if (engineClass == engine.getClass())
+            return true;
+        final ScriptEngine newEngine;
+        try {
+            newEngine = engineClass.getConstructor().newInstance();
+        } catch (Exception ex) {
+            logger.log(Level.WARNING, "MMScript.selectEngine()", ex);
+            return false;
+        }
+        engine.dispose();
+        engine = newEngine;
+        engine.init(outputBuilder);
+        for (Map.Entry<String,Object> entry : systemBindings.entrySet())
+            engine.putSystemBinding(entry.getKey(), entry.getValue());
+        stackClient.reset();
+        logger.info("Script engine: " + engine.getName());
+        return true;
     }
 
-    private void initSystemNameSpace() {
-        outputBuilder = new StringBuilder(1024);
+    /**
+     * Return the class of a script engine.
+     * @param name {@link #DEFAULT_ENGINE}, or the name of a class implementing {@link ScriptEngine}
+     * @param loader class loader through which to load the engine class
+     * @return the engine class, or null if no such engine was found
+     */
+    public static Class<? extends ScriptEngine> getEngineClass(String name, ClassLoader loader) {
+        if (name.isEmpty() || name.equalsIgnoreCase(DEFAULT_ENGINE))
+            return BshScriptEngine.class;
         try {
-            systemNameSpace.setTypedVariable("outputBuilder", StringBuilder.class, outputBuilder, null);
-            intr.eval(Utils.getStringResource("scripts/system-script.bsh"));
-        } catch (UtilEvalError|EvalError err) {
-            logger.log(Level.WARNING, "MMScript error:", err);
+            return Class.forName(name, true, loader).asSubclass(ScriptEngine.class);
+        } catch (ClassNotFoundException|ClassCastException ex) {
+            logger.log(Level.WARNING, "MMScript.getEngineClass()", ex);
+            return null;
         }
     }
 
+    /** Return the current engine. */
+    public ScriptEngine getEngine() {
+        return engine;
+    }
+
     /**
      * Put a variable binding into the system namespace.
      * @param name name of the variable
      * @param value value; if null, the binding will be removed.
      */
     void putSystemBinding(String name, Object value) {
-        putBindingImpl(name, value, systemNameSpace);
+        if (value != null)
+            systemBindings.put(name, value);
+        else
+            systemBindings.remove(name);
+        engine.putSystemBinding(name, value);
     }
 
     /** Remove a variable binding from the system namespace. */
     void removeSystemBinding(String name) {
-        putBindingImpl(name, null, systemNameSpace);
+        putSystemBinding(name, null);
     }
 
     /**
@@ -101,46 +153,23 @@ public final class MMScript
      * @param value value; if null, the binding will be removed.
      */
     public void putBinding(String name, Object value) {
-        putBindingImpl(name, value, gameNameSpace);
+        engine.putBinding(name, value);
     }
 
     /** Remove a variable binding from the game namespace. */
     public void removeBinding(String name) {
-        putBindingImpl(name, null, gameNameSpace);
-    }
-
-    // Put a variable binding into a given namespace.
-    private static void putBindingImpl(String name, Object value, NameSpace ns) {
-        try {
-            ns.unsetVariable(name);
-            if (value != null)
-                ns.setTypedVariable(name, value.getClass(), value, null);
-        } catch (UtilEvalError err) {
-            logger.log(Level.WARNING, "MMScript error:", err);
-        }
+        engine.putBinding(name, null);
     }
 
     /**
-     * Saves the current value of a binding in the game namespace and sets a new one.
+     * Pushes a binding, for the script engine only, onto the binding stack. It takes effect in the
+     * game namespace when a script is next run.
      * @param name variable name
      * @param value new value; if null, the binding will be removed.
+     * @see GameUtils#pushBinding(String, Object)
      */
     public void pushBinding(String name, Object value) {
-        Object oldVal = null;
-        try {
-            oldVal = gameNameSpace.getVariable(name, false);
-            if (oldVal == Primitive.VOID)
-                oldVal = null;
-        } catch (UtilEvalError err) {
-            logger.log(Level.WARNING, "MMScript error:", err);
-        }
-        Deque<Object> savedVals = savedBindings.get(name);
-        if (savedVals == null) {
-            savedVals = new LinkedList<>();
-            savedBindings.put(name, savedVals);
-        }
-        savedVals.push(oldVal);
-        putBinding(name, value);
+        bindingStack.push(name, value, BindingStack.SCRIPT);
     }
 
     /**
@@ -148,11 +177,7 @@ public final class MMScript
      * @param name variable name
      */
     public void popBinding(String name) {
-        Object previousVal = null;
-        Deque<Object> savedVals = savedBindings.get(name);
-        if (savedVals != null && !savedVals.isEmpty())
-            previousVal = savedVals.pop();
-        putBinding(name, previousVal);
+        bindingStack.pop(name, BindingStack.SCRIPT);
     }
 
     /**
@@ -160,17 +185,17 @@ public final class MMScript
      * @param bindings name to game-state object mapping
      */
     public void putBindings(Map<String,Object> bindings) {
-        try {
-            for (Map.Entry<String,Object> entry : bindings.entrySet()) {
-                Object value = entry.getValue();
-                String name = entry.getKey();
-                gameNameSpace.unsetVariable(name);
-                if (value != null)
-                    gameNameSpace.setTypedVariable(name, value.getClass(), value, null);
-            }
-        } catch (UtilEvalError err) {
-            logger.log(Level.WARNING, "MMScript error:", err);
-        }
+        for (Map.Entry<String,Object> entry : bindings.entrySet())
+            engine.putBinding(entry.getKey(), entry.getValue());
+    }
+
+    /**
+     * Set the class loader through which scripts find classes, such as those of a game
+     * loaded from a jar that was not on the class path at startup.
+     */
+    public void setClassLoader(ClassLoader loader) {
+        engine.setClassLoader(loader);
+        compiler.setClassLoader(loader);
     }
 
     /**
@@ -178,7 +203,8 @@ public final class MMScript
      * @param name package name
      */
     public void importPackage(String name) {
-        gameNameSpace.importPackage(name);
+        engine.importPackage(name);
+        compiler.addImport(name + ".*");
     }
 
     /**
@@ -186,12 +212,19 @@ public final class MMScript
      * @param name class name
      */
     public void importClass(String name) {
-        gameNameSpace.importClass(name);
+        engine.importClass(name);
+        compiler.addImport(name);
+    }
+
+    /** Return the compiler for scripts marked for compilation. */
+    public ScriptCompiler getCompiler() {
+        return compiler;
     }
 
     /** Clear all game-state bindings from our game namespace. */
     public void clearBindings() {
-        gameNameSpace.clear();
+        engine.clearBindings();
+        stackClient.reset();
     }
 
     /**
@@ -200,7 +233,7 @@ public final class MMScript
      * @return result of the evaluation of the last statement or expression in the source
      */
     Object evalSystemScript(String source) {
-        return evalScript(source, systemNameSpace);
+        return evalScript(source, true);
     }
 
     /**
@@ -210,16 +243,19 @@ public final class MMScript
      * @return result of the evaluation of the last statement or expression in the source
      */
     public Object evalScript(String source) {
-        return evalScript(source, gameNameSpace);
+        return evalScript(source, false);
     }
 
-    // Evaluate a script in a given namespace.
-    private Object evalScript(String source, NameSpace ns) {
+    // Evaluate a script in the system or game namespace.
+    private Object evalScript(String source, boolean system) {
+        stackClient.enter();
         try {
-            return intr.eval(source, ns);
-        } catch (EvalError err) {
-            logger.log(Level.WARNING, "MMScript error:", err);
+            return system ? engine.evalSystem(source) : engine.eval(source);
+        } catch (ScriptException ex) {
+            logger.log(Level.WARNING, "MMScript error:", ex);
             return null;
+        } finally {
+            stackClient.exit();
         }
     }
 
@@ -232,17 +268,18 @@ public final class MMScript
      *         invoke the methods declared in the script.
      */
     public List<ScriptedMethod> getScriptedMethods(String id, String source) {
-        NameSpace ns = new NameSpace(gameNameSpace, id);
         List<ScriptedMethod> methods = null;
+        stackClient.enter();
         try {
-            intr.eval(source, ns);
-            BshMethod[] bshMethods = ns.getMethods();
-            methods = new ArrayList<>(bshMethods.length);
-            for (BshMethod m : bshMethods)
-                methods.add(new ScriptedMethod(m, ns));
-        } catch (EvalError err) {
-            logger.log(Level.WARNING, "MMScript error:", err);
+            final List<ScriptEngine.Method> engineMethods = engine.getMethods(id, source);
+            methods = new ArrayList<>(engineMethods.size());
+            for (ScriptEngine.Method m : engineMethods)
+                methods.add(new ScriptedMethod(m, engine));
+        } catch (ScriptException ex) {
+            logger.log(Level.WARNING, "MMScript error:", ex);
             methods = Collections.emptyList();
+        } finally {
+            stackClient.exit();
         }
         return methods;
     }
@@ -250,20 +287,40 @@ public final class MMScript
     /**
      * A ScriptedMethod encapsulates the particular machinery of our script engine,
      * and allows users to query and invoke methods defined in a script.
+     * <p/>
+     * Besides the general {@link #invoke(Object...)}, there are entry points for each arity up to three, and for
+     * the common boolean and string return types, which pass arguments to the engine in arrays reused from one
+     * invocation to the next, and check the result's type without boxing or casting; these should be preferred
+     * for methods that are called every turn.
      */
     public class ScriptedMethod
     {
-        private final BshMethod bshMethod;
-        private final NameSpace ns;
+        private static final int NUM_BUFFERS = 4;  // argument buffers for arities 0 to 3
+
+        private final ScriptEngine.Method method;
+        private final ScriptEngine methodEngine;
 
-        private ScriptedMethod(BshMethod bshMethod, NameSpace ns) {
-            this.bshMethod = bshMethod;
-            this.ns = ns;
+        // Argument arrays, indexed by arity, reused to avoid allocation; always cleared after using.
+        private final Object[][] argBuffers;
+        private int depth;  // how many invocations of this method are in progress
+
+        private ScriptedMethod(ScriptEngine.Method method, ScriptEngine methodEngine) {
+            this.method = method;
+            this.methodEngine = methodEngine;
+            argBuffers = new Object[NUM_BUFFERS][];
         }
 
         /** Return the name of the method. */
         public String getName() {
-            return bshMethod.getName();
+            return method.getName();
+        }
+
+        /**
+         * Return true if the method was declared in an engine other than the current one,
+         * and so can no longer be invoked.
+         */
+        public boolean isStale() {
+            return methodEngine != engine;
         }
 
         /**
@@ -273,12 +330,31 @@ public final class MMScript
          * @param value value; if null, the binding will be removed.
          */
         public void putBinding(String name, Object value) {
-            putBindingImpl(name, value, ns);
+            method.putBinding(name, value);
         }
 
         /** Remove a variable binding from the method's declaring namespace. */
         public void removeBinding(String name) {
-            putBindingImpl(name, null, ns);
+            method.putBinding(name, null);
+        }
+
+        /**
+         * Return the variables set in the method's declaring namespace, which include the top-level
+         * variables of its script, mapped from name to value.
+         */
+        public Map<String,Object> getVariables() {
+            return method.getVariables();
+        }
+
+        // Return an array in which to pass arguments. If the method is being invoked re-entrantly (say, by a
+        // script that calls it again), the engine may still be reading the buffer, so we return a new array.
+        private Object[] argBuffer(int arity) {
+            if (depth > 0 || arity >= NUM_BUFFERS)
+                return new Object[arity];
+            Object[] buf = argBuffers[arity];
+            if (buf == null)
+                buf = argBuffers[arity] = new Object[arity];
+            return buf;
         }
 
         /**
@@ -289,14 +365,22 @@ public final class MMScript
          * @return the string output emitted
          */
         public String invokeGetOutput(Object... args) {
+            final Object[] buf = argBuffer(args.length);
+            System.arraycopy(args, 0, buf, 0, args.length);
             String output;
             outputBuilder.setLength(0);
+            depth++;
+            stackClient.enter();
             try {
-                bshMethod.invoke(getBshArgs(args), intr);
+                method.invoke(buf);
                 output = outputBuilder.toString();
             } catch (Throwable t) {
                 output = "MMScript error: " + t.getMessage();
                 logger.warning(output);
+            } finally {
+                stackClient.exit();
+                depth--;
+                Arrays.fill(buf, null);
             }
             outputBuilder.setLength(0);
             return output;
@@ -309,32 +393,100 @@ public final class MMScript
          *          return-type method.
          */
         public Object invoke(Object... args) {
+            final Object[] buf = argBuffer(args.length);
+            System.arraycopy(args, 0, buf, 0, args.length);
+            return invokeImpl(buf);
+        }
+
+        /** Invoke the method with no arguments. See {@link #invoke(Object...)}. */
+        public Object invoke0() {
+            return invokeImpl(argBuffer(0));
+        }
+
+        /** Invoke the method with one argument. See {@link #invoke(Object...)}. */
+        public Object invoke1(Object a) {
+            final Object[] buf = argBuffer(1);
+            buf[0] = a;
+            return invokeImpl(buf);
+        }
+
+        /** Invoke the method with two arguments. See {@link #invoke(Object...)}. */
+        public Object invoke2(Object a, Object b) {
+            final Object[] buf = argBuffer(2);
+            buf[0] = a;
+            buf[1] = b;
+            return invokeImpl(buf);
+        }
+
+        /** Invoke the method with three arguments. See {@link #invoke(Object...)}. */
+        public Object invoke3(Object a, Object b, Object c) {
+            final Object[] buf = argBuffer(3);
+            buf[0] = a;
+            buf[1] = b;
+            buf[2] = c;
+            return invokeImpl(buf);
+        }
+
+        /**
+         * Invoke a method that returns a boolean, with one argument.
+         * @return the result, or false if the method failed or did not return a boolean
+         */
+        public boolean invokeBoolean(Object a) {
+            return toBoolean(invoke1(a));
+        }
+
+        /** Invoke a method that returns a boolean, with two arguments. See {@link #invokeBoolean(Object)}. */
+        public boolean invokeBoolean(Object a, Object b) {
+            return toBoolean(invoke2(a, b));
+        }
+
+        /** Invoke a method that returns a boolean, with three arguments. See {@link #invokeBoolean(Object)}. */
+        public boolean invokeBoolean(Object a, Object b, Object c) {
+            return toBoolean(invoke3(a, b, c));
+        }
+
+        /**
+         * Invoke a method that returns a string, with one argument.
+         * @return the result, or null if the method failed or did not return a string
+         */
+        public String invokeString(Object a) {
+            final Object result = invoke1(a);
+            if (result instanceof String)
+                return (String) result;
+            checkResult(result);
+            return null;
+        }
+
+        // The array must have been obtained from argBuffer().
+        private Object invokeImpl(Object[] args) {
             Object result;
+            depth++;
+            stackClient.enter();
             try {
-                result = bshMethod.invoke(getBshArgs(args), intr);
-                if (result instanceof Primitive) {
-                    if (result == Primitive.VOID)
-                        result = VOID_RETURN;
-                    else
-                        result = ((Primitive)result).getValue();
-                }
+                result = method.invoke(args);
             } catch (Throwable t) {
                 logger.log(Level.WARNING, "MMScript error:", t);
                 result = null;
+            } finally {
+                stackClient.exit();
+                depth--;
+                Arrays.fill(args, null);
             }
             outputBuilder.setLength(0);  // in case the script output something anyway
             return result;
         }
 
-        private Object[] getBshArgs(Object[] args) {
-            // optimize the case where no new array creation is required
-            if (ArrayUtils.indexOf(args, null) == -1)
-                return args;
+        private boolean toBoolean(Object result) {
+            if (result instanceof Boolean)
+                return (Boolean) result;
+            checkResult(result);
+            return false;
+        }
 
-            Object[] bshArgs = new Object[args.length];  // we need to wrap null values as Primitive.NULL
-            for (int i = 0; i < args.length; i++)
-                bshArgs[i] = args[i] == null ? Primitive.NULL : args[i];
-            return bshArgs;
+        // Note a result of the wrong type; null means the method failed, which has already been logged.
+        private void checkResult(Object result) {
+            if (result != null)
+                logger.warning("Unexpected result type in ScriptedMethod " + getName());
         }
 
         /**
@@ -1,10 +1,10 @@
 package com.illcode.meterman2;
 
 import com.illcode.meterman2.bundle.XBundle;
-import org.apache.commons.collections4.MapIterator;
-import org.apache.commons.collections4.map.LRUMap;
 import org.jdom2.Element;
+import paulscode.sound.ICodec;
 import paulscode.sound.Library;
+import paulscode.sound.SoundBuffer;
 import paulscode.sound.SoundSystem;
 import paulscode.sound.SoundSystemConfig;
 import paulscode.sound.SoundSystemException;
@@ -13,11 +13,21 @@ import paulscode.sound.codecs.CodecWav;
 import paulscode.sound.libraries.LibraryJOAL;
 import paulscode.sound.libraries.LibraryJavaSound;
 
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import java.util.logging.Level;
 
 import static com.illcode.meterman2.MMLogging.logger;
@@ -30,6 +40,10 @@ import static com.illcode.meterman2.MMLogging.logger;
  * <p/>
  * Clients will need to add source mappings by calling {@link #addSourceMapping(String, Path, boolean)} before audio
  * can be played.
+ * <p/>
+ * Sounds are normally decoded when they're first played, which can delay their playback noticeably. Sounds that
+ * are likely to be played soon can be decoded ahead of time on a background thread by
+ * {@link #prefetchSource(String, boolean) prefetching} them.
  */
 public final class MMSound
 {
@@ -40,12 +54,25 @@ public final class MMSound
     /** Map from source name to its associated record for all registered sources. */
     private Map<String,SoundRecord> sourceMap;
 
-    /** Map frop source name to record for loaded sources. */
-    private LRUAudioCacheMap loadedSources;
+    /** Map from source name to record for loaded sources. */
+    private AudioCache loadedSources;
 
     /** Source name of the music currently playing (null if no music is playing). */
     private String musicSource;
 
+    /** Decodes prefetched sounds; null if prefetching is disabled. */
+    private ExecutorService soundLoader;
+
+    /** Sources being decoded by the soundLoader, not yet in loadedSources. */
+    private Map<String,SoundRecord> pendingSources;
+
+    /** Prefetched sources whose audio data has been handed to the SoundSystem, waiting to be
+     *  added to loadedSources by registerPrefetchedSources(). Filled by the soundLoader thread. */
+    private ConcurrentLinkedQueue<PrefetchedSource> prefetchedSources;
+
+    /** Whether decoded audio must have its byte order reversed for our sound library. */
+    private boolean reverseByteOrder;
+
     /**
      * Create an instance of the sound manager, starting any threads it may use.
      */
@@ -74,11 +101,26 @@ public final class MMSound
             logger.log(Level.WARNING, "MMSound.init()", ex);
         }
 
-        final int cacheSize = Utils.intPref("sound-cache-size", 16);
-        sourceMap = new HashMap<>(cacheSize * 2);
-        loadedSources = new LRUAudioCacheMap(cacheSize);
+        reverseByteOrder = libraryType == LibraryJOAL.class;
+
+        sourceMap = new HashMap<>(64);
+        loadedSources = new AudioCache(Utils.intPref("sound-cache-mb", 32) * 1024L * 1024L,
+                                       Utils.intPref("music-cache-size", 2));
         musicSource = null;
 
+        pendingSources = new HashMap<>();
+        prefetchedSources = new ConcurrentLinkedQueue<>();
+        if (Utils.booleanPref("sound-prefetch", true)) {
+            soundLoader = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    final Thread t = new Thread(r, "sound-loader");
+                    t.setDaemon(true);
+                    t.setPriority(Thread.MIN_PRIORITY);
+                    return t;
+                }
+            });
+        }
+
         soundEnabled = Utils.booleanPref("sound-enabled", true);
         musicEnabled = Utils.booleanPref("music-enabled", true);
     }
@@ -87,6 +129,10 @@ public final class MMSound
      * Dispose of resources allocated during initialization, and stop any extra threads.
      */
     void dispose() {
+        if (soundLoader != null) {
+            soundLoader.shutdownNow();
+            soundLoader = null;
+        }
         clearAudio();
         soundSystem.cleanup();
     }
@@ -151,17 +197,22 @@ public final class MMSound
      * @param name source name, as given in {@link #addSourceMapping(String, Path, boolean)}.
      */
     public void loadSource(String name) {
+        registerPrefetchedSources();
         SoundRecord rec = loadedSources.get(name);  // moves name to the MRU position in the cache
         if (rec == null) {
             rec = sourceMap.get(name);
             if (rec == null)
                 return;
+            loadedSources.misses++;
             final URL url = rec.getUrl();
             final String filename = rec.getFilename();
             if (rec.isMusic) {
                 soundSystem.newStreamingSource(false, name, url, filename,
                     true, 0, 0, 0, SoundSystemConfig.ATTENUATION_NONE, 0);
             } else {
+                // The SoundSystem decodes the sound on its own thread, so we weigh it by its header.
+                if (rec.pcmBytes == 0)
+                    rec.pcmBytes = estimatePcmBytes(rec.path);
                 soundSystem.newSource(false, name, url, filename,
                     false, 0, 0, 0, SoundSystemConfig.ATTENUATION_NONE, 0);
             }
@@ -169,11 +220,73 @@ public final class MMSound
         }
     }
 
+    /**
+     * Begin decoding a sound on a background thread, if it's not already loaded, so that it can be played
+     * without delay. This method never waits for the decoding to finish. Music, which is streamed, is not prefetched.
+     * <p/>
+     * Prefetched sounds count against the source cache's byte budget like any other. A speculative prefetch, of
+     * a sound that may or may not be played, is kept only if the cache has room for it, so as not to evict sounds
+     * that have actually been used; other prefetches evict the least recently used sources as necessary.
+     * @param name source name, as given in {@link #addSourceMapping(String, Path, boolean)}.
+     * @param speculative true if the sound may well not be played (for instance, a sound of a neighboring room)
+     */
+    public void prefetchSource(String name, boolean speculative) {
+        if (soundLoader == null || !soundEnabled)
+            return;
+        registerPrefetchedSources();
+        if (loadedSources.containsKey(name) || pendingSources.containsKey(name))
+            return;
+        final SoundRecord rec = sourceMap.get(name);
+        if (rec == null || rec.isMusic)
+            return;
+        if (speculative && loadedSources.isFull())
+            return;
+        pendingSources.put(name, rec);
+        soundLoader.execute(new PrefetchTask(name, rec, speculative));
+    }
+
+    /**
+     * Prefetch a set of sounds.
+     * @param names source names
+     * @param speculative true if the sounds may well not be played
+     * @see #prefetchSource(String, boolean)
+     */
+    public void prefetchSources(Collection<String> names, boolean speculative) {
+        for (String name : names)
+            prefetchSource(name, speculative);
+    }
+
+    // Add sources whose prefetching has finished to loadedSources. This is done on the thread using MMSound,
+    // so that the cache needn't be synchronized.
+    private void registerPrefetchedSources() {
+        PrefetchedSource ps;
+        while ((ps = prefetchedSources.poll()) != null) {
+            final String name = ps.name;
+            final SoundRecord rec = ps.rec;
+            if (pendingSources.get(name) == rec)
+                pendingSources.remove(name);
+            if (!ps.loaded || loadedSources.containsKey(name))
+                continue;
+            if (sourceMap.get(name) != rec ||   // the mapping has since been removed or replaced
+                    (ps.speculative && !loadedSources.hasRoomFor(ps.pcmBytes))) {
+                soundSystem.unloadSound(rec.getFilename());
+                continue;
+            }
+            rec.pcmBytes = ps.pcmBytes;
+            // The SoundSystem already has the audio data, so this doesn't decode again.
+            soundSystem.newSource(false, name, rec.getUrl(), rec.getFilename(),
+                false, 0, 0, 0, SoundSystemConfig.ATTENUATION_NONE, 0);
+            loadedSources.put(name, rec);
+            loadedSources.prefetches++;
+        }
+    }
+
     /**
      * Unload a source, freeing any resources it used.
      * @param name source name
      */
     public void unloadSource(String name) {
+        registerPrefetchedSources();
         SoundRecord rec = loadedSources.remove(name);
         if (rec != null) {
             if (musicSource != null && musicSource.equals(name))
@@ -187,9 +300,8 @@ public final class MMSound
      */
     public void clearAudio() {
         stopMusic();
-        MapIterator<String,SoundRecord> iter = loadedSources.mapIterator();
-        while (iter.hasNext())
-            removeLoadedSourceImpl(iter.next(), iter.getValue());
+        registerPrefetchedSources();
+        pendingSources.clear();  // any still being decoded are unloaded when they finish
         loadedSources.clear();
         sourceMap.clear();
     }
@@ -201,6 +313,14 @@ public final class MMSound
             soundSystem.unloadSound(rec.getFilename());
     }
 
+    /**
+     * Return a summary of the source cache's usage, hit rate, and evictions, for use in tuning
+     * the "sound-cache-mb" and "music-cache-size" config properties.
+     */
+    public String getCacheStats() {
+        return loadedSources.getStats();
+    }
+
     /**
      * Set a global volume multiplier.
      * @param volume global volume multiplier (nominal is 1.0)
@@ -288,11 +408,81 @@ public final class MMSound
         }
     }
 
+    /**
+     * Return the number of bytes a sound will occupy once decoded to PCM, as determined from its file
+     * without decoding it. For Ogg Vorbis files, this is read from the granule position of the last page;
+     * for other formats, from the header as read by {@link AudioSystem}. If neither works, the file size is used.
+     */
+    static long estimatePcmBytes(Path path) {
+        try {
+            final long fileSize = Files.size(path);
+            long pcmBytes = -1;
+            if (path.toString().toLowerCase(Locale.ROOT).endsWith(".ogg")) {
+                pcmBytes = oggPcmBytes(path, fileSize);
+            } else {
+                try (InputStream in = new BufferedInputStream(Utils.newInputStream(path))) {
+                    final AudioFileFormat format = AudioSystem.getAudioFileFormat(in);
+                    if (format.getFrameLength() != AudioSystem.NOT_SPECIFIED)
+                        pcmBytes = (long) format.getFrameLength() * format.getFormat().getFrameSize();
+                } catch (UnsupportedAudioFileException ex) {
+                    pcmBytes = -1;
+                }
+            }
+            return pcmBytes > 0 ? pcmBytes : fileSize;
+        } catch (IOException ex) {
+            logger.log(Level.FINE, "MMSound.estimatePcmBytes()", ex);
+            return 0;
+        }
+    }
+
+    // Vorbis is decoded to 16-bit samples, so the PCM size is (samples per channel) * channels * 2.
+    private static long oggPcmBytes(Path path, long fileSize) throws IOException {
+        final byte[] head = new byte[64];
+        final byte[] tail = new byte[(int) Math.min(fileSize, 65536)];
+        try (InputStream in = Utils.newInputStream(path)) {
+            if (readFully(in, head) < 58)
+                return -1;
+            // The first page holds the identification header, whose packet follows the segment table.
+            final int packet = 27 + (head[26] & 0xFF);
+            if (packet + 12 > head.length || head[packet] != 1)
+                return -1;
+            final int channels = head[packet + 11] & 0xFF;
+            long toSkip = fileSize - tail.length - head.length;
+            while (toSkip > 0) {
+                final long n = in.skip(toSkip);
+                if (n <= 0)
+                    return -1;
+                toSkip -= n;
+            }
+            final int len = tail.length + (int) Math.min(0, fileSize - tail.length - head.length);
+            if (readFully(in, tail) < len || len < 14)
+                return -1;
+            // The granule position of the last page is the total number of samples per channel.
+            for (int i = len - 14; i >= 0; i--) {
+                if (tail[i] == 'O' && tail[i+1] == 'g' && tail[i+2] == 'g' && tail[i+3] == 'S') {
+                    long granule = 0;
+                    for (int j = 13; j >= 6; j--)
+                        granule = (granule << 8) | (tail[i+j] & 0xFF);
+                    return granule > 0 ? granule * channels * 2 : -1;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static int readFully(InputStream in, byte[] b) throws IOException {
+        int total = 0, n;
+        while (total < b.length && (n = in.read(b, total, b.length - total)) > 0)
+            total += n;
+        return total;
+    }
+
     // Used as entries in sourceMap and loadedSources.
     static final class SoundRecord
     {
         final Path path;
         final boolean isMusic;
+        long pcmBytes;  // decoded size of a sound, once loaded; music is not counted
 
         SoundRecord(Path path, boolean isMusic) {
             this.path = path;
@@ -307,7 +497,7 @@ public final class MMSound
         /** Get the URL of the path, or null if the URL is malformed. */
         URL getUrl() {
             try {
-                return path.toUri().toURL();
+                return Utils.pathToURL(path);
             } catch (MalformedURLException e) {
                 logger.warning("MMSound: Malformed URL for Path: " + path.toString());
                 return null;
@@ -315,22 +505,175 @@ public final class MMSound
         }
     }
 
-    private class LRUAudioCacheMap extends LRUMap<String,SoundRecord>
+    // Decodes a sound on the soundLoader thread and hands the audio data to the SoundSystem.
+    private final class PrefetchTask implements Runnable
+    {
+        private final String name;
+        private final SoundRecord rec;
+        private final boolean speculative;
+
+        PrefetchTask(String name, SoundRecord rec, boolean speculative) {
+            this.name = name;
+            this.rec = rec;
+            this.speculative = speculative;
+        }
+
+        public void run() {
+            boolean loaded = false;
+            long pcmBytes = 0;
+            final String filename = rec.getFilename();
+            final URL url = rec.getUrl();
+            final ICodec codec = url == null ? null : SoundSystemConfig.getCodec(filename);
+            if (codec != null) {
+                try {
+                    codec.reverseByteOrder(reverseByteOrder);
+                    if (codec.initialize(url)) {
+                        final SoundBuffer buffer = codec.readAll();
+                        if (buffer != null && buffer.audioData != null) {
+                            pcmBytes = buffer.audioData.length;
+                            soundSystem.loadSound(buffer.audioData, buffer.audioFormat, filename);
+                            loaded = true;
+                        }
+                    }
+                } catch (RuntimeException ex) {
+                    logger.log(Level.WARNING, "MMSound prefetch of " + filename, ex);
+                } finally {
+                    codec.cleanup();
+                }
+            }
+            prefetchedSources.add(new PrefetchedSource(name, rec, speculative, loaded, pcmBytes));
+        }
+    }
+
+    private static final class PrefetchedSource
+    {
+        final String name;
+        final SoundRecord rec;
+        final boolean speculative;
+        final boolean loaded;
+        final long pcmBytes;
+
+        PrefetchedSource(String name, SoundRecord rec, boolean speculative, boolean loaded, long pcmBytes) {
+            this.name = name;
+            this.rec = rec;
+            this.speculative = speculative;
+            this.loaded = loaded;
+            this.pcmBytes = pcmBytes;
+        }
+    }
+
+    /**
+     * The cache of loaded sources. Sounds are budgeted by their decoded PCM size, and evicted least recently
+     * used first. Music, which is streamed and so holds little memory, is not counted against the byte budget;
+     * instead, a fixed number of music sources are kept loaded, and the music currently playing is never evicted.
+     */
+    private final class AudioCache
     {
-        LRUAudioCacheMap(int maxSize) {
-            super(maxSize, true);
+        private final LinkedHashMap<String,SoundRecord> sounds, music;  // in access order
+        private final long byteBudget;
+        private final int musicLimit;
+        private long bytes;
+
+        long hits, misses, prefetches, evictions, evictedBytes;
+
+        AudioCache(long byteBudget, int musicLimit) {
+            this.byteBudget = byteBudget;
+            this.musicLimit = Math.max(musicLimit, 1);
+            sounds = new LinkedHashMap<>(32, 0.75f, true);
+            music = new LinkedHashMap<>(8, 0.75f, true);
+        }
+
+        /** Return the record of a loaded source, moving it to the MRU position, or null if it's not loaded. */
+        SoundRecord get(String name) {
+            SoundRecord rec = sounds.get(name);
+            if (rec == null)
+                rec = music.get(name);
+            if (rec != null)
+                hits++;
+            return rec;
+        }
+
+        boolean containsKey(String name) {
+            return sounds.containsKey(name) || music.containsKey(name);
         }
 
-        protected boolean removeLRU(LinkEntry<String,SoundRecord> entry) {
-            final String name = entry.getKey();
-            final SoundRecord rec = entry.getValue();
-            if (musicSource != null && musicSource.equals(name)) {
-                // Don't evict current music; rather, go on to the next source in the cache.
-                return false;
+        /** Returns true if the sounds loaded have used up the byte budget. */
+        boolean isFull() {
+            return bytes >= byteBudget;
+        }
+
+        /** Returns true if a sound of the given size can be added without evicting anything. */
+        boolean hasRoomFor(long pcmBytes) {
+            return bytes + pcmBytes <= byteBudget;
+        }
+
+        /** Add a loaded source, evicting others as necessary. */
+        void put(String name, SoundRecord rec) {
+            if (rec.isMusic) {
+                music.put(name, rec);
+                if (music.size() > musicLimit)
+                    evict(music, name);
             } else {
+                sounds.put(name, rec);
+                bytes += rec.pcmBytes;
+                if (bytes > byteBudget)
+                    evict(sounds, name);
+            }
+        }
+
+        // Evict LRU entries (but never 'keep', which was just added, or the current music) until within limits.
+        private void evict(LinkedHashMap<String,SoundRecord> map, String keep) {
+            for (Iterator<Map.Entry<String,SoundRecord>> iter = map.entrySet().iterator(); iter.hasNext(); ) {
+                if (map == sounds ? bytes <= byteBudget : map.size() <= musicLimit)
+                    break;
+                final Map.Entry<String,SoundRecord> entry = iter.next();
+                final String name = entry.getKey();
+                final SoundRecord rec = entry.getValue();
+                if (name.equals(keep) || name.equals(musicSource))
+                    continue;
+                iter.remove();
+                if (!rec.isMusic) {
+                    bytes -= rec.pcmBytes;
+                    evictedBytes += rec.pcmBytes;
+                }
+                evictions++;
                 removeLoadedSourceImpl(name, rec);
-                return true;
             }
         }
+
+        /** Remove a source from the cache, without removing it from the SoundSystem. */
+        SoundRecord remove(String name) {
+            SoundRecord rec = sounds.remove(name);
+            if (rec != null)
+                bytes -= rec.pcmBytes;
+            else
+                rec = music.remove(name);
+            return rec;
+        }
+
+        /** Remove all sources from the cache and from the SoundSystem. */
+        void clear() {
+            for (Map.Entry<String,SoundRecord> entry : sounds.entrySet())
+                removeLoadedSourceImpl(entry.getKey(), entry.getValue());
+            for (Map.Entry<String,SoundRecord> entry : music.entrySet())
+                removeLoadedSourceImpl(entry.getKey(), entry.getValue());
+            sounds.clear();
+            music.clear();
+            bytes = 0;
+        }
+
+        String getStats() {
+            final long lookups = hits + misses;
+            final StringBuilder sb = new StringBuilder(256);
+            sb.append("sounds: ").append(sounds.size()).append(", ").append(bytes / 1024).append(" / ")
+              .append(byteBudget / 1024).append(" KB\n");
+            sb.append("music: ").append(music.size()).append(" / ").append(musicLimit).append('\n');
+            sb.append(hits).append(" hits, ").append(misses).append(" misses");
+            if (lookups > 0)
+                sb.append(" (").append(hits * 100 / lookups).append("% hit rate)");
+            sb.append(", ").append(prefetches).append(" prefetched\n");
+            sb.append(evictions).append(" evictions (").append(evictedBytes / 1024).append(" KB of sounds)\n");
+            return sb.toString();
+        }
     }
 }
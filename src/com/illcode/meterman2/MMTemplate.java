@@ -34,11 +34,17 @@ public class MMTemplate
     private Map<String,Object> systemHash;
 
     // Used for push/pop binding.
-    private Map<String,Deque<Object>> savedBindings;
+    private BindingStack bindingStack;
+    private BindingStack.Client stackClient;
 
     private Set<String> systemTemplates, gameTemplates;
 
-    public MMTemplate() {
+    /**
+     * Create a new MMTemplate instance.
+     * @param bindingStack the binding stack, shared with the script engine, from which
+     *          pushed bindings are carried into the template data model
+     */
+    public MMTemplate(BindingStack bindingStack) {
         cfg = new Configuration(Configuration.VERSION_2_3_28);
         cfg.setDefaultEncoding("UTF-8");
         cfg.setLogTemplateExceptions(false);
@@ -62,7 +68,16 @@ public class MMTemplate
         gameTemplates = new HashSet<>(40);
         rootHash = new HashMap<>();
         systemHash = new HashMap<>();
-        savedBindings = new HashMap<>();
+        this.bindingStack = bindingStack;
+        stackClient = new BindingStack.Client(bindingStack, BindingStack.TEMPLATE) {
+            Object getBinding(String name) {
+                return rootHash.get(name);
+            }
+
+            void setBinding(String name, Object value) {
+                putBinding(name, value);
+            }
+        };
     }
 
     /** Free any resources allocated by this MMTemplate instance. */
@@ -70,7 +85,8 @@ public class MMTemplate
         clearTemplateCache();
         clearGameTemplates();
         clearSystemTemplates();
-        savedBindings = null;
+        stackClient = null;
+        bindingStack = null;
         systemHash = null;
         rootHash = null;
         gameTemplates = null;
@@ -183,19 +199,14 @@ public class MMTemplate
     }
 
     /**
-     * Saves the current value of a binding in root hash and sets a new one.
+     * Pushes a binding, for the template engine only, onto the binding stack. It takes effect in the
+     * root hash when a template is next rendered.
      * @param name variable name
      * @param value value; if null, the binding will be removed.
+     * @see GameUtils#pushBinding(String, Object)
      */
     public void pushBinding(String name, Object value) {
-        final Object oldVal = rootHash.get(name);
-        Deque<Object> savedVals = savedBindings.get(name);
-        if (savedVals == null) {
-            savedVals = new LinkedList<>();
-            savedBindings.put(name, savedVals);
-        }
-        savedVals.push(oldVal);
-        putBinding(name, value);
+        bindingStack.push(name, value, BindingStack.TEMPLATE);
     }
 
     /**
@@ -203,11 +214,7 @@ public class MMTemplate
      * @param name variable name
      */
     public void popBinding(String name) {
-        Object previousVal = null;
-        final Deque<Object> savedVals = savedBindings.get(name);
-        if (savedVals != null && !savedVals.isEmpty())
-            previousVal = savedVals.pop();
-        putBinding(name, previousVal);
+        bindingStack.pop(name, BindingStack.TEMPLATE);
     }
 
     /**
@@ -241,6 +248,7 @@ public class MMTemplate
     void clearBindings() {
         rootHash.clear();
         rootHash.putAll(systemHash);
+        stackClient.reset();
     }
 
     /**
@@ -280,11 +288,14 @@ public class MMTemplate
      * @param out the writer to which the template output is written. The writer is flushed, but not closed.
      */
     public void renderTemplate(String templateName, Map<String,Object> root, Writer out) {
+        stackClient.enter();
         try {
             Template t = cfg.getTemplate(templateName);
             t.process(root, out);
         } catch (IOException|TemplateException e) {
             logger.log(Level.WARNING, "Template rendering error: ", e);
+        } finally {
+            stackClient.exit();
         }
     }
 
@@ -3,6 +3,7 @@ package com.illcode.meterman2;
 import com.illcode.meterman2.bundle.BundleGroup;
 import com.illcode.meterman2.bundle.XBundle;
 import com.illcode.meterman2.state.KryoPersistence;
+import com.illcode.meterman2.ui.GuiUtils;
 import com.illcode.meterman2.ui.MMUI;
 
 import java.io.FileReader;
@@ -12,6 +13,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Properties;
+import java.util.concurrent.*;
 import java.util.logging.Level;
 
 import static com.illcode.meterman2.MMLogging.logger;
@@ -26,7 +28,8 @@ public final class Meterman2
     /** The MMAssets instance handling the game assets. */
     public static MMAssets assets;
 
-    /** The BundleGroup instance managing system and game bundles. */
+    /** The BundleGroup instance managing system and game bundles.
+     *  This, along with template, script, persistence, and gm, belongs to the active {@link GameSession}. */
     public static BundleGroup bundles;
 
     /** The MMUI instance displaying the current game */
@@ -47,6 +50,10 @@ public final class Meterman2
     /** MMScript instance that handles our scripting needs. */
     public static MMScript script;
 
+    /** Package-local BindingStack shared by template and script, through which
+     *  {@link GameUtils#pushBinding(String, Object)} binds variables. */
+    static BindingStack bindingStack;
+
     /** Package-local KryoPersistence instance used for saving and loading game state. */
     static KryoPersistence persistence;
 
@@ -56,7 +63,11 @@ public final class Meterman2
     /** GamesList instance responsible for discovery of games at startup time. */
     public static GamesList gamesList;
 
+    /** The thread on which game turns run. */
+    static GameThread gameThread;
+
     public static void main(String[] args) throws IOException {
+        final long startNanos = System.nanoTime();
         prefsPath = Paths.get("config/meterman2.properties");
         if (!loadPrefs(prefsPath)) {
             System.err.println("Error loading prefs from " + prefsPath.toString());
@@ -89,44 +100,97 @@ public final class Meterman2
         assets.setAssetsPath(assetsPath);
         assets.setSystemAssetsPath(Utils.pref("system-assets-path", "meterman2"));
 
-        bundles = new BundleGroup();
-        final XBundle sysBundle = XBundle.loadFromPath(assets.pathForSystemAsset("system-bundle.xml"));
-        final XBundle keybindings = XBundle.loadFromPath(assets.pathForSystemAsset("keybindings.xml"));
-        bundles.setSystemBundles(sysBundle, keybindings);
+        // Subsystems that don't depend on one another are initialized in parallel, and
+        // we wait for each only when it's first needed.
+        final ExecutorService startupExecutor = Executors.newFixedThreadPool(
+            Math.max(1, Utils.intPref("startup-threads", 4)), new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    final Thread t = new Thread(r, "startup");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        final Future<XBundle[]> systemBundlesFuture = startupExecutor.submit(new Callable<XBundle[]>() {
+            public XBundle[] call() {
+                return new XBundle[] {
+                    XBundle.loadFromPath(assets.pathForSystemAsset("system-bundle.xml")),
+                    XBundle.loadFromPath(assets.pathForSystemAsset("keybindings.xml"))
+                };
+            }
+        });
+        final Future<MMSound> soundFuture = startupExecutor.submit(new Callable<MMSound>() {
+            public MMSound call() {
+                return new MMSound();  // probing for a sound library can take a while
+            }
+        });
+        final Future<GamesList> gamesListFuture = startupExecutor.submit(new Callable<GamesList>() {
+            public GamesList call() {
+                return new GamesList();
+            }
+        });
+        final Future<?> fontsFuture = startupExecutor.submit(new Runnable() {
+            public void run() {
+                GuiUtils.registerFontDir(fontPath);
+            }
+        });
+        startupExecutor.shutdown();
+
+        // The session sets up bundles, template, script, persistence, and gm.
+        GameSession.create(awaitStartupTask(systemBundlesFuture));
 
         actions = new MMActions();
         SystemActions.init();
         attributes = new MMAttributes();
         SystemAttributes.init();
 
-        template = new MMTemplate();
-        template.initSystemHash(bundles);
-        script = new MMScript();
-        sound = new MMSound();
-        persistence = new KryoPersistence();
-        gamesList = new GamesList();
-        gm = new GameManager();
+        sound = awaitStartupTask(soundFuture);
+        gamesList = awaitStartupTask(gamesListFuture);
+        gameThread = new GameThread();
         ui = new MMUI(new MMHandler());
+        ui.setGameThread(gameThread.getThread());
 
         addScriptBindings();
 
-        ui.show();
+        ui.show(fontsFuture);
+        logger.info(String.format("Startup completed in %d ms",
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos)));
+    }
+
+    // Wait for a startup task to finish, rethrowing anything it threw.
+    private static <T> T awaitStartupTask(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted during startup", ex);
+        } catch (ExecutionException ex) {
+            final Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new IllegalStateException(cause);
+        }
     }
 
     /** Called when the program is shutting down. */
     public static void shutdown() {
         logger.info("Meterman shutting down...");
 
-        gm.dispose();  // the ui must still be alive when we dispose the GameManager
+        gameThread.call(new Callable<Void>() {
+            public Void call() {
+                // The session disposes gm, persistence, script, template, and bundles;
+                // the ui must still be alive when we dispose the GameManager.
+                GameSession.getActiveSession().dispose();
+                return null;
+            }
+        });
+        gameThread.dispose();
         ui.dispose();
         gamesList.dispose();
-        persistence.dispose();
         sound.dispose();
-        script.dispose();
-        template.dispose();
         attributes.dispose();
         actions.dispose();
-        bundles.dispose();
         assets.dispose();
 
         savePrefs(prefsPath);
@@ -153,7 +217,8 @@ public final class Meterman2
         }
     }
 
-    private static void addScriptBindings() {
+    // Add the system bindings to the active session's script interpreter.
+    static void addScriptBindings() {
         script.putSystemBinding("logger", logger);
         script.putSystemBinding("ui", ui);
         script.putSystemBinding("gm", gm);
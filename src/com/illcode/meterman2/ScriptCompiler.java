@@ -0,0 +1,366 @@
+package com.illcode.meterman2;
+
+import javax.tools.*;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.OutputStream;
+import java.lang.reflect.*;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.Level;
+
+import static com.illcode.meterman2.MMLogging.logger;
+
+/**
+ * Compiles scripts into JVM classes that implement an entity or room interface directly, so that methods
+ * called often enough can run as bytecode rather than through the interpreter.
+ * <p/>
+ * A script marked for compilation in a bundle (<tt>&lt;script compile="true"&gt;</tt>) is interpreted like any
+ * other, but its source must also be valid as the body of a Java class: methods and parameters are declared
+ * with their types, and top-level variables are fields. The class is compiled with the same imports that
+ * scripts have, plus static imports of {@link SystemAttributes} and {@link GameUtils}; a generated subclass
+ * then implements the interface by calling the script's methods. Bindings made in the script engine are not
+ * visible to compiled code, which should use the static references in {@link Meterman2} instead.
+ * <p/>
+ * Compilation runs on a background thread, so that it doesn't hold up the turn during which a script becomes hot.
+ * Once it's done, the script switches to the compiled class all at once: the class is instantiated, and the
+ * current values of the script's top-level variables are copied into the corresponding fields, after which the
+ * script's state lives in those fields.
+ * <p/>
+ * Scripts are compiled with the platform compiler (<tt>javax.tools</tt>), which is present only when running
+ * on a JDK. Where it's missing, or a script fails to compile, the script's methods stay interpreted.
+ */
+public final class ScriptCompiler
+{
+    private static final String[] DEFAULT_IMPORTS = {
+        "java.util.*",
+        "com.illcode.meterman2.*",
+        "com.illcode.meterman2.model.*",
+        "com.illcode.meterman2.MMActions.Action",
+        "com.illcode.meterman2.model.TopicMap.Topic",
+        "com.illcode.meterman2.util.Pathfinder",
+        "com.illcode.meterman2.util.Dialogs",
+        "com.illcode.meterman2.util.Dialogs.DialogPassage",
+        "com.illcode.meterman2.util.Dialogs.DialogSequence",
+        "static com.illcode.meterman2.SystemAttributes.*",
+        "static com.illcode.meterman2.GameUtils.*"
+    };
+
+    private final JavaCompiler compiler;
+    private final int threshold;
+    private final List<String> imports;
+    private ClassLoader classLoader;
+    private int classCounter;
+    private ExecutorService executor;  // created when first needed
+
+    ScriptCompiler() {
+        compiler = Utils.booleanPref("script-compilation", true) ? ToolProvider.getSystemJavaCompiler() : null;
+        threshold = Math.max(1, Utils.intPref("script-compile-threshold", 200));
+        imports = new ArrayList<>(Arrays.asList(DEFAULT_IMPORTS));
+        classLoader = ScriptCompiler.class.getClassLoader();
+        if (compiler == null)
+            logger.info("Script compilation is not available; scripts will be interpreted.");
+    }
+
+    /** Return true if scripts can be compiled. */
+    public boolean isEnabled() {
+        return compiler != null;
+    }
+
+    /** Return the number of times a script's methods are invoked through the interpreter before it is compiled. */
+    public int getThreshold() {
+        return threshold;
+    }
+
+    /** Set the class loader through which compiled scripts find classes; see {@link MMScript#setClassLoader}. */
+    void setClassLoader(ClassLoader loader) {
+        classLoader = loader;
+    }
+
+    /**
+     * Add an import to those with which scripts are compiled.
+     * @param name a class name, or a package name followed by <tt>.*</tt>
+     */
+    void addImport(String name) {
+        if (!imports.contains(name))
+            imports.add(name);
+    }
+
+    /** Stop compiling any scripts not yet compiled. */
+    void dispose() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    /**
+     * Start compiling a script into a class that implements an interface, on a background thread.
+     * @param id script ID, used in log messages
+     * @param source script source
+     * @param iface the interface to implement, such as {@link com.illcode.meterman2.model.EntityImpl}
+     * @param methodNames the names of the interface methods that the script defines. Any other interface
+     *          method of the compiled implementation does nothing and returns null, false, or zero, as the
+     *          interpreter does for a method the script doesn't define.
+     * @param <T> type of the interface
+     * @return a future for the compiled class, which will be null if the script could not be compiled;
+     *          pass it to {@link #instantiate} once it's done
+     */
+    public <T> Future<Class<? extends T>> compileInBackground(final String id, final String source,
+                                                              final Class<T> iface, final Set<String> methodNames) {
+        if (compiler == null)
+            return null;
+        // The class name, imports, and class loader are fixed now, since the game may change the latter two.
+        final String className = "MMCompiledScript" + (++classCounter);
+        final List<String> currentImports = new ArrayList<>(imports);
+        final ClassLoader loader = classLoader;
+        if (executor == null) {
+            executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    final Thread t = new Thread(r, "script-compiler");
+                    t.setDaemon(true);
+                    t.setPriority(Thread.MIN_PRIORITY);
+                    return t;
+                }
+            });
+        }
+        return executor.submit(new Callable<Class<? extends T>>() {
+            public Class<? extends T> call() {
+                return compile(id, source, iface, methodNames, className, currentImports, loader);
+            }
+        });
+    }
+
+    /**
+     * Instantiate a compiled script, and copy the current values of its top-level variables into the
+     * corresponding fields. This should be called on the thread that runs the script's methods.
+     * @param id script ID, used in log messages
+     * @param compiled the future returned by {@link #compileInBackground}, which must be done
+     * @param variables the script's variables, as returned by
+     *          {@link com.illcode.meterman2.MMScript.ScriptedMethod#getVariables()}
+     * @param <T> type of the interface
+     * @return the compiled implementation, or null if the script could not be compiled or instantiated
+     */
+    public <T> T instantiate(String id, Future<Class<? extends T>> compiled, Map<String,Object> variables) {
+        try {
+            final Class<? extends T> c = compiled.get();
+            if (c == null)
+                return null;
+            final T impl = c.getConstructor().newInstance();
+            // The script's variables are fields of the class generated from its source, the superclass.
+            for (Field f : c.getSuperclass().getDeclaredFields()) {
+                final int mods = f.getModifiers();
+                if (Modifier.isStatic(mods) || Modifier.isFinal(mods) || !variables.containsKey(f.getName()))
+                    continue;
+                final Object value = variables.get(f.getName());
+                if (value == null && f.getType().isPrimitive())
+                    continue;
+                try {
+                    f.setAccessible(true);
+                    f.set(impl, value);
+                } catch (IllegalArgumentException ex) {
+                    logger.warning("Script " + id + ": variable " + f.getName() + " has a value of the wrong type: " +
+                        value.getClass().getName());
+                }
+            }
+            return impl;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException ex) {
+            logger.log(Level.WARNING, "Script " + id + " could not be compiled:", ex.getCause());
+            return null;
+        } catch (Exception|LinkageError ex) {
+            logger.log(Level.WARNING, "Script " + id + " could not be instantiated:", ex);
+            return null;
+        }
+    }
+
+    // Compile a script into a class; this runs on the compiler thread.
+    private <T> Class<? extends T> compile(String id, String source, Class<T> iface, Set<String> methodNames,
+                                           String className, List<String> imports, ClassLoader loader) {
+        final StringBuilder sb = new StringBuilder(source.length() + 2048);
+        for (String name : imports)
+            sb.append("import ").append(name).append(";\n");
+        sb.append("class ").append(className).append("Methods {\n");
+        final int firstLine = countLines(sb) + 1;
+        sb.append(source).append("\n}\n");
+        writeImplClass(sb, className, iface, methodNames);
+
+        final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        final MemoryFileManager fileManager =
+            new MemoryFileManager(compiler.getStandardFileManager(diagnostics, null, null));
+        final List<String> options = Arrays.asList("-classpath", getClassPath(loader), "-proc:none", "-nowarn", "-g");
+        final JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics, options, null,
+            Collections.singletonList(new SourceFile(className, sb.toString())));
+        final long start = System.nanoTime();
+        if (!task.call()) {
+            final StringBuilder msg = new StringBuilder("Script ").append(id).append(" could not be compiled:");
+            for (Diagnostic<? extends JavaFileObject> d : diagnostics.getDiagnostics())
+                if (d.getKind() == Diagnostic.Kind.ERROR)
+                    msg.append("\n  line ").append(d.getLineNumber() - firstLine + 1).append(": ")
+                       .append(d.getMessage(null));
+            logger.warning(msg.toString());
+            return null;
+        }
+        try {
+            final Class<? extends T> c =
+                new MemoryClassLoader(loader, fileManager.classes).loadClass(className).asSubclass(iface);
+            logger.fine(String.format("Compiled script %s in %d ms", id, (System.nanoTime() - start) / 1000000));
+            return c;
+        } catch (ClassNotFoundException|ClassCastException|LinkageError ex) {
+            logger.log(Level.WARNING, "Script " + id + " could not be loaded:", ex);
+            return null;
+        }
+    }
+
+    // The implementation class overrides each of the interface methods that the script defines, widening it
+    // to public; the script's declaration may use raw types where the interface uses generic ones.
+    private static void writeImplClass(StringBuilder sb, String className, Class<?> iface, Set<String> methodNames) {
+        sb.append("public final class ").append(className).append(" extends ").append(className)
+          .append("Methods implements ").append(iface.getCanonicalName()).append(" {\n");
+        for (Method m : iface.getMethods()) {
+            if (!Modifier.isAbstract(m.getModifiers()))
+                continue;
+            final boolean isVoid = m.getReturnType() == Void.TYPE;
+            sb.append("    public ").append(typeName(m.getGenericReturnType())).append(' ').append(m.getName()).append('(');
+            final Type[] paramTypes = m.getGenericParameterTypes();
+            for (int i = 0; i < paramTypes.length; i++) {
+                if (i > 0)
+                    sb.append(", ");
+                sb.append(typeName(paramTypes[i])).append(" a").append(i);
+            }
+            sb.append(") {\n        ");
+            if (methodNames.contains(m.getName())) {
+                sb.append(isVoid ? "super." : "return super.").append(m.getName()).append('(');
+                for (int i = 0; i < paramTypes.length; i++) {
+                    if (i > 0)
+                        sb.append(", ");
+                    sb.append('a').append(i);
+                }
+                sb.append(");");
+            } else if (!isVoid) {
+                sb.append("return ").append(defaultValue(m.getReturnType())).append(';');
+            }
+            sb.append("\n    }\n");
+        }
+        sb.append("}\n");
+    }
+
+    // The value returned by a method the script doesn't define, as the interpreter would return.
+    private static String defaultValue(Class<?> type) {
+        if (!type.isPrimitive())
+            return "null";
+        return type == Boolean.TYPE ? "false" : "0";
+    }
+
+    private static String typeName(Type t) {
+        if (t instanceof Class)
+            return ((Class<?>) t).getCanonicalName();
+        if (t instanceof ParameterizedType) {
+            final ParameterizedType pt = (ParameterizedType) t;
+            final StringBuilder sb = new StringBuilder(typeName(pt.getRawType())).append('<');
+            final Type[] args = pt.getActualTypeArguments();
+            for (int i = 0; i < args.length; i++) {
+                if (i > 0)
+                    sb.append(", ");
+                sb.append(typeName(args[i]));
+            }
+            return sb.append('>').toString();
+        }
+        return t.toString();
+    }
+
+    private static int countLines(CharSequence s) {
+        int n = 0;
+        for (int i = 0; i < s.length(); i++)
+            if (s.charAt(i) == '\n')
+                n++;
+        return n;
+    }
+
+    // The class path of the program, plus the jars of any URL class loaders between it and the game class loader.
+    private static String getClassPath(ClassLoader loader) {
+        final StringBuilder sb = new StringBuilder(System.getProperty("java.class.path", ""));
+        for (ClassLoader l = loader; l != null; l = l.getParent()) {
+            if (!(l instanceof URLClassLoader))
+                continue;
+            for (URL url : ((URLClassLoader) l).getURLs()) {
+                try {
+                    sb.append(File.pathSeparatorChar).append(new File(url.toURI()).getPath());
+                } catch (URISyntaxException|IllegalArgumentException ex) {
+                    // not a file URL; the compiler couldn't use it anyway
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    private static final class SourceFile extends SimpleJavaFileObject
+    {
+        private final String source;
+
+        SourceFile(String className, String source) {
+            super(URI.create("string:///" + className + Kind.SOURCE.extension), Kind.SOURCE);
+            this.source = source;
+        }
+
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return source;
+        }
+    }
+
+    private static final class ClassFile extends SimpleJavaFileObject
+    {
+        private final ByteArrayOutputStream bytes;
+
+        ClassFile(String className) {
+            super(URI.create("bytes:///" + className + Kind.CLASS.extension), Kind.CLASS);
+            bytes = new ByteArrayOutputStream(4096);
+        }
+
+        public OutputStream openOutputStream() {
+            return bytes;
+        }
+    }
+
+    // Keeps compiled classes in memory rather than writing them to disk.
+    private static final class MemoryFileManager extends ForwardingJavaFileManager<StandardJavaFileManager>
+    {
+        private final Map<String,ClassFile> classes;
+
+        MemoryFileManager(StandardJavaFileManager fileManager) {
+            super(fileManager);
+            classes = new HashMap<>();
+        }
+
+        public JavaFileObject getJavaFileForOutput(Location location, String className,
+                                                   JavaFileObject.Kind kind, FileObject sibling) {
+            final ClassFile f = new ClassFile(className);
+            classes.put(className, f);
+            return f;
+        }
+    }
+
+    private static final class MemoryClassLoader extends ClassLoader
+    {
+        private final Map<String,ClassFile> classes;
+
+        MemoryClassLoader(ClassLoader parent, Map<String,ClassFile> classes) {
+            super(parent);
+            this.classes = classes;
+        }
+
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            final ClassFile f = classes.get(name);
+            if (f == null)
+                throw new ClassNotFoundException(name);
+            final byte[] b = f.bytes.toByteArray();
+            return defineClass(name, b, 0, b.length);
+        }
+    }
+}
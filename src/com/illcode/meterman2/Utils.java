@@ -4,6 +4,8 @@ import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang3.StringUtils;
 
 import java.io.*;
+import java.net.MalformedURLException;
+import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -268,13 +270,56 @@ public final class Utils
      */
     public static String readPath(Path p) {
         try {
-            return new String(Files.readAllBytes(p), StandardCharsets.UTF_8);
+            return new String(readAllBytes(p), StandardCharsets.UTF_8);
         } catch (IOException e) {
             logger.log(Level.WARNING, "Utils.readPathString()", e);
             return null;
         }
     }
 
+    /**
+     * Reads all bytes from a path. Paths within an indexed assets ZIP file are read through its index.
+     * @see MMAssets
+     */
+    public static byte[] readAllBytes(Path p) throws IOException {
+        final ZipAssetStore store = ZipAssetStore.forPath(p);
+        if (store != null) {
+            final String name = ZipAssetStore.entryName(p);
+            if (store.contains(name))
+                return store.readAllBytes(name);
+        }
+        return Files.readAllBytes(p);
+    }
+
+    /**
+     * Opens an input stream to read from a path. Paths within an indexed assets ZIP file are read through its index.
+     * @see MMAssets
+     */
+    public static InputStream newInputStream(Path p) throws IOException {
+        final ZipAssetStore store = ZipAssetStore.forPath(p);
+        if (store != null) {
+            final String name = ZipAssetStore.entryName(p);
+            if (store.contains(name))
+                return store.newInputStream(name);
+        }
+        return Files.newInputStream(p);
+    }
+
+    /**
+     * Returns a URL from which the contents of a path can be read. For paths within an indexed assets ZIP file,
+     * the URL reads through its index; otherwise this is equivalent to {@code p.toUri().toURL()}.
+     * @see MMAssets
+     */
+    public static URL pathToURL(Path p) throws MalformedURLException {
+        final ZipAssetStore store = ZipAssetStore.forPath(p);
+        if (store != null) {
+            final String name = ZipAssetStore.entryName(p);
+            if (store.contains(name))
+                return store.getURL(name);
+        }
+        return p.toUri().toURL();
+    }
+
     /**
      * Return the filename extension of a path.
      * @param p path
@@ -0,0 +1,350 @@
+package com.illcode.meterman2;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Read-only access to the entries of an assets ZIP file, bypassing the zipfs provider.
+ * <p/>
+ * The archive is memory-mapped, and its central directory is read once into a compact index. Stored
+ * (uncompressed) entries are then served directly from the mapping; deflated entries are inflated from it,
+ * and the inflated bytes of small entries are kept in an LRU cache of limited size.
+ * <p/>
+ * A store is registered against the zipfs {@link FileSystem} opened on the same archive, so that
+ * {@link Utils#newInputStream(Path)} and friends can redirect reads of paths in that file system to the store.
+ * ZIP64 archives, and archives larger than 2GB, are not supported; {@link #open} throws an IOException for
+ * them, and the caller should fall back to zipfs.
+ * <p/>
+ * Instances are safe to use from multiple threads.
+ */
+final class ZipAssetStore
+{
+    private static final int EOCD_SIG = 0x06054b50, CEN_SIG = 0x02014b50, LOC_SIG = 0x04034b50;
+    private static final int METHOD_STORED = 0, METHOD_DEFLATED = 8;
+
+    private static final Map<FileSystem,ZipAssetStore> storeMap = new ConcurrentHashMap<>();
+
+    private final FileSystem zipFs;
+    private final MappedByteBuffer buffer;  // little-endian; only absolute gets are used on it
+
+    private final Map<String,Integer> index;
+    private final int[] methods;
+    private final long[] localOffsets, compressedSizes, sizes;
+
+    private final int maxCachedEntrySize;
+    private final long cacheBudget;
+    private final LinkedHashMap<String,byte[]> inflatedCache;  // access order; guarded by itself
+    private long cachedBytes;
+
+    private final URLStreamHandler urlHandler;
+
+    private ZipAssetStore(FileSystem zipFs, MappedByteBuffer buffer, int numEntries) {
+        this.zipFs = zipFs;
+        this.buffer = buffer;
+        index = new HashMap<>(numEntries * 2);
+        methods = new int[numEntries];
+        localOffsets = new long[numEntries];
+        compressedSizes = new long[numEntries];
+        sizes = new long[numEntries];
+        maxCachedEntrySize = Utils.intPref("asset-cache-entry-kb", 64) * 1024;
+        cacheBudget = Utils.intPref("asset-cache-kb", 2048) * 1024L;
+        inflatedCache = new LinkedHashMap<>(64, 0.75f, true);
+        urlHandler = new AssetURLHandler();
+    }
+
+    /**
+     * Index a ZIP file and register the store against the zipfs file system opened on it.
+     * @param zipPath path of the ZIP file in the default file system
+     * @param zipFs the zipfs file system opened on the same file
+     * @return the new store
+     * @throws IOException if the file can't be read, or its format is not supported
+     */
+    static ZipAssetStore open(Path zipPath, FileSystem zipFs) throws IOException {
+        final MappedByteBuffer buf;
+        try (FileChannel channel = FileChannel.open(zipPath, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if (size > Integer.MAX_VALUE)
+                throw new IOException("ZIP file too large to map: " + zipPath);
+            buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+
+        // Find the end of central directory record, which is followed only by the archive comment.
+        final int limit = buf.limit();
+        int eocd = -1;
+        for (int i = limit - 22; i >= Math.max(0, limit - 22 - 0xFFFF); i--) {
+            if (buf.getInt(i) == EOCD_SIG) {
+                eocd = i;
+                break;
+            }
+        }
+        if (eocd == -1)
+            throw new IOException("Not a ZIP file: " + zipPath);
+        final int numEntries = buf.getShort(eocd + 10) & 0xFFFF;
+        final long cenOffset = buf.getInt(eocd + 16) & 0xFFFFFFFFL;
+        if (numEntries == 0xFFFF || cenOffset == 0xFFFFFFFFL)
+            throw new IOException("ZIP64 archives are not supported: " + zipPath);
+
+        final ZipAssetStore store = new ZipAssetStore(zipFs, buf, numEntries);
+        int pos = (int) cenOffset;
+        for (int i = 0; i < numEntries; i++) {
+            if (pos + 46 > limit || buf.getInt(pos) != CEN_SIG)
+                throw new IOException("Corrupt ZIP central directory: " + zipPath);
+            final int flags = buf.getShort(pos + 8) & 0xFFFF;
+            final int nameLen = buf.getShort(pos + 28) & 0xFFFF;
+            final int extraLen = buf.getShort(pos + 30) & 0xFFFF;
+            final int commentLen = buf.getShort(pos + 32) & 0xFFFF;
+            final byte[] nameBytes = new byte[nameLen];
+            for (int j = 0; j < nameLen; j++)
+                nameBytes[j] = buf.get(pos + 46 + j);
+            final String name = new String(nameBytes, StandardCharsets.UTF_8);
+            if (!name.endsWith("/") && (flags & 1) == 0) {  // skip directories and encrypted entries
+                store.index.put(name, i);
+                store.methods[i] = buf.getShort(pos + 10) & 0xFFFF;
+                store.compressedSizes[i] = buf.getInt(pos + 20) & 0xFFFFFFFFL;
+                store.sizes[i] = buf.getInt(pos + 24) & 0xFFFFFFFFL;
+                store.localOffsets[i] = buf.getInt(pos + 42) & 0xFFFFFFFFL;
+            }
+            pos += 46 + nameLen + extraLen + commentLen;
+        }
+        storeMap.put(zipFs, store);
+        return store;
+    }
+
+    /** Unregister the store. The mapping is released when the store is garbage collected. */
+    void close() {
+        storeMap.remove(zipFs);
+        synchronized (inflatedCache) {
+            inflatedCache.clear();
+            cachedBytes = 0;
+        }
+    }
+
+    /** Return the store registered against the file system of a path, or null if there is none. */
+    static ZipAssetStore forPath(Path p) {
+        return storeMap.isEmpty() ? null : storeMap.get(p.getFileSystem());
+    }
+
+    /** Return the name of the entry corresponding to a path in the store's zipfs file system. */
+    static String entryName(Path p) {
+        final String s = p.toAbsolutePath().normalize().toString();
+        return s.startsWith("/") ? s.substring(1) : s;
+    }
+
+    /** Returns true if the archive contains a (non-directory) entry of the given name. */
+    boolean contains(String name) {
+        return index.containsKey(name);
+    }
+
+    /**
+     * Open an input stream to read an entry.
+     * @param name entry name
+     * @throws NoSuchFileException if there is no such entry
+     * @throws IOException if the entry uses an unsupported compression method
+     */
+    InputStream newInputStream(String name) throws IOException {
+        final int i = entryIndex(name);
+        if (methods[i] == METHOD_STORED)
+            return new ByteBufferInputStream(dataSlice(i), false);
+        if (sizes[i] <= maxCachedEntrySize)
+            return new ByteArrayInputStream(inflate(name, i));
+        checkDeflated(name, i);
+        final Inflater inflater = new Inflater(true);
+        return new InflaterInputStream(new ByteBufferInputStream(dataSlice(i), true), inflater,
+                                       (int) Math.min(8192L, Math.max(compressedSizes[i], 512L))) {
+            private boolean closed;
+
+            public void close() throws IOException {
+                if (!closed) {
+                    closed = true;
+                    inflater.end();
+                    super.close();
+                }
+            }
+        };
+    }
+
+    /**
+     * Read the entire contents of an entry.
+     * @param name entry name
+     * @throws NoSuchFileException if there is no such entry
+     */
+    byte[] readAllBytes(String name) throws IOException {
+        final int i = entryIndex(name);
+        if (methods[i] == METHOD_STORED) {
+            final ByteBuffer slice = dataSlice(i);
+            final byte[] data = new byte[slice.remaining()];
+            slice.get(data);
+            return data;
+        }
+        final byte[] data = inflate(name, i);
+        return sizes[i] <= maxCachedEntrySize ? data.clone() : data;  // don't let callers modify cached data
+    }
+
+    /** Return a URL whose streams read the given entry through this store. */
+    URL getURL(String name) throws MalformedURLException {
+        return new URL("mmasset", "", -1, "/" + name, urlHandler);
+    }
+
+    private int entryIndex(String name) throws NoSuchFileException {
+        final Integer i = index.get(name);
+        if (i == null)
+            throw new NoSuchFileException(name);
+        return i;
+    }
+
+    // Return a buffer positioned over the (possibly compressed) data of an entry.
+    private ByteBuffer dataSlice(int i) throws IOException {
+        final int loc = (int) localOffsets[i];
+        if (buffer.getInt(loc) != LOC_SIG)
+            throw new IOException("Corrupt ZIP local header at offset " + loc);
+        final int start = loc + 30 + (buffer.getShort(loc + 26) & 0xFFFF) + (buffer.getShort(loc + 28) & 0xFFFF);
+        final ByteBuffer slice = buffer.duplicate();
+        slice.limit(start + (int) compressedSizes[i]).position(start);
+        return slice;
+    }
+
+    private void checkDeflated(String name, int i) throws IOException {
+        if (methods[i] != METHOD_DEFLATED)
+            throw new IOException("Unsupported ZIP compression method " + methods[i] + " for " + name);
+    }
+
+    // Inflate an entry in full, using and filling the cache for small entries.
+    private byte[] inflate(String name, int i) throws IOException {
+        final boolean cacheable = sizes[i] <= maxCachedEntrySize;
+        if (cacheable) {
+            synchronized (inflatedCache) {
+                final byte[] data = inflatedCache.get(name);
+                if (data != null)
+                    return data;
+            }
+        }
+        checkDeflated(name, i);
+        if (sizes[i] > Integer.MAX_VALUE - 8)
+            throw new IOException("ZIP entry too large: " + name);
+        final ByteBuffer slice = dataSlice(i);
+        final byte[] input = new byte[slice.remaining() + 1];  // the inflater may need a dummy trailing byte
+        slice.get(input, 0, input.length - 1);
+        final byte[] data = new byte[(int) sizes[i]];
+        final Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(input);
+            int n = 0;
+            while (n < data.length) {
+                final int r = inflater.inflate(data, n, data.length - n);
+                if (r == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary()))
+                    break;
+                n += r;
+            }
+            if (n != data.length)
+                throw new IOException("Truncated ZIP entry: " + name);
+        } catch (DataFormatException ex) {
+            throw new IOException("Corrupt ZIP entry: " + name, ex);
+        } finally {
+            inflater.end();
+        }
+        if (cacheable)
+            cacheInflated(name, data);
+        return data;
+    }
+
+    private void cacheInflated(String name, byte[] data) {
+        synchronized (inflatedCache) {
+            final byte[] old = inflatedCache.put(name, data);
+            if (old != null)
+                cachedBytes -= old.length;
+            cachedBytes += data.length;
+            for (Iterator<byte[]> iter = inflatedCache.values().iterator(); cachedBytes > cacheBudget && iter.hasNext(); ) {
+                cachedBytes -= iter.next().length;
+                iter.remove();
+            }
+        }
+    }
+
+    // An InputStream over a ByteBuffer, optionally followed by a single zero byte (for a nowrap Inflater).
+    private static final class ByteBufferInputStream extends InputStream
+    {
+        private final ByteBuffer buf;
+        private boolean dummyByte;
+
+        ByteBufferInputStream(ByteBuffer buf, boolean dummyByte) {
+            this.buf = buf;
+            this.dummyByte = dummyByte;
+        }
+
+        public int read() {
+            if (buf.hasRemaining())
+                return buf.get() & 0xFF;
+            if (dummyByte) {
+                dummyByte = false;
+                return 0;
+            }
+            return -1;
+        }
+
+        public int read(byte[] b, int off, int len) {
+            if (len == 0)
+                return 0;
+            if (!buf.hasRemaining()) {
+                if (!dummyByte)
+                    return -1;
+                dummyByte = false;
+                b[off] = 0;
+                return 1;
+            }
+            len = Math.min(len, buf.remaining());
+            buf.get(b, off, len);
+            return len;
+        }
+
+        public long skip(long n) {
+            final int k = (int) Math.max(0, Math.min(n, buf.remaining()));
+            buf.position(buf.position() + k);
+            return k;
+        }
+
+        public int available() {
+            return buf.remaining();
+        }
+    }
+
+    private final class AssetURLHandler extends URLStreamHandler
+    {
+        protected URLConnection openConnection(URL u) {
+            return new URLConnection(u) {
+                public void connect() {
+                    connected = true;
+                }
+
+                public InputStream getInputStream() throws IOException {
+                    String name = url.getFile().substring(1);
+                    if (url.getRef() != null)
+                        name = name + "#" + url.getRef();
+                    return newInputStream(name);
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.illcode.meterman2.bundle;
+
+import org.jdom2.*;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compact binary encoding of an XBundle document, which can be read back without XML parsing.
+ * <p/>
+ * The packer ({@link com.illcode.meterman2.tools.GamePacker}) writes a compiled bundle alongside each bundle
+ * in a game archive, named as the bundle file with {@link #EXTENSION} appended, and
+ * {@link XBundle#loadFromPath(java.nio.file.Path)} reads it in preference to the XML when present in an archive.
+ * <p/>
+ * Elements, attributes, text, and CDATA are preserved exactly, including whitespace; comments and processing
+ * instructions are dropped. Element and attribute names and attribute values are written to a string table on
+ * their first use and referred to by index thereafter. Documents using XML namespaces cannot be compiled.
+ */
+public final class CompiledBundle
+{
+    /** The extension appended to a bundle's file name to form the name of its compiled form. */
+    public static final String EXTENSION = ".xbc";
+
+    private static final int MAGIC = 0x58424331;  // "XBC1"
+    private static final int END = 0, ELEMENT = 1, TEXT = 2, CDATA = 3;
+
+    private CompiledBundle() {
+    }
+
+    /** Returns true if a document can be compiled; that is, if it uses no namespaces. */
+    public static boolean canCompile(Document doc) {
+        return doc.hasRootElement() && noNamespaces(doc.getRootElement());
+    }
+
+    private static boolean noNamespaces(Element el) {
+        if (el.getNamespace() != Namespace.NO_NAMESPACE || !el.getAdditionalNamespaces().isEmpty())
+            return false;
+        for (Attribute a : el.getAttributes())
+            if (a.getNamespace() != Namespace.NO_NAMESPACE)
+                return false;
+        for (Element child : el.getChildren())
+            if (!noNamespaces(child))
+                return false;
+        return true;
+    }
+
+    /**
+     * Write a compiled bundle.
+     * @param doc bundle document, for which {@link #canCompile(Document)} returns true
+     * @param out stream to which the compiled form is written; it is not closed
+     */
+    public static void write(Document doc, OutputStream out) throws IOException {
+        final DataOutputStream dout = new DataOutputStream(new BufferedOutputStream(out));
+        dout.writeInt(MAGIC);
+        writeElement(doc.getRootElement(), dout, new HashMap<String,Integer>());
+        dout.flush();
+    }
+
+    private static void writeElement(Element el, DataOutputStream out, Map<String,Integer> table) throws IOException {
+        out.writeByte(ELEMENT);
+        writeTableString(el.getName(), out, table);
+        final List<Attribute> attributes = el.getAttributes();
+        writeVarInt(attributes.size(), out);
+        for (Attribute a : attributes) {
+            writeTableString(a.getName(), out, table);
+            writeTableString(a.getValue(), out, table);
+        }
+        for (Content c : el.getContent()) {
+            switch (c.getCType()) {
+            case Element:
+                writeElement((Element) c, out, table);
+                break;
+            case CDATA:
+                out.writeByte(CDATA);
+                writeString(((Text) c).getText(), out);
+                break;
+            case Text:
+                out.writeByte(TEXT);
+                writeString(((Text) c).getText(), out);
+                break;
+            default:
+                break;  // comments, processing instructions, etc. are not needed
+            }
+        }
+        out.writeByte(END);
+    }
+
+    /**
+     * Read a compiled bundle.
+     * @param in stream from which to read; it is not closed
+     * @return the bundle document
+     * @throws IOException if an I/O error occurs, or the stream is not a compiled bundle
+     */
+    public static Document read(InputStream in) throws IOException {
+        final DataInputStream din = new DataInputStream(in);
+        if (din.readInt() != MAGIC)
+            throw new IOException("Not a compiled bundle");
+        if (din.readByte() != ELEMENT)
+            throw new IOException("Corrupt compiled bundle");
+        // The names and values were verified when the bundle was compiled.
+        final JDOMFactory factory = new UncheckedJDOMFactory();
+        final Element root = readElement(din, factory, new ArrayList<String>(256));
+        return factory.document(root);
+    }
+
+    private static Element readElement(DataInputStream in, JDOMFactory factory, List<String> table) throws IOException {
+        final Element el = factory.element(readTableString(in, table));
+        final int numAttributes = readVarInt(in);
+        for (int i = 0; i < numAttributes; i++) {
+            final String name = readTableString(in, table);
+            factory.setAttribute(el, factory.attribute(name, readTableString(in, table)));
+        }
+        int type;
+        while ((type = in.readByte()) != END) {
+            switch (type) {
+            case ELEMENT:
+                factory.addContent(el, readElement(in, factory, table));
+                break;
+            case TEXT:
+                factory.addContent(el, factory.text(readString(in)));
+                break;
+            case CDATA:
+                factory.addContent(el, factory.cdata(readString(in)));
+                break;
+            default:
+                throw new IOException("Corrupt compiled bundle");
+            }
+        }
+        return el;
+    }
+
+    // A string already in the table is written as its index; otherwise the index it will be given
+    // (the table size) is followed by the string itself.
+    private static void writeTableString(String s, DataOutputStream out, Map<String,Integer> table) throws IOException {
+        final Integer idx = table.get(s);
+        if (idx != null) {
+            writeVarInt(idx, out);
+        } else {
+            writeVarInt(table.size(), out);
+            table.put(s, table.size());
+            writeString(s, out);
+        }
+    }
+
+    private static String readTableString(DataInputStream in, List<String> table) throws IOException {
+        final int idx = readVarInt(in);
+        if (idx < table.size())
+            return table.get(idx);
+        if (idx != table.size())
+            throw new IOException("Corrupt compiled bundle");
+        final String s = readString(in);
+        table.add(s);
+        return s;
+    }
+
+    // Unlike writeUTF(), this handles strings of any length.
+    private static void writeString(String s, DataOutputStream out) throws IOException {
+        final byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(b.length, out);
+        out.write(b);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        final byte[] b = new byte[readVarInt(in)];
+        in.readFully(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    private static void writeVarInt(int n, DataOutputStream out) throws IOException {
+        while ((n & ~0x7F) != 0) {
+            out.writeByte((n & 0x7F) | 0x80);
+            n >>>= 7;
+        }
+        out.writeByte(n);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int n = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            final int b = in.readByte();
+            n |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return n;
+        }
+        throw new IOException("Corrupt compiled bundle");
+    }
+}
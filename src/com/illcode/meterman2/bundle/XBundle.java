@@ -10,8 +10,12 @@ import org.jdom2.Element;
 import org.jdom2.JDOMException;
 import org.jdom2.input.SAXBuilder;
 
+import java.io.BufferedInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Collections;
 import java.util.HashMap;
@@ -82,6 +86,9 @@ public final class XBundle
     /**
      * Load a new XBundle by reading and parsing an XML document at a given path.
      * <p/>
+     * If the path is inside an archive (such as a game archive made by the packer), and the archive holds a
+     * {@link CompiledBundle} for the document, the compiled bundle is read instead of parsing the XML.
+     * <p/>
      * This method along with {@link #reloadElement(String)} are not thread-safe (they share a common
      * class-wide XML parser), and invocations of either must be properly synchronized.
      * @param p path of the XML document, must not be null
@@ -89,7 +96,9 @@ public final class XBundle
     public static XBundle loadFromPath(Path p) {
         XBundle b = new XBundle(p);
         try {
-            Document doc = getSAXBuilder().build(b.path.toUri().toURL());
+            Document doc = loadCompiled(p);
+            if (doc == null)
+                doc = getSAXBuilder().build(Utils.pathToURL(b.path));
             b.initBundle(doc);
         } catch (JDOMException|IOException ex) {
             logger.log(Level.WARNING, "Exception loading an XBundle from " + b.path.getFileName().toString(), ex);
@@ -97,6 +106,21 @@ public final class XBundle
         return b;
     }
 
+    // Compiled bundles are only looked for in archives, where they can't go stale as the XML is edited.
+    private static Document loadCompiled(Path p) {
+        if (p.getFileSystem() == FileSystems.getDefault())
+            return null;
+        final Path cp = p.resolveSibling(p.getFileName().toString() + CompiledBundle.EXTENSION);
+        if (!Files.exists(cp))
+            return null;
+        try (InputStream in = new BufferedInputStream(Utils.newInputStream(cp))) {
+            return CompiledBundle.read(in);
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "Exception loading a compiled XBundle from " + cp.getFileName().toString(), ex);
+            return null;
+        }
+    }
+
     private void initBundle(Document doc) {
         final Pair<Element,String> pair = checkDocument(doc);
         if (pair == null)
@@ -358,7 +382,7 @@ public final class XBundle
             return false;  // we didn't have it in the first place
         Document doc;
         try {
-            doc = getSAXBuilder().build(path.toUri().toURL());
+            doc = getSAXBuilder().build(Utils.pathToURL(path));
         } catch (JDOMException|IOException ex) {
             logger.log(Level.WARNING, "Exception loading an XBundle from " + path.getFileName().toString(), ex);
             return false;
@@ -9,6 +9,9 @@ import java.util.List;
  * An EntityActionsProcessor is notified when the list of entity actions to display is being generated. This
  * allows listeners to add additional actions to the normal action list, to be handled by an accompanying
  * {@link GameActionListener}.
+ * <p/>
+ * Action lists are cached; see {@link StableEntityActionsProcessor} for how a processor can allow them
+ * to be reused across turns.
  */
 public interface EntityActionsProcessor extends GameEventHandler
 {
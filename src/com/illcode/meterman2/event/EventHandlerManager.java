@@ -1,5 +1,6 @@
 package com.illcode.meterman2.event;
 
+import com.illcode.meterman2.GameUtils;
 import com.illcode.meterman2.MMActions;
 import com.illcode.meterman2.model.Entity;
 import com.illcode.meterman2.model.Room;
@@ -8,6 +9,11 @@ import java.util.*;
 
 /**
  * Support class to handle registration and event firing for <tt>GameEventHandler</tt>S.
+ * <p/>
+ * Turn listeners, look listeners, player-movement listeners, and entity-actions processors may also be
+ * registered with a {@link HandlerScope}, in which case they are notified only of events taking place
+ * within that scope. Scoped handlers are notified before unscoped handlers. A handler has at most one
+ * registration of each type: registering it with or without a scope replaces any previous registration.
  */
 public final class EventHandlerManager
 {
@@ -19,9 +25,19 @@ public final class EventHandlerManager
     private LinkedList<OutputTextProcessor> outputTextProcessors;
     private LinkedList<LookListener> lookListeners;
 
+    private ScopedHandlerList<PlayerMovementListener> scopedPlayerMovementListeners;
+    private ScopedHandlerList<TurnListener> scopedTurnListeners;
+    private ScopedHandlerList<EntityActionsProcessor> scopedEntityActionsProcessors;
+    private ScopedHandlerList<LookListener> scopedLookListeners;
+
     private ArrayList<GameEventHandler> fireList;
 
+    // See getEntityActionsProcessorsVersion() and entityActionsProcessorsStable()
+    private int entityActionsProcessorsVersion;
+    private boolean entityActionsProcessorsStable = true;
+
     private Map<String,List<? extends GameEventHandler>> eventHandlerMap;
+    private Map<String,ScopedHandlerList<? extends GameEventHandler>> scopedHandlerMap;
 
     public EventHandlerManager() {
         gameActionListeners = new LinkedList<>();
@@ -32,6 +48,11 @@ public final class EventHandlerManager
         outputTextProcessors = new LinkedList<>();
         lookListeners = new LinkedList<>();
 
+        scopedPlayerMovementListeners = new ScopedHandlerList<>();
+        scopedTurnListeners = new ScopedHandlerList<>();
+        scopedEntityActionsProcessors = new ScopedHandlerList<>();
+        scopedLookListeners = new ScopedHandlerList<>();
+
         fireList = new ArrayList<>(16);
     }
 
@@ -46,6 +67,11 @@ public final class EventHandlerManager
         entitySelectionListeners.clear();
         outputTextProcessors.clear();
         lookListeners.clear();
+        scopedPlayerMovementListeners.clear();
+        scopedTurnListeners.clear();
+        scopedEntityActionsProcessors.clear();
+        scopedLookListeners.clear();
+        entityActionsProcessorsChanged();
     }
 
     /**
@@ -67,6 +93,23 @@ public final class EventHandlerManager
         return eventHandlerMap;
     }
 
+    /**
+     * Return a map from the name of each registration list (ex. "playerMovementListeners") to
+     * the handlers registered in that list with a scope. Only those lists that support scoped
+     * registration are included.
+     * @return scoped handler map
+     */
+    public Map<String,ScopedHandlerList<? extends GameEventHandler>> getScopedHandlerMap() {
+        if (scopedHandlerMap == null) {
+            scopedHandlerMap = new HashMap<>();
+            scopedHandlerMap.put("playerMovementListeners", scopedPlayerMovementListeners);
+            scopedHandlerMap.put("turnListeners", scopedTurnListeners);
+            scopedHandlerMap.put("entityActionsProcessors", scopedEntityActionsProcessors);
+            scopedHandlerMap.put("lookListeners", scopedLookListeners);
+        }
+        return scopedHandlerMap;
+    }
+
     /**
      * Fire a game starting event.
      * @param newGame true if this is a new game, false if we're resuming a saved game.
@@ -78,6 +121,12 @@ public final class EventHandlerManager
                 handler.gameHandlerStarting(newGame);
             fireList.clear();
         }
+        for (ScopedHandlerList<? extends GameEventHandler> scopedList : getScopedHandlerMap().values()) {
+            fireList.addAll(scopedList.getScopeMap().keySet());
+            for (GameEventHandler handler : fireList)
+                handler.gameHandlerStarting(newGame);
+            fireList.clear();
+        }
     }
 
     /**
@@ -166,8 +215,22 @@ public final class EventHandlerManager
      * @param l listener to add
      */
     public void addPlayerMovementListener(PlayerMovementListener l) {
-        if (l != null && !playerMovementListeners.contains(l))
+        if (l != null && !playerMovementListeners.contains(l)) {
+            scopedPlayerMovementListeners.remove(l);
             playerMovementListeners.addFirst(l);
+        }
+    }
+
+    /**
+     * Adds a PlayerMovementListener to be called when the player moves from or to a room within the given scope.
+     * @param l listener to add
+     * @param scope scope of the registration
+     */
+    public void addPlayerMovementListener(PlayerMovementListener l, HandlerScope scope) {
+        if (l != null) {
+            playerMovementListeners.remove(l);
+            scopedPlayerMovementListeners.add(l, scope);
+        }
     }
 
     /**
@@ -175,7 +238,8 @@ public final class EventHandlerManager
      * @param l listener to remove
      */
     public void removePlayerMovementListener(PlayerMovementListener l) {
-        playerMovementListeners.remove(l);
+        if (!playerMovementListeners.remove(l))
+            scopedPlayerMovementListeners.remove(l);
     }
 
     /**
@@ -187,6 +251,7 @@ public final class EventHandlerManager
      */
     public boolean firePlayerMovement(Room from, Room to, boolean beforeMove) {
         boolean retVal = false;
+        scopedPlayerMovementListeners.gather(from, to, null, fireList);
         fireList.addAll(playerMovementListeners);
         for (GameEventHandler h : fireList) {
             if (((PlayerMovementListener) h).playerMove(from, to, beforeMove)) {
@@ -206,8 +271,23 @@ public final class EventHandlerManager
      * @param l listener to add
      */
     public void addTurnListener(TurnListener l) {
-        if (l != null && !turnListeners.contains(l))
+        if (l != null && !turnListeners.contains(l)) {
+            scopedTurnListeners.remove(l);
             turnListeners.addFirst(l);
+        }
+    }
+
+    /**
+     * Adds a TurnListener to be notified when the turn cycles to the next while the player is within
+     * the given scope.
+     * @param l listener to add
+     * @param scope scope of the registration
+     */
+    public void addTurnListener(TurnListener l, HandlerScope scope) {
+        if (l != null) {
+            turnListeners.remove(l);
+            scopedTurnListeners.add(l, scope);
+        }
     }
 
     /**
@@ -215,11 +295,16 @@ public final class EventHandlerManager
      * @param l listener to remove
      */
     public void removeTurnListener(TurnListener l) {
-        turnListeners.remove(l);
+        if (!turnListeners.remove(l))
+            scopedTurnListeners.remove(l);
     }
 
-    /** Notifies registered {@code TurnListener}S that we have reached the cycle of turns */
-    public void fireTurn() {
+    /**
+     * Notifies registered {@code TurnListener}S that we have reached the cycle of turns
+     * @param currentRoom the room where the player is
+     */
+    public void fireTurn(Room currentRoom) {
+        scopedTurnListeners.gather(currentRoom, null, null, fireList);
         fireList.addAll(turnListeners);
         for (GameEventHandler h : fireList)
             ((TurnListener) h).turn();
@@ -234,8 +319,24 @@ public final class EventHandlerManager
      * @param l listener to add
      */
     public void addEntityActionsProcessor(EntityActionsProcessor l) {
-        if (l != null && !entityActionsProcessors.contains(l))
+        if (l != null && !entityActionsProcessors.contains(l)) {
+            scopedEntityActionsProcessors.remove(l);
             entityActionsProcessors.addFirst(l);
+            entityActionsProcessorsChanged();
+        }
+    }
+
+    /**
+     * Adds an EntityActionsProcessor to be called for entities within the given scope.
+     * @param l listener to add
+     * @param scope scope of the registration
+     */
+    public void addEntityActionsProcessor(EntityActionsProcessor l, HandlerScope scope) {
+        if (l != null) {
+            entityActionsProcessors.remove(l);
+            scopedEntityActionsProcessors.add(l, scope);
+            entityActionsProcessorsChanged();
+        }
     }
 
     /**
@@ -243,7 +344,34 @@ public final class EventHandlerManager
      * @param l listener to remove
      */
     public void removeEntityActionsProcessor(EntityActionsProcessor l) {
-        entityActionsProcessors.remove(l);
+        if (entityActionsProcessors.remove(l) || scopedEntityActionsProcessors.remove(l))
+            entityActionsProcessorsChanged();
+    }
+
+    private void entityActionsProcessorsChanged() {
+        entityActionsProcessorsVersion++;
+        entityActionsProcessorsStable = true;
+        for (EntityActionsProcessor l : entityActionsProcessors)
+            if (!(l instanceof StableEntityActionsProcessor))
+                entityActionsProcessorsStable = false;
+        for (EntityActionsProcessor l : scopedEntityActionsProcessors.getScopeMap().keySet())
+            if (!(l instanceof StableEntityActionsProcessor))
+                entityActionsProcessorsStable = false;
+    }
+
+    /**
+     * Return a number that changes whenever an EntityActionsProcessor is added or removed, or its scope changes,
+     * so that action lists computed under one set of processors can be recognized as stale.
+     */
+    public int getEntityActionsProcessorsVersion() {
+        return entityActionsProcessorsVersion;
+    }
+
+    /**
+     * Return true if every registered EntityActionsProcessor is a {@link StableEntityActionsProcessor}.
+     */
+    public boolean entityActionsProcessorsStable() {
+        return entityActionsProcessorsStable;
     }
 
     /**
@@ -254,6 +382,7 @@ public final class EventHandlerManager
      *                which each listener may modify.
      */
     public void fireProcessEntityActions(Entity e, List<MMActions.Action> actions) {
+        scopedEntityActionsProcessors.gather(GameUtils.getRoom(e), null, e, fireList);
         fireList.addAll(entityActionsProcessors);
         for (GameEventHandler h : fireList)
             ((EntityActionsProcessor) h).processEntityActions(e, actions);
@@ -326,13 +455,24 @@ public final class EventHandlerManager
 
     /** Add a look-listener to the front of our notification list. */
     public void addLookListener(LookListener l) {
-        if (l != null && !lookListeners.contains(l))
+        if (l != null && !lookListeners.contains(l)) {
+            scopedLookListeners.remove(l);
             lookListeners.addFirst(l);
+        }
+    }
+
+    /** Add a look-listener to be notified of Look commands performed within the given scope. */
+    public void addLookListener(LookListener l, HandlerScope scope) {
+        if (l != null) {
+            lookListeners.remove(l);
+            scopedLookListeners.add(l, scope);
+        }
     }
 
     /** Remove a look-listener from our notification list. */
     public void removeLookListener(LookListener l) {
-        lookListeners.remove(l);
+        if (!lookListeners.remove(l))
+            scopedLookListeners.remove(l);
     }
 
     /**
@@ -340,6 +480,7 @@ public final class EventHandlerManager
      * @param currentRoom the room where the player is looking
      */
     public void fireLookPerformed(Room currentRoom) {
+        scopedLookListeners.gather(currentRoom, null, null, fireList);
         fireList.addAll(lookListeners);
         for (GameEventHandler h : fireList)
             ((LookListener) h).lookInRoom(currentRoom);
@@ -0,0 +1,102 @@
+package com.illcode.meterman2.event;
+
+import com.illcode.meterman2.GameUtils;
+import com.illcode.meterman2.Meterman2;
+import com.illcode.meterman2.model.Entity;
+import com.illcode.meterman2.model.Room;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Describes the part of the world in which a handler registered with a scope is interested, so that
+ * the {@link EventHandlerManager} need not notify it of events happening elsewhere.
+ * <p/>
+ * There are three kinds of scope:
+ * <dl>
+ *     <dt>{@link Type#ROOMS}</dt>
+ *     <dd>The handler is notified only while the player is in one of a set of rooms.</dd>
+ *     <dt>{@link Type#ENTITY}</dt>
+ *     <dd>The handler is notified only of events concerning a given entity (for instance, when the
+ *         entity's actions are being generated). It is not notified of events that don't concern an
+ *         entity, such as turns and looks.</dd>
+ *     <dt>{@link Type#ENTITY_CONTAINER}</dt>
+ *     <dd>The handler is notified only while the player is in the room where a given entity is,
+ *         following the entity as it moves. An entity in the player's inventory is always with the player.</dd>
+ * </dl>
+ * Objects are referred to by ID, so that scopes can be persisted along with the handlers' IDs.
+ * HandlerScope instances are immutable.
+ */
+public final class HandlerScope
+{
+    /** The kinds of scope. */
+    public enum Type
+    {
+        ROOMS, ENTITY, ENTITY_CONTAINER
+    }
+
+    private final Type type;
+    private final String[] ids;
+
+    private HandlerScope(Type type, String[] ids) {
+        this.type = type;
+        this.ids = ids;
+    }
+
+    /** Return a scope covering the given rooms. */
+    public static HandlerScope rooms(String... roomIds) {
+        return new HandlerScope(Type.ROOMS, roomIds.clone());
+    }
+
+    /** Return a scope covering the given rooms. */
+    public static HandlerScope rooms(Collection<String> roomIds) {
+        return new HandlerScope(Type.ROOMS, roomIds.toArray(new String[roomIds.size()]));
+    }
+
+    /** Return a scope covering events concerning a given entity. */
+    public static HandlerScope entity(String entityId) {
+        return new HandlerScope(Type.ENTITY, new String[] {entityId});
+    }
+
+    /** Return a scope covering the room in which a given entity currently resides. */
+    public static HandlerScope entityContainer(String entityId) {
+        return new HandlerScope(Type.ENTITY_CONTAINER, new String[] {entityId});
+    }
+
+    /**
+     * Return a scope of a given type and IDs, as previously returned by {@link #getType()} and
+     * {@link #getIds()}. This is intended to be used when loading a game.
+     */
+    public static HandlerScope of(Type type, String... ids) {
+        return new HandlerScope(type, ids.clone());
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /** Return the room IDs of a {@code ROOMS} scope, or a one-element array holding the entity ID otherwise. */
+    public String[] getIds() {
+        return ids.clone();
+    }
+
+    // Used by ScopedHandlerList to index ROOMS and ENTITY scopes without copying the array.
+    String[] ids() {
+        return ids;
+    }
+
+    /**
+     * Returns true if a handler with this scope should be notified of an event taking place in
+     * a given room. Used for scopes that are not indexed by ID.
+     */
+    boolean appliesToRoom(Room r) {
+        if (type != Type.ENTITY_CONTAINER || r == null)
+            return false;
+        final Entity e = Meterman2.gm.getEntity(ids[0]);
+        return e != null && GameUtils.getRoom(e) == r;
+    }
+
+    public String toString() {
+        return type + Arrays.toString(ids);
+    }
+}
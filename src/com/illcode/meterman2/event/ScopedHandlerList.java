@@ -0,0 +1,173 @@
+package com.illcode.meterman2.event;
+
+import com.illcode.meterman2.model.Entity;
+import com.illcode.meterman2.model.Room;
+
+import java.util.*;
+
+/**
+ * Holds the handlers of one type that have been registered with a {@link HandlerScope}.
+ * <p/>
+ * Room and entity scopes are indexed by ID, so that gathering the handlers for an event costs time
+ * in proportion to the number of handlers interested in it, rather than the number registered.
+ * Entity-container scopes, whose room changes as the entity moves, are kept in a separate list
+ * that is checked on each event.
+ * <p/>
+ * Gathered handlers are ordered most recently registered first, as in the unscoped handler lists.
+ */
+public final class ScopedHandlerList<T extends GameEventHandler>
+{
+    private Map<T,Registration<T>> registrations;  // in order of registration
+    private Map<String,List<Registration<T>>> roomIndex;
+    private Map<String,List<Registration<T>>> entityIndex;
+    private List<Registration<T>> containerRegistrations;
+    private long nextSeq;
+
+    // reused to avoid allocation; always clear() after using
+    private List<Registration<T>> gatherList;
+
+    ScopedHandlerList() {
+        registrations = new LinkedHashMap<>();
+        roomIndex = new HashMap<>();
+        entityIndex = new HashMap<>();
+        containerRegistrations = new ArrayList<>();
+        gatherList = new ArrayList<>();
+    }
+
+    /** Add a handler with the given scope, replacing any existing scoped registration of the handler. */
+    void add(T handler, HandlerScope scope) {
+        remove(handler);
+        final Registration<T> reg = new Registration<>(handler, scope, nextSeq++);
+        registrations.put(handler, reg);
+        switch (scope.getType()) {
+        case ROOMS:
+            for (String id : scope.ids())
+                index(roomIndex, id, reg);
+            break;
+        case ENTITY:
+            index(entityIndex, scope.ids()[0], reg);
+            break;
+        case ENTITY_CONTAINER:
+            containerRegistrations.add(reg);
+            break;
+        }
+    }
+
+    /** Remove a handler, if present. Returns true if it was. */
+    boolean remove(T handler) {
+        final Registration<T> reg = registrations.remove(handler);
+        if (reg == null)
+            return false;
+        switch (reg.scope.getType()) {
+        case ROOMS:
+            for (String id : reg.scope.ids())
+                unindex(roomIndex, id, reg);
+            break;
+        case ENTITY:
+            unindex(entityIndex, reg.scope.ids()[0], reg);
+            break;
+        case ENTITY_CONTAINER:
+            containerRegistrations.remove(reg);
+            break;
+        }
+        return true;
+    }
+
+    boolean contains(T handler) {
+        return registrations.containsKey(handler);
+    }
+
+    void clear() {
+        registrations.clear();
+        roomIndex.clear();
+        entityIndex.clear();
+        containerRegistrations.clear();
+        nextSeq = 0;
+    }
+
+    /**
+     * Return a map from each handler to its scope, in the order in which they were registered.
+     * This is intended to be used when saving a game.
+     */
+    public Map<T,HandlerScope> getScopeMap() {
+        final Map<T,HandlerScope> scopeMap = new LinkedHashMap<>();
+        for (Registration<T> reg : registrations.values())
+            scopeMap.put(reg.handler, reg.scope);
+        return scopeMap;
+    }
+
+    /**
+     * Add to a list the handlers that should be notified of an event.
+     * @param r the room in which the event takes place, or null if none
+     * @param r2 a second room concerned in the event (for instance, the destination of a player's
+     *           movement), or null if none
+     * @param e the entity concerned in the event, or null if none
+     * @param dest list to which handlers will be added
+     */
+    void gather(Room r, Room r2, Entity e, List<? super T> dest) {
+        if (registrations.isEmpty())
+            return;
+        if (r != null)
+            gatherIndexed(roomIndex, r.getId());
+        if (r2 != null && r2 != r)
+            gatherIndexed(roomIndex, r2.getId());
+        if (e != null)
+            gatherIndexed(entityIndex, e.getId());
+        for (Registration<T> reg : containerRegistrations)
+            if (reg.scope.appliesToRoom(r) || (r2 != r && reg.scope.appliesToRoom(r2)))
+                gatherList.add(reg);
+        if (gatherList.isEmpty())
+            return;
+        if (gatherList.size() > 1)
+            Collections.sort(gatherList);
+        Registration<T> last = null;
+        for (Registration<T> reg : gatherList) {
+            if (reg != last)  // a handler may match on more than one room
+                dest.add(reg.handler);
+            last = reg;
+        }
+        gatherList.clear();
+    }
+
+    private void gatherIndexed(Map<String,List<Registration<T>>> index, String id) {
+        final List<Registration<T>> regs = index.get(id);
+        if (regs != null)
+            gatherList.addAll(regs);
+    }
+
+    private void index(Map<String,List<Registration<T>>> index, String id, Registration<T> reg) {
+        List<Registration<T>> regs = index.get(id);
+        if (regs == null) {
+            regs = new ArrayList<>(4);
+            index.put(id, regs);
+        }
+        regs.add(reg);
+    }
+
+    private void unindex(Map<String,List<Registration<T>>> index, String id, Registration<T> reg) {
+        final List<Registration<T>> regs = index.get(id);
+        if (regs != null) {
+            regs.remove(reg);
+            if (regs.isEmpty())
+                index.remove(id);
+        }
+    }
+
+    private static final class Registration<T> implements Comparable<Registration<T>>
+    {
+        final T handler;
+        final HandlerScope scope;
+        final long seq;
+
+        Registration(T handler, HandlerScope scope, long seq) {
+            this.handler = handler;
+            this.scope = scope;
+            this.seq = seq;
+        }
+
+        // Most recently registered first
+        public int compareTo(Registration<T> o) {
+            return seq > o.seq ? -1 : (seq == o.seq ? 0 : 1);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.illcode.meterman2.event;
+
+/**
+ * An EntityActionsProcessor that declares that the actions it adds for an entity depend only on that
+ * entity: its attributes, its container and the room it's in, whether it's equipped, and any other state
+ * of the entity whose changes are reported through
+ * {@link com.illcode.meterman2.GameManager#entityChanged(com.illcode.meterman2.model.Entity) entityChanged()}.
+ * <p/>
+ * The game manager caches each entity's action list, and computes it again only when something it depends on
+ * changes. A processor that doesn't declare its dependencies in this way is taken to depend on the state of the
+ * whole game, and while one is registered, action lists are reused only within a single turn.
+ */
+public interface StableEntityActionsProcessor extends EntityActionsProcessor
+{
+}
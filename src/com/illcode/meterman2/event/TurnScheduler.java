@@ -0,0 +1,141 @@
+package com.illcode.meterman2.event;
+
+import java.util.*;
+
+/**
+ * Support class to notify <tt>TurnListener</tt>S at particular turns, rather than at every turn.
+ * <p/>
+ * A listener can ask to be called at the transition of a given turn, and optionally every <em>K</em>
+ * turns thereafter. Turn numbers are those returned by {@link com.illcode.meterman2.GameManager#getNumTurns()}
+ * during the turn in question; thus scheduling a listener for the current turn number means it will be
+ * called at the upcoming transition. Scheduled turns are kept in a priority queue ordered by turn, so that
+ * each transition examines only the turns that are due.
+ * <p/>
+ * Listeners due at the same turn are notified in the order in which they were scheduled.
+ */
+public final class TurnScheduler
+{
+    private PriorityQueue<ScheduledTurn> queue;
+    private long nextSeq;  // used to keep the order of equal turns stable
+
+    private ArrayList<ScheduledTurn> dueList;  // reused to avoid allocation; always clear() after using
+
+    public TurnScheduler() {
+        queue = new PriorityQueue<>();
+        dueList = new ArrayList<>();
+    }
+
+    /**
+     * Schedule a listener to be called at a given turn.
+     * @param l listener to schedule
+     * @param turn turn at whose transition the listener will be called. If this turn has already passed,
+     *          the listener will be called at the next transition.
+     * @param period if greater than zero, the listener will be called again every {@code period} turns after
+     *          {@code turn}; otherwise it will be called only once.
+     */
+    public void schedule(TurnListener l, int turn, int period) {
+        if (l != null)
+            queue.add(new ScheduledTurn(l, turn, Math.max(period, 0), nextSeq++));
+    }
+
+    /**
+     * Cancel all the scheduled turns of a listener.
+     * @param l listener whose scheduled turns should be cancelled
+     */
+    public void unschedule(TurnListener l) {
+        for (Iterator<ScheduledTurn> iter = queue.iterator(); iter.hasNext(); ) {
+            if (iter.next().listener == l)
+                iter.remove();
+        }
+        // If we're in the midst of firing, make sure a listener unscheduled by one called earlier
+        // in the same transition is not called.
+        for (ScheduledTurn st : dueList)
+            if (st.listener == l)
+                st.cancelled = true;
+    }
+
+    /** Returns true if the given listener has any scheduled turns. */
+    public boolean isScheduled(TurnListener l) {
+        for (ScheduledTurn st : queue)
+            if (st.listener == l)
+                return true;
+        return false;
+    }
+
+    /** Cancels all scheduled turns. */
+    public void clear() {
+        queue.clear();
+        nextSeq = 0;
+    }
+
+    /**
+     * Notifies the listeners whose turns are due.
+     * @param turn the turn that is transitioning to the next
+     */
+    public void fireDue(int turn) {
+        ScheduledTurn st;
+        while ((st = queue.peek()) != null && st.turn <= turn)
+            dueList.add(queue.poll());
+        if (dueList.isEmpty())
+            return;
+        // Requeue the repeating turns before we fire, so that listeners can unschedule themselves.
+        for (ScheduledTurn due : dueList) {
+            if (due.period > 0) {
+                due.turn = Math.max(due.turn + due.period, turn + 1);
+                due.seq = nextSeq++;
+                queue.add(due);
+            }
+        }
+        for (ScheduledTurn due : dueList)
+            if (!due.cancelled)
+                due.listener.turn();
+        dueList.clear();
+    }
+
+    /**
+     * Returns the currently scheduled turns, in the order in which they will be fired.
+     * This is intended to be used when saving a game.
+     */
+    public List<ScheduledTurn> getScheduledTurns() {
+        final ScheduledTurn[] turns = queue.toArray(new ScheduledTurn[queue.size()]);
+        Arrays.sort(turns);
+        return Arrays.asList(turns);
+    }
+
+    /** A listener scheduled to be called at a certain turn. */
+    public static final class ScheduledTurn implements Comparable<ScheduledTurn>
+    {
+        private final TurnListener listener;
+        private int turn;
+        private final int period;
+        private long seq;
+        private boolean cancelled;
+
+        private ScheduledTurn(TurnListener listener, int turn, int period, long seq) {
+            this.listener = listener;
+            this.turn = turn;
+            this.period = period;
+            this.seq = seq;
+        }
+
+        public TurnListener getListener() {
+            return listener;
+        }
+
+        /** Return the turn at whose transition the listener will next be called. */
+        public int getTurn() {
+            return turn;
+        }
+
+        /** Return the repeat period, or zero if the listener will be called only once. */
+        public int getPeriod() {
+            return period;
+        }
+
+        public int compareTo(ScheduledTurn o) {
+            if (turn != o.turn)
+                return turn < o.turn ? -1 : 1;
+            return seq < o.seq ? -1 : (seq == o.seq ? 0 : 1);
+        }
+    }
+}
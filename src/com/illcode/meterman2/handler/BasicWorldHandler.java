@@ -1,8 +1,8 @@
 package com.illcode.meterman2.handler;
 
 import com.illcode.meterman2.*;
-import com.illcode.meterman2.event.EntityActionsProcessor;
 import com.illcode.meterman2.event.GameActionListener;
+import com.illcode.meterman2.event.StableEntityActionsProcessor;
 import com.illcode.meterman2.model.Entity;
 import com.illcode.meterman2.model.Room;
 import com.illcode.meterman2.ui.UIConstants;
@@ -25,10 +25,12 @@ import static com.illcode.meterman2.Meterman2.ui;
  *     <li>Taking and dropping items.</li>
  *     <li>Equipping and unequipping equippables.</li>
  * </ul>
+ * The actions it adds depend only on the attributes of an entity, whether it's in the inventory, and whether
+ * it's equipped, so it's a {@link StableEntityActionsProcessor}.
  * It also implements StatusBarProvider to show the # of turns.
  */
 public class BasicWorldHandler
-    implements GameActionListener, EntityActionsProcessor, StatusBarProvider
+    implements GameActionListener, StableEntityActionsProcessor, StatusBarProvider
 {
     private String handlerId;
 
@@ -5,6 +5,7 @@ import com.illcode.meterman2.MMScript;
 import com.illcode.meterman2.Meterman2;
 import com.illcode.meterman2.bundle.XBundle;
 import com.illcode.meterman2.event.*;
+import com.illcode.meterman2.loader.LoaderHelper;
 import com.illcode.meterman2.model.Entity;
 import com.illcode.meterman2.model.Room;
 import org.jdom2.Element;
@@ -31,25 +32,61 @@ public final class ScriptedHandler implements
         turnMethod,
         getHandlerStateMethod, restoreHandlerStateMethod, gameHandlerStartingMethod;
 
+    private HandlerScope scope;  // null if we're notified of all events
     private boolean registered;
 
     public ScriptedHandler(String handlerId) {
         this.handlerId = handlerId;
     }
 
+    /** Return the scope with which we register, or null if we are notified of all events. */
+    public HandlerScope getScope() {
+        return scope;
+    }
+
+    /**
+     * Set the scope with which we register as an entity-actions processor, look listener, player-movement
+     * listener, and turn listener, so that our scripts are called only for events within that scope.
+     * Game action listeners are always notified of all actions.
+     * @param scope scope, or null to be notified of all events
+     */
+    public void setScope(HandlerScope scope) {
+        final boolean wasRegistered = registered;
+        deregister();
+        this.scope = scope;
+        if (wasRegistered)
+            register();
+    }
+
     /** Register ourselves in the appropriate listener lists with the game manager. */
     public void register() {
         if (!registered) {
-            if (processEntityActionsMethod != null)
-                gm.addEntityActionsProcessor(this);
+            if (processEntityActionsMethod != null) {
+                if (scope != null)
+                    gm.addEntityActionsProcessor(this, scope);
+                else
+                    gm.addEntityActionsProcessor(this);
+            }
             if (processActionMethod != null || postActionMethod != null || objectActionMethod != null)
                 gm.addGameActionListener(this);
-            if (lookInRoomMethod != null)
-                gm.addLookListener(this);
-            if (playerMoveMethod != null)
-                gm.addPlayerMovementListener(this);
-            if (turnMethod != null)
-                gm.addTurnListener(this);
+            if (lookInRoomMethod != null) {
+                if (scope != null)
+                    gm.addLookListener(this, scope);
+                else
+                    gm.addLookListener(this);
+            }
+            if (playerMoveMethod != null) {
+                if (scope != null)
+                    gm.addPlayerMovementListener(this, scope);
+                else
+                    gm.addPlayerMovementListener(this);
+            }
+            if (turnMethod != null) {
+                if (scope != null)
+                    gm.addTurnListener(this, scope);
+                else
+                    gm.addTurnListener(this);
+            }
             registered = true;
         }
     }
@@ -89,6 +126,16 @@ public final class ScriptedHandler implements
      * Loads scripted methods from an XML element. The element should
      * have a child {@code <script>} element where the actual script source is contained.
      * <p/>
+     * The element may also limit the scope of the handler, with one of these attributes (or child elements):
+     * <dl>
+     *     <dt>rooms</dt>
+     *     <dd>a list of room IDs, in which case we're notified only of events in those rooms</dd>
+     *     <dt>entity</dt>
+     *     <dd>an entity ID, in which case we process only that entity's actions</dd>
+     *     <dt>withEntity</dt>
+     *     <dd>an entity ID, in which case we're notified only of events in the room where that entity is</dd>
+     * </dl>
+     * See {@link HandlerScope}.
      * @param b XBundle where element is found
      * @param id ID of the element to load from
      */
@@ -101,6 +148,18 @@ public final class ScriptedHandler implements
             return;
         boolean wasRegistered = registered;
         clearScriptedMethods();
+        final LoaderHelper helper = LoaderHelper.wrap(el);
+        final List<String> rooms = helper.getListValue("rooms");
+        final String entityId = helper.getValue("entity");
+        final String withEntityId = helper.getValue("withEntity");
+        if (!rooms.isEmpty())
+            scope = HandlerScope.rooms(rooms);
+        else if (entityId != null)
+            scope = HandlerScope.entity(entityId);
+        else if (withEntityId != null)
+            scope = HandlerScope.entityContainer(withEntityId);
+        else
+            scope = null;
         final List<MMScript.ScriptedMethod> methods =
             Meterman2.script.getScriptedMethods(id, b.getElementTextTrim(script));
         for (MMScript.ScriptedMethod sm : methods) {
@@ -143,49 +202,45 @@ public final class ScriptedHandler implements
 
     public void processEntityActions(Entity e, List<MMActions.Action> actions) {
         if (processEntityActionsMethod != null)
-            processEntityActionsMethod.invoke(e, actions);
+            processEntityActionsMethod.invoke2(e, actions);
     }
 
     public boolean processAction(MMActions.Action action, Entity e, boolean beforeAction) {
         if (processActionMethod != null)
-            return processActionMethod
-                .invokeWithResultOrError(Boolean.class, Boolean.FALSE, action, e, Boolean.valueOf(beforeAction));
+            return processActionMethod.invokeBoolean(action, e, Boolean.valueOf(beforeAction));
         else
             return false;
     }
 
     public boolean postAction(MMActions.Action action, Entity e, boolean actionHandled) {
         if (postActionMethod != null)
-            return postActionMethod
-                .invokeWithResultOrError(Boolean.class, Boolean.FALSE, action, e, Boolean.valueOf(actionHandled));
+            return postActionMethod.invokeBoolean(action, e, Boolean.valueOf(actionHandled));
         else
             return false;
     }
 
     public boolean objectAction(Entity object, MMActions.Action action, Entity selectedEntity) {
         if (objectActionMethod != null)
-            return objectActionMethod
-                .invokeWithResultOrError(Boolean.class, Boolean.FALSE, object, action, selectedEntity);
+            return objectActionMethod.invokeBoolean(object, action, selectedEntity);
         else
             return false;
     }
 
     public void lookInRoom(Room currentRoom) {
         if (lookInRoomMethod != null)
-            lookInRoomMethod.invoke(currentRoom);
+            lookInRoomMethod.invoke1(currentRoom);
     }
 
     public boolean playerMove(Room fromRoom, Room toRoom, boolean beforeMove) {
         if (playerMoveMethod != null)
-            return playerMoveMethod
-                .invokeWithResultOrError(Boolean.class, Boolean.FALSE, fromRoom, toRoom, Boolean.valueOf(beforeMove));
+            return playerMoveMethod.invokeBoolean(fromRoom, toRoom, Boolean.valueOf(beforeMove));
         else
             return false;
     }
 
     public void turn() {
         if (turnMethod != null)
-            turnMethod.invoke();
+            turnMethod.invoke0();
     }
 
     public String getHandlerId() {
@@ -194,7 +249,7 @@ public final class ScriptedHandler implements
 
     public Object getHandlerState() {
         if (getHandlerStateMethod != null)
-            return getHandlerStateMethod.invokeWithResultOrError(Object.class, null);
+            return getHandlerStateMethod.invoke0();
         else
             return null;
 
@@ -202,11 +257,11 @@ public final class ScriptedHandler implements
 
     public void restoreHandlerState(Object state) {
         if (restoreHandlerStateMethod != null)
-            restoreHandlerStateMethod.invoke(state);
+            restoreHandlerStateMethod.invoke1(state);
     }
 
     public void gameHandlerStarting(boolean newGame) {
         if (gameHandlerStartingMethod != null)
-            gameHandlerStartingMethod.invoke(Boolean.valueOf(newGame));
+            gameHandlerStartingMethod.invoke1(Boolean.valueOf(newGame));
     }
 }
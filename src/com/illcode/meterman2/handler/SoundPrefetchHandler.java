@@ -0,0 +1,125 @@
+package com.illcode.meterman2.handler;
+
+import com.illcode.meterman2.GameUtils;
+import com.illcode.meterman2.Meterman2;
+import com.illcode.meterman2.bundle.XBundle;
+import com.illcode.meterman2.event.PlayerMovementListener;
+import com.illcode.meterman2.loader.LoaderHelper;
+import com.illcode.meterman2.model.Room;
+import org.jdom2.Element;
+
+import java.util.*;
+
+/**
+ * A handler that keeps the sounds a game is likely to play ready to be played without delay.
+ * <p/>
+ * Each room can be associated with a set of sounds (its "ambient set"). When the player enters a room, the
+ * handler asks {@link com.illcode.meterman2.MMSound} to prefetch the room's ambient set, and, speculatively,
+ * the ambient sets of the rooms adjacent to it. The handler never plays sounds itself.
+ */
+public class SoundPrefetchHandler implements PlayerMovementListener
+{
+    private String handlerId;
+    private Map<String,List<String>> soundMap;
+
+    private List<Room> roomList;  // reused to avoid allocation; always clear() after using
+
+    public SoundPrefetchHandler(String handlerId) {
+        this.handlerId = handlerId;
+        soundMap = new HashMap<>();
+        roomList = new ArrayList<>(8);
+    }
+
+    /** Registers this handler with the game manager.  */
+    public void register() {
+        Meterman2.gm.addPlayerMovementListener(this);
+    }
+
+    /** Deregisters this handler from the game manager.  */
+    public void deregister() {
+        Meterman2.gm.removePlayerMovementListener(this);
+    }
+
+    /**
+     * Add sounds to the ambient set of a room.
+     * @param roomId room ID
+     * @param names source names of the sounds, as given in the sound map
+     */
+    public void putEntry(String roomId, Collection<String> names) {
+        List<String> sounds = soundMap.get(roomId);
+        if (sounds == null) {
+            sounds = new ArrayList<>(names.size());
+            soundMap.put(roomId, sounds);
+        }
+        for (String name : names)
+            if (!sounds.contains(name))
+                sounds.add(name);
+    }
+
+    /** Remove the ambient set of a room.
+     *  @param roomId room ID */
+    public void removeEntry(String roomId) {
+        soundMap.remove(roomId);
+    }
+
+    /** Remove all entries from our sound map. */
+    public void clearEntries() {
+        soundMap.clear();
+    }
+
+    /**
+     * Loads room sound entries from an XML element in a bundle.
+     * @param b XBundle where element is found
+     * @param id ID of the element to load from
+     */
+    public void loadFromElement(XBundle b, String id) {
+        final Element el = b.getElement(id);
+        if (el == null)
+            return;
+        final LoaderHelper helper = LoaderHelper.wrap(el);
+        for (Element entry : el.getChildren("sounds")) {
+            helper.setWrappedElement(entry);
+            final List<String> names = helper.getListValue("names");
+            final List<String> roomIds = helper.getListValue("rooms");
+            if (names.isEmpty() || roomIds.isEmpty())
+                continue;
+            for (String roomId : roomIds)
+                putEntry(roomId, names);
+        }
+    }
+
+    public boolean playerMove(Room fromRoom, Room toRoom, boolean beforeMove) {
+        if (!beforeMove)
+            prefetchSounds(toRoom);
+        return false;
+    }
+
+    private void prefetchSounds(Room room) {
+        List<String> sounds = soundMap.get(room.getId());
+        if (sounds != null)
+            Meterman2.sound.prefetchSources(sounds, false);
+        GameUtils.gatherExitRooms(room, true, roomList);
+        for (Room r : roomList) {
+            sounds = soundMap.get(r.getId());
+            if (sounds != null)
+                Meterman2.sound.prefetchSources(sounds, true);
+        }
+        roomList.clear();
+    }
+
+    public String getHandlerId() {
+        return handlerId;
+    }
+
+    public Object getHandlerState() {
+        return null;
+    }
+
+    public void restoreHandlerState(Object state) {
+        // empty
+    }
+
+    public void gameHandlerStarting(boolean newGame) {
+        prefetchSounds(Meterman2.gm.getCurrentRoom());
+    }
+}
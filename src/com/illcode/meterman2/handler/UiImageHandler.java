@@ -1,5 +1,6 @@
 package com.illcode.meterman2.handler;
 
+import com.illcode.meterman2.GameUtils;
 import com.illcode.meterman2.Meterman2;
 import com.illcode.meterman2.bundle.XBundle;
 import com.illcode.meterman2.event.EntitySelectionListener;
@@ -10,6 +11,7 @@ import com.illcode.meterman2.model.Room;
 import com.illcode.meterman2.ui.UIConstants;
 import org.jdom2.Element;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -18,6 +20,10 @@ import java.util.Map;
  * A handler that displays a frame image based on the current room, or an entity image
  * depending on the selected entity. Use one of the two static builder methods to get
  * the appropriate version of the handler.
+ * <p/>
+ * So that showing an image never waits on image decoding, each time the player moves the handler asks
+ * the UI to prefetch the images it may need next: a frame-image handler prefetches the images of the rooms
+ * adjacent to the player's room, and an entity-image handler those of the entities in the room and inventory.
  */
 public class UiImageHandler implements PlayerMovementListener, EntitySelectionListener
 {
@@ -28,10 +34,13 @@ public class UiImageHandler implements PlayerMovementListener, EntitySelectionLi
     private String idAttributeName;
     private boolean isFrameImageHandler;
 
+    private List<Room> roomList;  // reused to avoid allocation; always clear() after using
+
     private UiImageHandler(String handlerId) {
         this.handlerId = handlerId;
         imageMap = new HashMap<>();
         defaultImage = UIConstants.NO_IMAGE;
+        roomList = new ArrayList<>(8);
     }
 
     /** Create an image handler that will handle frame images. */
@@ -52,17 +61,15 @@ public class UiImageHandler implements PlayerMovementListener, EntitySelectionLi
 
     /** Registers this handler with the game manager.  */
     public void register() {
-        if (isFrameImageHandler)
-            Meterman2.gm.addPlayerMovementListener(this);
-        else
+        Meterman2.gm.addPlayerMovementListener(this);
+        if (!isFrameImageHandler)
             Meterman2.gm.addEntitySelectionListener(this);
     }
 
     /** Deregisters this handler from the game manager.  */
     public void deregister() {
-        if (isFrameImageHandler)
-            Meterman2.gm.removePlayerMovementListener(this);
-        else
+        Meterman2.gm.removePlayerMovementListener(this);
+        if (!isFrameImageHandler)
             Meterman2.gm.removeEntitySelectionListener(this);
     }
 
@@ -131,13 +138,40 @@ public class UiImageHandler implements PlayerMovementListener, EntitySelectionLi
         }
     }
 
-    // Only called if we're handling frame images.
     public boolean playerMove(Room fromRoom, Room toRoom, boolean beforeMove) {
-        if (!beforeMove)  // we're only interested in actual player movement
-            setFrameImage(toRoom.getId());
+        if (!beforeMove) {  // we're only interested in actual player movement
+            if (isFrameImageHandler)
+                setFrameImage(toRoom.getId());
+            prefetchImages(toRoom);
+        }
         return false;
     }
 
+    // Prefetch the images we're likely to need while the player is in a given room.
+    private void prefetchImages(Room room) {
+        if (isFrameImageHandler) {
+            GameUtils.gatherExitRooms(room, true, roomList);
+            for (Room r : roomList)
+                prefetchImage(r.getId());
+            roomList.clear();
+        } else {
+            for (Entity e : GameUtils.getRoomEntities(room))
+                prefetchImage(e.getId());
+            for (Entity e : Meterman2.gm.getPlayer().getEntities())
+                prefetchImage(e.getId());
+        }
+    }
+
+    private void prefetchImage(String id) {
+        String imageName = imageMap.get(id);
+        if (imageName == null)
+            imageName = defaultImage;
+        if (isFrameImageHandler)
+            Meterman2.ui.prefetchFrameImage(imageName);
+        else
+            Meterman2.ui.prefetchEntityImage(imageName);
+    }
+
     private void setFrameImage(String roomId) {
         String imageName = imageMap.get(roomId);
         if (imageName == null)
@@ -167,8 +201,10 @@ public class UiImageHandler implements PlayerMovementListener, EntitySelectionLi
     }
 
     public void gameHandlerStarting(boolean newGame) {
+        final Room currentRoom = Meterman2.gm.getCurrentRoom();
         if (isFrameImageHandler)
-            setFrameImage(Meterman2.gm.getCurrentRoom().getId());
-        // Games always start with no entity selected, so we don't need to do anything.
+            setFrameImage(currentRoom.getId());
+        // Games always start with no entity selected, so we needn't set an entity image.
+        prefetchImages(currentRoom);
     }
 }
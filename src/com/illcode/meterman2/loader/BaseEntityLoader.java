@@ -50,6 +50,7 @@ public class BaseEntityLoader implements EntityLoader
     protected boolean newGame;
     protected LoaderHelper helper;
     protected Map<String,MMScript.ScriptedMethod> methodMap;
+    private String compilableSource;
     protected GameObjectProperties objectProps;
 
     private BaseEntityLoader() {
@@ -172,18 +173,26 @@ public class BaseEntityLoader implements EntityLoader
         this.newGame = false;
         helper = null;
         methodMap.clear();
+        compilableSource = null;
         objectProps = null;
     }
 
-    // Read all 'script' elements and populate the methodMap.
+    // Read all 'script' elements and populate the methodMap. If every script is marked for
+    // compilation, their combined source is left in compilableSource.
     private void loadScriptedMethods() {
         final List<Element> scripts = el.getChildren("script");
+        StringBuilder sb = scripts.isEmpty() ? null : new StringBuilder();
         for (Element script : scripts) {
-            final List<MMScript.ScriptedMethod> methods =
-                Meterman2.script.getScriptedMethods(e.getId(), bundle.getElementTextTrim(script));
+            final String source = bundle.getElementTextTrim(script);
+            final List<MMScript.ScriptedMethod> methods = Meterman2.script.getScriptedMethods(e.getId(), source);
             for (MMScript.ScriptedMethod sm : methods)
                 methodMap.put(sm.getName(), sm);
+            if (sb != null && Utils.parseBoolean(script.getAttributeValue("compile")))
+                sb.append(source).append('\n');
+            else
+                sb = null;
         }
+        compilableSource = sb != null ? sb.toString() : null;
     }
 
     protected void loadBasicProperties() {
@@ -200,6 +209,8 @@ public class BaseEntityLoader implements EntityLoader
         // Set a delegate if appropriate
         if (!methodMap.isEmpty()) {
             final ScriptedEntityImpl scriptedImpl = new ScriptedEntityImpl(e.getId(), methodMap);
+            if (compilableSource != null)
+                scriptedImpl.setCompilableSource(compilableSource);
             final EnumSet<EntityImpl.EntityMethod> entityMethodSet = scriptedImpl.getScriptedEntityMethods();
             if (!entityMethodSet.isEmpty())
                 e.setDelegate(scriptedImpl, entityMethodSet);
@@ -294,5 +305,6 @@ public class BaseEntityLoader implements EntityLoader
 
     protected void loadEachTurnProperties(EachTurnEntityImpl impl) {
         impl.setScriptedMethods(methodMap);
+        impl.setTurnInterval(Utils.parseInt(el.getAttributeValue("turnInterval"), 1));
     }
 }
@@ -2,6 +2,7 @@ package com.illcode.meterman2.loader;
 
 import com.illcode.meterman2.MMScript;
 import com.illcode.meterman2.Meterman2;
+import com.illcode.meterman2.Utils;
 import com.illcode.meterman2.bundle.XBundle;
 import com.illcode.meterman2.model.*;
 import com.illcode.meterman2.ui.UIConstants;
@@ -40,6 +41,7 @@ public class BaseRoomLoader implements RoomLoader
     protected boolean newGame;
     protected LoaderHelper helper;
     protected Map<String,MMScript.ScriptedMethod> methodMap;
+    private String compilableSource;
     protected GameObjectProperties objectProps;
 
     private BaseRoomLoader() {
@@ -98,18 +100,26 @@ public class BaseRoomLoader implements RoomLoader
         this.newGame = false;
         helper = null;
         methodMap.clear();
+        compilableSource = null;
         objectProps = null;
     }
 
-    // Read all 'script' elements and populate the methodMap.
+    // Read all 'script' elements and populate the methodMap. If every script is marked for
+    // compilation, their combined source is left in compilableSource.
     private void loadScriptedMethods() {
         final List<Element> scripts = el.getChildren("script");
+        StringBuilder sb = scripts.isEmpty() ? null : new StringBuilder();
         for (Element script : scripts) {
-            final List<MMScript.ScriptedMethod> methods =
-                Meterman2.script.getScriptedMethods(r.getId(), bundle.getElementTextTrim(script));
+            final String source = bundle.getElementTextTrim(script);
+            final List<MMScript.ScriptedMethod> methods = Meterman2.script.getScriptedMethods(r.getId(), source);
             for (MMScript.ScriptedMethod sm : methods)
                 methodMap.put(sm.getName(), sm);
+            if (sb != null && Utils.parseBoolean(script.getAttributeValue("compile")))
+                sb.append(source).append('\n');
+            else
+                sb = null;
         }
+        compilableSource = sb != null ? sb.toString() : null;
     }
 
     private void loadBasicProperties() {
@@ -126,6 +136,8 @@ public class BaseRoomLoader implements RoomLoader
         // Set a delegate if appropriate
         if (!methodMap.isEmpty()) {
             final ScriptedRoomImpl scriptedImpl = new ScriptedRoomImpl(r.getId(), methodMap);
+            if (compilableSource != null)
+                scriptedImpl.setCompilableSource(compilableSource);
             final EnumSet<RoomImpl.RoomMethod> roomMethodSet = scriptedImpl.getScriptedRoomMethods();
             if (!roomMethodSet.isEmpty())
                 r.setDelegate(scriptedImpl, roomMethodSet);
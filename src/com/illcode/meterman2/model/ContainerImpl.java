@@ -128,7 +128,7 @@ public class ContainerImpl extends BaseEntityImpl
                 attr.toggle(LOCKED);
                 final String message = attr.get(LOCKED) ? "lock-message" : "unlock-message";
                 printPassageWithArgs(message, e.getDefName(), key.getDefName());
-                gm.entityChanged(e);
+                gm.entityAttributeChanged(e, LOCKED);
             }
             return true;
         } else if (action.equals(SystemActions.CONTAINER_LOOK_IN)) {
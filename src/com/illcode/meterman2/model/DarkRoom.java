@@ -3,14 +3,25 @@ package com.illcode.meterman2.model;
 import com.illcode.meterman2.*;
 import com.illcode.meterman2.text.TextSource;
 
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static com.illcode.meterman2.GameUtils.getPassage;
 
 /**
  * A room that is naturally dark, unless a light source is found within.
+ * <p/>
+ * The room keeps track of the light sources lighting it, which the game manager adds and removes one at a time
+ * (see {@link #lightSourceChanged(Entity, boolean)}) as they're lit or doused, move in or out of the room, or are
+ * locked in or unlocked from a container, and as the player, whose inventory lights the room he's in, comes
+ * or goes. A script that sets or clears an entity's <tt>LIGHTSOURCE</tt> or <tt>LOCKED</tt> attribute directly
+ * should call {@link GameManager#entityChanged(Entity)} afterward, and should move light sources with
+ * {@link GameManager#moveEntity(Entity, EntityContainer)}.
+ * The room becomes dark when the count falls to zero, and light when it rises from zero.
  */
 public class DarkRoom extends Room implements DarkAwareRoom
 {
@@ -20,8 +31,11 @@ public class DarkRoom extends Room implements DarkAwareRoom
     protected List<Entity> darkEntities;
     protected MMScript.ScriptedMethod getDarkEntitiesMethod;
 
+    protected Set<Entity> lightSources;
+
     protected DarkRoom(String id, RoomImpl impl) {
         super(id, impl);
+        lightSources = new HashSet<>();
     }
 
     /** Create a dark room with the given ID and a dark room implemention. */
@@ -55,10 +69,12 @@ public class DarkRoom extends Room implements DarkAwareRoom
 
     @SuppressWarnings("unchecked")
     public List<Entity> getDarkEntities() {
-        if (getDarkEntitiesMethod != null)
-            return getDarkEntitiesMethod.invokeWithResultOrError(List.class, Collections.emptyList(), this);
-        else
+        if (getDarkEntitiesMethod != null) {
+            final Object entities = getDarkEntitiesMethod.invoke1(this);
+            return entities instanceof List ? (List<Entity>) entities : Collections.<Entity>emptyList();
+        } else {
             return getDarkEntitiesImpl();
+        }
     }
 
     /**
@@ -83,38 +99,67 @@ public class DarkRoom extends Room implements DarkAwareRoom
         return darkEntities != null ? darkEntities : Collections.<Entity>emptyList();
     }
 
-    protected void checkDarkness() {
-        boolean wasDark = getAttributes().get(SystemAttributes.DARK);
-        boolean nowDark = false;
-        checkDark: {
-            // Let us see if something in the room is a light source.
-            for (Entity e : getEntities()) {
-                if (isLightSource(e)) {
-                    break checkDark;
-                } else if (e instanceof EntityContainer) {
-                    // we check only one level deep in containment, for the reasonable situation where,
-                    // say, a lamp is sitting on a shelf.
-                    EntityContainer c = (EntityContainer) e;
-                    if (!e.getAttributes().get(SystemAttributes.LOCKED))
-                        for (Entity ce : c.getEntities())
-                            if (isLightSource(ce))
-                                break checkDark;
-                }
-            }
-            // In player inventory, we do not check for containment: a lamp in a bag doesn't light the room.
-            if (Meterman2.gm.getCurrentRoom() == this)
-                for (Entity e : Meterman2.gm.getPlayer().getEntities())
-                    if (isLightSource(e))
-                        break checkDark;
+    /** Return the number of light sources lighting this room. */
+    public int getLightSourceCount() {
+        return lightSources.size();
+    }
 
-            nowDark = true;  // DARKNESS! Charley Murphy!
-        }
+    /**
+     * Called by the game manager when an entity starts or stops lighting this room. Calls for an entity already
+     * counted, or not counted, are ignored, so a change may safely be reported more than once.
+     * @param e light source
+     * @param lighting true if <tt>e</tt> now lights the room
+     */
+    public void lightSourceChanged(Entity e, boolean lighting) {
+        if (lighting ? lightSources.add(e) : lightSources.remove(e))
+            checkDarkness();
+    }
+
+    /**
+     * Recount the light sources lighting this room from scratch, as when a game is started or loaded,
+     * and make the room dark or light accordingly.
+     */
+    public void updateLighting() {
+        lightSources.clear();
+        gatherLightSources(lightSources);
+        checkDarkness();
+    }
+
+    /**
+     * Make the room dark if no light sources light it, and light otherwise. This is called whenever the
+     * light sources change; subclasses may override it to light or darken the room by other means.
+     */
+    protected void checkDarkness() {
+        final boolean wasDark = getAttributes().get(SystemAttributes.DARK);
+        final boolean nowDark = lightSources.isEmpty();  // DARKNESS! Charley Murphy!
         if (wasDark != nowDark) {
             getAttributes().set(SystemAttributes.DARK, nowDark);
-            Meterman2.gm.roomChanged(this);
+            Meterman2.gm.roomAttributeChanged(this, SystemAttributes.DARK);
         }
     }
 
+    // Gather the light sources lighting this room.
+    private void gatherLightSources(Collection<Entity> sources) {
+        for (Entity e : getEntities()) {
+            if (isLightSource(e))
+                sources.add(e);
+            if (e instanceof EntityContainer) {
+                // we check only one level deep in containment, for the reasonable situation where,
+                // say, a lamp is sitting on a shelf.
+                EntityContainer c = (EntityContainer) e;
+                if (!e.getAttributes().get(SystemAttributes.LOCKED))
+                    for (Entity ce : c.getEntities())
+                        if (isLightSource(ce))
+                            sources.add(ce);
+            }
+        }
+        // In player inventory, we do not check for containment: a lamp in a bag doesn't light the room.
+        if (Meterman2.gm.getCurrentRoom() == this)
+            for (Entity e : Meterman2.gm.getPlayer().getEntities())
+                if (isLightSource(e))
+                    sources.add(e);
+    }
+
     private static boolean isLightSource(Entity e) {
         return e.getAttributes().get(SystemAttributes.LIGHTSOURCE);
     }
@@ -138,10 +183,4 @@ public class DarkRoom extends Room implements DarkAwareRoom
             getDarkEntitiesMethod = null;
         }
     }
-
-    @Override
-    public void eachTurn() {
-        checkDarkness();
-        super.eachTurn();
-    }
 }
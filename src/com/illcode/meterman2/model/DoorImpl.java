@@ -136,7 +136,7 @@ public class DoorImpl extends BaseEntityImpl
                 attr.toggle(LOCKED);
                 final String message = attr.get(LOCKED) ? "lock-message" : "unlock-message";
                 printPassageWithArgs(message, e.getDefName(), key.getDefName());
-                gm.entityChanged(e);
+                gm.entityAttributeChanged(e, LOCKED);
             }
             return true;
         } else if (action.equals(SystemActions.OPEN) || action.equals(SystemActions.CLOSE)) {
@@ -144,9 +144,9 @@ public class DoorImpl extends BaseEntityImpl
             final String message = attr.get(CLOSED) ? "close-message" : "open-message";
             printPassageWithArgs(message, e.getDefName());
             updateRoomConnections(e);
-            gm.entityChanged(e);
-            gm.roomChanged(room1);
-            gm.roomChanged(room2);
+            gm.entityAttributeChanged(e, CLOSED);
+            gm.roomExitChanged(room1, pos1);
+            gm.roomExitChanged(room2, pos2);
             return true;
         }
         return false;
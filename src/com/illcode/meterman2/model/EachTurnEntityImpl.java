@@ -7,17 +7,33 @@ import com.illcode.meterman2.event.TurnListener;
 import java.util.Map;
 
 /**
- * An entity that allows a scripted method to be run each turn.
+ * An entity that allows a scripted method to be run each turn, or every so many turns.
  */
 public class EachTurnEntityImpl extends BaseEntityImpl implements TurnListener
 {
     protected MMScript.ScriptedMethod eachTurnMethod;
+    protected int turnInterval;
 
     private Entity e;
 
     public EachTurnEntityImpl(Entity e) {
         super();
         this.e = e;
+        turnInterval = 1;
+    }
+
+    /** Get the number of turns between calls to our each-turn method. */
+    public int getTurnInterval() {
+        return turnInterval;
+    }
+
+    /**
+     * Set the number of turns between calls to our each-turn method. The default is 1; with a greater
+     * interval we are scheduled with the game manager rather than being notified every turn.
+     * This should be called before the game starts.
+     */
+    public void setTurnInterval(int turnInterval) {
+        this.turnInterval = Math.max(turnInterval, 1);
     }
 
     /**
@@ -41,12 +57,19 @@ public class EachTurnEntityImpl extends BaseEntityImpl implements TurnListener
 
     public void gameStarting(Entity e) {
         super.gameStarting(e);
-        Meterman2.gm.addTurnListener(this);
+        if (turnInterval == 1) {
+            Meterman2.gm.addTurnListener(this);
+        } else {
+            // We count intervals from the start of the game, so that the phase survives saving and loading.
+            final int numTurns = Meterman2.gm.getNumTurns();
+            final int firstTurn = numTurns + (turnInterval - 1 - numTurns % turnInterval);
+            Meterman2.gm.scheduleTurnListener(this, firstTurn, turnInterval);
+        }
     }
 
     public void turn() {
         if (eachTurnMethod != null)
-            eachTurnMethod.invoke(e);
+            eachTurnMethod.invoke1(e);
     }
 
     public String getHandlerId() {
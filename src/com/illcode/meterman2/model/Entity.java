@@ -27,10 +27,23 @@ public class Entity
     private EntityContainer container;
 
     // These are behavioral, and are not persisted.
-    protected EntityImpl impl;
+    protected EntityImpl impl;  // change only through setImpl(), which updates the dispatch table
     private EntityImpl delegate;
     private EnumSet<EntityMethod> delegateMethods;
 
+    // While there is a delegate, the implementation, impl or delegate, to which each method is dispatched,
+    // indexed by method ordinal; null otherwise. It's resolved whenever either changes, so that a call needn't
+    // consult delegateMethods.
+    private EntityImpl[] dispatch;
+
+    private static final int D_GET_DESCRIPTION = GET_DESCRIPTION.ordinal(), D_LOOK_IN_ROOM = LOOK_IN_ROOM.ordinal(),
+        D_ENTER_SCOPE = ENTER_SCOPE.ordinal(), D_EXITING_SCOPE = EXITING_SCOPE.ordinal(), D_TAKEN = TAKEN.ordinal(),
+        D_DROPPED = DROPPED.ordinal(), D_GET_ACTIONS = GET_ACTIONS.ordinal(), D_PROCESS_ACTION = PROCESS_ACTION.ordinal(),
+        D_OBJECT_ACTION = OBJECT_ACTION.ordinal(), D_GET_STATE = GET_STATE.ordinal(),
+        D_RESTORE_STATE = RESTORE_STATE.ordinal(), D_GAME_STARTING = GAME_STARTING.ordinal();
+
+    private static final EntityMethod[] METHODS = EntityMethod.values();
+
     protected Entity(String id, EntityImpl impl) {
         this.id = id;
         this.impl = impl;
@@ -55,6 +68,7 @@ public class Entity
     /** Set the entity implementation instance used by this Entity. */
     public final void setImpl(EntityImpl impl) {
         this.impl = impl;
+        resolveDispatch();
     }
 
     /**
@@ -62,17 +76,36 @@ public class Entity
      * scripted methods, but may find other uses, such as consolidating logic for multiple entities in one
      * "manager" class.
      * @param delegate the delegate implementation
-     * @param delegateMethods a set indicating which methods should be forwarded
+     * @param delegateMethods a set indicating which methods should be forwarded. It is read only when this
+     *          method is called; to change the methods forwarded, call this method again.
      */
     public void setDelegate(EntityImpl delegate, EnumSet<EntityMethod> delegateMethods) {
         this.delegate = delegate;
         this.delegateMethods = delegateMethods;
+        resolveDispatch();
     }
 
     /** Remove the delegate. */
     public void clearDelegate() {
         delegate = null;
         delegateMethods = null;
+        resolveDispatch();
+    }
+
+    private void resolveDispatch() {
+        if (delegate == null) {
+            dispatch = null;
+            return;
+        }
+        if (dispatch == null)
+            dispatch = new EntityImpl[METHODS.length];
+        for (EntityMethod m : METHODS)
+            dispatch[m.ordinal()] = delegateMethods.contains(m) ? delegate : impl;
+    }
+
+    // Return the implementation to which the method with the given ordinal is dispatched.
+    private EntityImpl target(int method) {
+        return dispatch == null ? impl : dispatch[method];
     }
 
     /** Return the unique ID of this entity. */
@@ -133,10 +166,7 @@ public class Entity
     public String getDescription() {
         try {
             GameUtils.pushBinding("entity", this);
-            if (delegate != null && delegateMethods.contains(GET_DESCRIPTION))
-                return delegate.getDescription(this);
-            else
-                return impl.getDescription(this);
+            return target(D_GET_DESCRIPTION).getDescription(this);
         } finally {
             GameUtils.popBinding("entity");
         }
@@ -148,10 +178,7 @@ public class Entity
      * the room description printed.
      */
     public void lookInRoom() {
-        if (delegate != null && delegateMethods.contains(LOOK_IN_ROOM))
-            delegate.lookInRoom(this);
-        else
-            impl.lookInRoom(this);
+        target(D_LOOK_IN_ROOM).lookInRoom(this);
     }
 
     /**
@@ -164,10 +191,7 @@ public class Entity
      * </ol>
      */
     public void enterScope() {
-        if (delegate != null && delegateMethods.contains(ENTER_SCOPE))
-            delegate.enterScope(this);
-        else
-            impl.enterScope(this);
+        target(D_ENTER_SCOPE).enterScope(this);
     }
 
     /**
@@ -180,37 +204,29 @@ public class Entity
      * still has a valid place in the world graph.
      */
     public void exitingScope() {
-        if (delegate != null && delegateMethods.contains(EXITING_SCOPE))
-            delegate.exitingScope(this);
-        else
-            impl.exitingScope(this);
+        target(D_EXITING_SCOPE).exitingScope(this);
     }
 
     /** Called when the entity is moved to the player inventory */
     public void taken() {
-        if (delegate != null && delegateMethods.contains(TAKEN))
-            delegate.taken(this);
-        else
-            impl.taken(this);
+        target(D_TAKEN).taken(this);
     }
 
     /** Called when the entity is removed from the player inventory */
     public void dropped() {
-        if (delegate != null && delegateMethods.contains(DROPPED))
-            delegate.dropped(this);
-        else
-            impl.dropped(this);
+        target(D_DROPPED).dropped(this);
     }
 
     /**
      * Returns a list of extra actions to be shown in the UI. The list should be non-null
      * and modifiable, so callers and subclasses can add and remove actions.
+     * <p/>
+     * The game manager caches the actions shown for an entity, and asks for them again only when the
+     * entity's attributes or container change, or when {@link GameManager#entityChanged(Entity)} is called
+     * for it; if the actions depend on anything else, call that method when it changes.
      */
     public List<Action> getActions() {
-        if (delegate != null && delegateMethods.contains(GET_ACTIONS))
-            return delegate.getActions(this);
-        else
-            return impl.getActions(this);
+        return target(D_GET_ACTIONS).getActions(this);
     }
 
     /**
@@ -224,10 +240,7 @@ public class Entity
     public boolean processAction(Action action) {
         try {
             GameUtils.pushBinding("selectedEntity", this);
-            if (delegate != null && delegateMethods.contains(PROCESS_ACTION))
-                return delegate.processAction(this, action);
-            else
-                return impl.processAction(this, action);
+            return target(D_PROCESS_ACTION).processAction(this, action);
         } finally {
             GameUtils.popBinding("selectedEntity");
         }
@@ -242,10 +255,7 @@ public class Entity
      *      returns true, it should print a message indicating to the player why the action was blocked.
      */
     public boolean objectAction(Action action, Entity selectedEntity) {
-        if (delegate != null && delegateMethods.contains(OBJECT_ACTION))
-            return delegate.objectAction(this, action, selectedEntity);
-        else
-            return impl.objectAction(this, action, selectedEntity);
+        return target(D_OBJECT_ACTION).objectAction(this, action, selectedEntity);
     }
 
     /**
@@ -254,10 +264,7 @@ public class Entity
      * @return state object, or null to indicate no state needs to be saved
      */
     public Object getState() {
-        if (delegate != null && delegateMethods.contains(GET_STATE))
-            return delegate.getState(this);
-        else
-            return impl.getState(this);
+        return target(D_GET_STATE).getState(this);
     }
 
     /**
@@ -266,10 +273,7 @@ public class Entity
      * @param state state object (possibly null) previously returned by getState().
      */
     public void restoreState(Object state) {
-        if (delegate != null && delegateMethods.contains(RESTORE_STATE))
-            delegate.restoreState(this, state);
-        else
-            impl.restoreState(this, state);
+        target(D_RESTORE_STATE).restoreState(this, state);
     }
 
     /**
@@ -278,10 +282,7 @@ public class Entity
      * with the game manager.
      */
     public void gameStarting() {
-        if (delegate != null && delegateMethods.contains(GAME_STARTING))
-            delegate.gameStarting(this);
-        else
-            impl.gameStarting(this);
+        target(D_GAME_STARTING).gameStarting(this);
     }
 
     /**
@@ -33,7 +33,13 @@ public final class InteractSupport
     private TextSource promptMessage, noTopicsMessage;
     private InteractHandler interactHandler;
 
-    private List<Topic> assembledTopics; // for use with assembleTopicList() to avoid allocation
+    // The Topic objects for currentTopics, in the order they're shown to the user: the ordinary topics
+    // in the order they were added, then the Other Topic and the exit topic, if present. This is kept
+    // in sync by addTopic(), removeTopic(), and clearTopics(), and rebuilt by assembleTopicList() only when
+    // the topic map or exit topic change.
+    private List<Topic> topicList;
+    private int numOrdinaryTopics;  // the number of topics in topicList before the Other and exit topics
+    private int topicMapModCount;   // the topic map's mod count when topicList was assembled; -1 if invalid
 
     /**
      * Create a interact-support instance for the given entity.
@@ -42,7 +48,8 @@ public final class InteractSupport
     public InteractSupport(Entity e) {
         this.e = e;
         currentTopics = new OrderedSet<>(16);
-        assembledTopics = new ArrayList<>();
+        topicList = new ArrayList<>();
+        topicMapModCount = -1;
         interactAction = SystemActions.INTERACT;
     }
 
@@ -58,6 +65,7 @@ public final class InteractSupport
      */
     public void setTopicMap(TopicMap topicMap) {
         this.topicMap = topicMap;
+        topicMapModCount = -1;
     }
 
     /**
@@ -65,8 +73,17 @@ public final class InteractSupport
      * @param id topic ID, as found in the topic map.
      */
     public void addTopic(String id) {
-        if (id != null)
-            currentTopics.add(id);
+        if (id == null || !currentTopics.add(id) || !topicListValid())
+            return;
+        final Topic t = topicMap.getTopic(id);
+        if (t == null)
+            return;
+        if (id.equals(exitTopicId))
+            topicList.add(t);
+        else if (id.equals(TopicMap.OTHER_TOPIC_ID))
+            topicList.add(numOrdinaryTopics, t);  // before the exit topic
+        else
+            topicList.add(numOrdinaryTopics++, t);
     }
 
     /**
@@ -74,7 +91,17 @@ public final class InteractSupport
      * @param id topic ID, as found in the topic map.
      */
     public void removeTopic(String id) {
-        currentTopics.remove(id);
+        if (!currentTopics.remove(id) || !topicListValid())
+            return;
+        final Topic t = topicMap.getTopic(id);
+        if (t == null)
+            return;
+        final int idx = topicList.indexOf(t);
+        if (idx != -1) {
+            topicList.remove(idx);
+            if (idx < numOrdinaryTopics)
+                numOrdinaryTopics--;
+        }
     }
 
     /**
@@ -82,6 +109,8 @@ public final class InteractSupport
      */
     public void clearTopics() {
         currentTopics.clear();
+        topicList.clear();
+        numOrdinaryTopics = 0;
     }
 
     /** Return the possibly customized interact action being used. */
@@ -168,6 +197,7 @@ public final class InteractSupport
      */
     public void setExitTopicId(String exitTopicId) {
         this.exitTopicId = exitTopicId;
+        topicMapModCount = -1;
     }
 
     /**
@@ -264,7 +294,8 @@ public final class InteractSupport
      * @param state state object, as returned by {@code getState()}.
      */
     public void restoreState(Object state) {
-        currentTopics.clear();
+        clearTopics();
+        topicMapModCount = -1;
         if (state == null)
             return;
         final String[] currentTopicIds = (String[]) state;
@@ -272,14 +303,20 @@ public final class InteractSupport
             currentTopics.add(id);
     }
 
+    private boolean topicListValid() {
+        return topicMap != null && topicMapModCount == topicMap.getModCount();
+    }
+
     /*
-     * Assemble the topic list, adding the Other Topic if present, and taking
-     * care to put the exit topic last, if one has been set.
+     * Return the topic list, assembling it anew only if it's no longer valid. When assembling,
+     * add the Other Topic if present, and take care to put the exit topic last, if one has been set.
      */
     private List<Topic> assembleTopicList() {
-        Topic exitTopic = null, otherTopic = null;
+        if (topicListValid())
+            return topicList;
 
-        assembledTopics.clear();
+        Topic exitTopic = null, otherTopic = null;
+        topicList.clear();
         for (String id : currentTopics) {
             final Topic t = topicMap.getTopic(id);
             if (t != null) {
@@ -288,19 +325,21 @@ public final class InteractSupport
                 else if (id.equals(TopicMap.OTHER_TOPIC_ID))
                     otherTopic = t;
                 else
-                    assembledTopics.add(t);
+                    topicList.add(t);
             }
         }
+        numOrdinaryTopics = topicList.size();
         if (otherTopic != null)
-            assembledTopics.add(otherTopic);
+            topicList.add(otherTopic);
         if (exitTopic != null)
-            assembledTopics.add(exitTopic);
-        return assembledTopics;
+            topicList.add(exitTopic);
+        topicMapModCount = topicMap.getModCount();
+        return topicList;
     }
 
     private void beginInteract() {
         if (beginInteractMethod != null)
-            beginInteractMethod.invoke(e);
+            beginInteractMethod.invoke1(e);
         else if (interactHandler != null)
             interactHandler.beginInteract(e);
         // otherwise do nothing
@@ -308,7 +347,7 @@ public final class InteractSupport
 
     private boolean topicChosen(Topic t) {
         if (topicChosenMethod != null)
-            return topicChosenMethod.invokeWithResultOrError(Boolean.class, false, e, t);
+            return topicChosenMethod.invokeBoolean(e, t);
         else if (interactHandler != null)
             return interactHandler.topicChosen(e, t);
         else
@@ -317,7 +356,7 @@ public final class InteractSupport
 
     private void interactOther(String topic) {
         if (interactOtherMethod != null)
-            interactOtherMethod.invoke(e, topic);
+            interactOtherMethod.invoke2(e, topic);
         else if (interactHandler != null)
             interactHandler.interactOther(e, topic);
         // otherwise do nothing
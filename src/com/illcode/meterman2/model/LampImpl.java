@@ -11,6 +11,10 @@ import static com.illcode.meterman2.GameUtils.printPassageWithArgs;
 
 /**
  * A class for entities like flashlights, lamps, etc.
+ * <p/>
+ * A lamp that burns fuel does not count down its fuel every turn; rather it notes the turn at which
+ * it started burning, and schedules itself with the game manager to be called only when the fuel
+ * reaches the low-fuel amount or runs out.
  */
 public class LampImpl extends SwitchableEntityImpl implements TurnListener
 {
@@ -20,6 +24,10 @@ public class LampImpl extends SwitchableEntityImpl implements TurnListener
     protected String onText, offText;
     protected String baseName;
 
+    // See fuelRemainingAt()
+    private int burnStartTurn;
+    private int burnStartFuel;
+
     private Entity e;
     private AttributeSet attr;
     private MMActions.Action lightAction, douseAction;
@@ -37,7 +45,7 @@ public class LampImpl extends SwitchableEntityImpl implements TurnListener
         attr.set(LIGHTSOURCE, attr.get(ON));  // synchronize LIGHTSOURCE and ON
         setLampName();
         if (isLit())
-            gm.addTurnListener(this);
+            startBurning();
     }
 
     /** Returns true if this lamp burns fuel. */
@@ -52,13 +60,19 @@ public class LampImpl extends SwitchableEntityImpl implements TurnListener
 
     /** Get the fuel remaining. */
     public int getFuelRemaining() {
-        return fuelRemaining;
+        if (burnsFuel && isLit())
+            return fuelRemainingAt(gm.getNumTurns());
+        else
+            return fuelRemaining;
     }
 
     /** Set the fuel remaining. A lamp burns fuel at the rate of one unit per turn. */
     public void setFuelRemaining(int fuelRemaining) {
-        if (fuelRemaining >= 0)
+        if (fuelRemaining >= 0) {
             this.fuelRemaining = fuelRemaining;
+            if (isLit())
+                startBurning();
+        }
     }
 
     /** Get the low fuel amount. */
@@ -109,9 +123,11 @@ public class LampImpl extends SwitchableEntityImpl implements TurnListener
         if (!isLit()) {
             attr.set(ON);
             attr.set(LIGHTSOURCE);
-            gm.addTurnListener(this);
+            startBurning();
             setLampName();
-            gm.entityChanged(e);
+            gm.entityNameChanged(e);
+            gm.entityAttributeChanged(e, ON);
+            gm.entityAttributeChanged(e, LIGHTSOURCE);
         }
         return true;
     }
@@ -121,9 +137,11 @@ public class LampImpl extends SwitchableEntityImpl implements TurnListener
         if (isLit()) {
             attr.clear(ON);
             attr.clear(LIGHTSOURCE);
-            gm.removeTurnListener(this);
+            stopBurning();
             setLampName();
-            gm.entityChanged(e);
+            gm.entityNameChanged(e);
+            gm.entityAttributeChanged(e, ON);
+            gm.entityAttributeChanged(e, LIGHTSOURCE);
         }
     }
 
@@ -182,7 +200,7 @@ public class LampImpl extends SwitchableEntityImpl implements TurnListener
     public Object getState(Entity e) {
         Object[] oa = new Object[2];
         oa[0] = super.getState(e);
-        oa[1] = Integer.valueOf(fuelRemaining);
+        oa[1] = Integer.valueOf(getFuelRemaining());
         return oa;
     }
 
@@ -192,18 +210,53 @@ public class LampImpl extends SwitchableEntityImpl implements TurnListener
         fuelRemaining = ((Integer) oa[1]).intValue();
     }
 
-    // This will only be called if we are lit.
+    // Start (or restart) accounting for burned fuel from the current turn.
+    private void startBurning() {
+        if (!burnsFuel)
+            return;
+        burnStartTurn = gm.getNumTurns();
+        burnStartFuel = fuelRemaining;
+        scheduleWakeup();
+    }
+
+    private void stopBurning() {
+        if (!burnsFuel)
+            return;
+        fuelRemaining = fuelRemainingAt(gm.getNumTurns());
+        gm.unscheduleTurnListener(this);
+    }
+
+    /* Return the fuel remaining once a given number of turns have been completed. Each turn
+       completed since we started burning consumes one unit. */
+    private int fuelRemainingAt(int turnsCompleted) {
+        return Math.max(0, burnStartFuel - Math.max(0, turnsCompleted - burnStartTurn));
+    }
+
+    // Schedule ourself to be called at the turn at which the fuel reaches the low-fuel amount,
+    // or failing that, runs out.
+    private void scheduleWakeup() {
+        gm.unscheduleTurnListener(this);
+        final int remaining = fuelRemainingAt(burnStartTurn);
+        final int turns = lowFuelAmount > 0 && remaining > lowFuelAmount ? remaining - lowFuelAmount : remaining;
+        gm.scheduleTurnListener(this, burnStartTurn + turns - 1);
+    }
+
+    // This will only be called if we are lit and burn fuel, at the turns arranged by scheduleWakeup().
     public void turn() {
-        if (burnsFuel) {
-            fuelRemaining--;
-            if (fuelRemaining <= 0) {
-                douse();
-                gm.newPar();
-                printPassageWithArgs("lamp-out", getDefBaseName(true));
-            } else if (fuelRemaining == lowFuelAmount) {
+        // The current turn is completing, so we account for its fuel as well.
+        fuelRemaining = fuelRemainingAt(gm.getNumTurns() + 1);
+        burnStartTurn = gm.getNumTurns() + 1;
+        burnStartFuel = fuelRemaining;
+        if (fuelRemaining <= 0) {
+            douse();
+            gm.newPar();
+            printPassageWithArgs("lamp-out", getDefBaseName(true));
+        } else {
+            if (fuelRemaining == lowFuelAmount) {
                 gm.newPar();
                 printPassageWithArgs("lamp-low", getDefBaseName(true));
             }
+            scheduleWakeup();
         }
     }
 
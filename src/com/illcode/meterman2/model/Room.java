@@ -27,11 +27,22 @@ public class Room implements EntityContainer
     protected String[] exitLabels;
 
     // These are behavioral, and are not persisted.
-    protected RoomImpl impl;
+    protected RoomImpl impl;  // change only through setImpl(), which updates the dispatch table
     private RoomImpl delegate;
     private EnumSet<RoomMethod> delegateMethods;
     private ContainerSupport containerSupport;
 
+    // While there is a delegate, the implementation, impl or delegate, to which each method is dispatched,
+    // indexed by method ordinal; null otherwise. It's resolved whenever either changes, so that a call needn't
+    // consult delegateMethods.
+    private RoomImpl[] dispatch;
+
+    private static final int D_GET_DESCRIPTION = GET_DESCRIPTION.ordinal(), D_ENTERED = ENTERED.ordinal(),
+        D_EXITING = EXITING.ordinal(), D_EACH_TURN = EACH_TURN.ordinal(), D_GET_STATE = GET_STATE.ordinal(),
+        D_RESTORE_STATE = RESTORE_STATE.ordinal(), D_GAME_STARTING = GAME_STARTING.ordinal();
+
+    private static final RoomMethod[] METHODS = RoomMethod.values();
+
     /** Construct a room with the given ID. */
     protected Room(String id, RoomImpl impl) {
         this.id = id;
@@ -60,6 +71,7 @@ public class Room implements EntityContainer
     /** Set the room implementation instance used by this Room. */
     public final void setImpl(RoomImpl impl) {
         this.impl = impl;
+        resolveDispatch();
     }
 
     /**
@@ -67,17 +79,36 @@ public class Room implements EntityContainer
      * scripted methods, but may find other uses, such as consolidating logic for multiple rooms in one
      * "manager" class.
      * @param delegate the delegate implementation
-     * @param delegateMethods a set indicating which methods should be forwarded
+     * @param delegateMethods a set indicating which methods should be forwarded. It is read only when this
+     *          method is called; to change the methods forwarded, call this method again.
      */
     public final void setDelegate(RoomImpl delegate, EnumSet<RoomMethod> delegateMethods) {
         this.delegate = delegate;
         this.delegateMethods = delegateMethods;
+        resolveDispatch();
     }
 
     /** Remove the delegate. */
     public final void clearDelegate() {
         delegate = null;
         delegateMethods = null;
+        resolveDispatch();
+    }
+
+    private void resolveDispatch() {
+        if (delegate == null) {
+            dispatch = null;
+            return;
+        }
+        if (dispatch == null)
+            dispatch = new RoomImpl[METHODS.length];
+        for (RoomMethod m : METHODS)
+            dispatch[m.ordinal()] = delegateMethods.contains(m) ? delegate : impl;
+    }
+
+    // Return the implementation to which the method with the given ordinal is dispatched.
+    private RoomImpl target(int method) {
+        return dispatch == null ? impl : dispatch[method];
     }
 
     /** Return the unique ID of this room. */
@@ -182,10 +213,7 @@ public class Room implements EntityContainer
     public String getDescription() {
         try {
             GameUtils.pushBinding("room", this);
-            if (delegate != null && delegateMethods.contains(GET_DESCRIPTION))
-                return delegate.getDescription(this);
-            else
-                return impl.getDescription(this);
+            return target(D_GET_DESCRIPTION).getDescription(this);
         } finally {
             GameUtils.popBinding("room");
         }
@@ -196,10 +224,7 @@ public class Room implements EntityContainer
      * @param fromRoom the room (possibly null) from which the player entered
      */
     public void entered(Room fromRoom) {
-        if (delegate != null && delegateMethods.contains(ENTERED))
-            delegate.entered(this, fromRoom);
-        else
-            impl.entered(this, fromRoom);
+        target(D_ENTERED).entered(this, fromRoom);
     }
 
     /**
@@ -209,20 +234,14 @@ public class Room implements EntityContainer
      *          the exit may fail for other reasons)
      */
     public boolean exiting(Room toRoom) {
-        if (delegate != null && delegateMethods.contains(EXITING))
-            return delegate.exiting(this, toRoom);
-        else
-            return impl.exiting(this, toRoom);
+        return target(D_EXITING).exiting(this, toRoom);
     }
 
     /**
      * Called at the end of each turn that the player is in this room.
      */
     public void eachTurn() {
-        if (delegate != null && delegateMethods.contains(EACH_TURN))
-            delegate.eachTurn(this);
-        else
-            impl.eachTurn(this);
+        target(D_EACH_TURN).eachTurn(this);
     }
 
     /**
@@ -231,10 +250,7 @@ public class Room implements EntityContainer
      * @return state object, or null to indicate no state needs to be saved
      */
     public Object getState() {
-        if (delegate != null && delegateMethods.contains(GET_STATE))
-            return delegate.getState(this);
-        else
-            return impl.getState(this);
+        return target(D_GET_STATE).getState(this);
     }
 
     /**
@@ -243,10 +259,7 @@ public class Room implements EntityContainer
      * @param state state object (possibly null) previously returned by getState().
      */
     public void restoreState(Object state) {
-        if (delegate != null && delegateMethods.contains(RESTORE_STATE))
-            delegate.restoreState(this, state);
-        else
-            impl.restoreState(this, state);
+        target(D_RESTORE_STATE).restoreState(this, state);
     }
 
     /**
@@ -255,10 +268,7 @@ public class Room implements EntityContainer
      * with the game manager.
      */
     public void gameStarting() {
-        if (delegate != null && delegateMethods.contains(GAME_STARTING))
-            delegate.gameStarting(this);
-        else
-            impl.gameStarting(this);
+        target(D_GAME_STARTING).gameStarting(this);
     }
 
     /**
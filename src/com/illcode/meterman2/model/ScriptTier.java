@@ -0,0 +1,100 @@
+package com.illcode.meterman2.model;
+
+import com.illcode.meterman2.MMScript.ScriptedMethod;
+import com.illcode.meterman2.Meterman2;
+import com.illcode.meterman2.ScriptCompiler;
+
+import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+
+import static com.illcode.meterman2.MMLogging.logger;
+
+/**
+ * The compiled tier of a scripted implementation, used by {@link ScriptedEntityImpl} and {@link ScriptedRoomImpl}
+ * for scripts marked for compilation.
+ * <p/>
+ * The script's methods are invoked through the interpreter until they have been invoked
+ * {@link ScriptCompiler#getThreshold()} times in all, at which point the script is compiled in the background.
+ * Once compilation is done, and no interpreted method of the script is in progress, the whole script switches to
+ * the compiled implementation, taking the current values of its top-level variables with it. Scripts that are
+ * seldom called thus never leave the interpreter. If the script fails to compile, it stays interpreted.
+ * @param <T> the implementation interface
+ */
+final class ScriptTier<T>
+{
+    private final String id;
+    private final Class<T> iface;
+    private final Set<String> methodNames;
+    private final ScriptedMethod anyMethod;  // through which we read the script's variables
+    private final int threshold;
+    private int invocations;
+    private int interpreterDepth;  // how many interpreted invocations of the script's methods are in progress
+
+    private String source;  // null once compilation has started
+    private Future<Class<? extends T>> pending;  // non-null while compiling
+    private T impl;
+
+    /**
+     * Create a compiled tier.
+     * @param id script ID
+     * @param source script source
+     * @param iface the implementation interface
+     * @param methodNames names of the interface methods that the script defines
+     * @param anyMethod one of the script's methods
+     */
+    ScriptTier(String id, String source, Class<T> iface, Set<String> methodNames, ScriptedMethod anyMethod) {
+        this.id = id;
+        this.source = source;
+        this.iface = iface;
+        this.methodNames = methodNames;
+        this.anyMethod = anyMethod;
+        threshold = Meterman2.script.getCompiler().getThreshold();
+    }
+
+    /**
+     * Count an invocation of one of the script's methods, and return true if it should be invoked on the
+     * compiled implementation (returned by {@link #getImpl()}). If not, the caller should bracket the
+     * interpreted invocation with {@link #enterInterpreter()} and {@link #exitInterpreter()}.
+     */
+    boolean useCompiled() {
+        if (impl != null)
+            return true;
+        if (pending != null) {
+            // Switch only between interpreted invocations, so that none of them changes a variable after
+            // we've copied it.
+            if (!pending.isDone() || interpreterDepth > 0)
+                return false;
+            impl = Meterman2.script.getCompiler().instantiate(id, pending, anyMethod.getVariables());
+            pending = null;
+            return impl != null;
+        }
+        if (source == null)  // compilation failed
+            return false;
+        if (++invocations >= threshold) {
+            pending = Meterman2.script.getCompiler().compileInBackground(id, source, iface, methodNames);
+            source = null;
+        }
+        return false;
+    }
+
+    /** Called before invoking a method of the script through the interpreter. */
+    void enterInterpreter() {
+        interpreterDepth++;
+    }
+
+    /** Called after invoking a method of the script through the interpreter. */
+    void exitInterpreter() {
+        interpreterDepth--;
+    }
+
+    /** Return the compiled implementation. */
+    T getImpl() {
+        return impl;
+    }
+
+    /** Log an exception thrown by a compiled method, which the interpreter would have caught. */
+    void logError(RuntimeException ex) {
+        logger.log(Level.WARNING, "Compiled script error in " + id + ":", ex);
+    }
+}
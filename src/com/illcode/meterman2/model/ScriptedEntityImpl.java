@@ -1,6 +1,7 @@
 package com.illcode.meterman2.model;
 
 import com.illcode.meterman2.MMActions;
+import com.illcode.meterman2.Meterman2;
 import com.illcode.meterman2.MMScript.ScriptedMethod;
 import com.illcode.meterman2.text.TextSource;
 
@@ -10,8 +11,10 @@ import static com.illcode.meterman2.MMLogging.logger;
 
 public final class ScriptedEntityImpl implements EntityImpl
 {
+    private final String id;
     private List<MMActions.Action> actionList;
     private final EnumMap<EntityMethod,ScriptedMethod> scriptedEntityMethods;
+    private ScriptTier<EntityImpl> tier;  // null unless the script is to be compiled
 
     /**
      * Construct a scripted entity implementation from methods given in a map.
@@ -19,6 +22,7 @@ public final class ScriptedEntityImpl implements EntityImpl
      * @param methodMap map from method name to scripted method
      */
     public ScriptedEntityImpl(String id, Map<String,ScriptedMethod> methodMap) {
+        this.id = id;
         actionList = new ArrayList<>(8);
         scriptedEntityMethods = new EnumMap<>(EntityMethod.class);
         for (EntityMethod em : EntityMethod.values()) {
@@ -41,12 +45,28 @@ public final class ScriptedEntityImpl implements EntityImpl
         return methodSet;
     }
 
+    /**
+     * Mark the script for compilation, so that once it is hot its methods are invoked as bytecode
+     * rather than through the interpreter. See {@link com.illcode.meterman2.ScriptCompiler}.
+     * @param source the script source, which must also be valid as the body of a Java class
+     */
+    public void setCompilableSource(String source) {
+        if (!Meterman2.script.getCompiler().isEnabled() || scriptedEntityMethods.isEmpty())
+            return;
+        final Set<String> methodNames = new HashSet<>();
+        for (EntityMethod em : scriptedEntityMethods.keySet())
+            methodNames.add(em.getMethodName());
+        tier = new ScriptTier<>(id, source, EntityImpl.class, methodNames,
+            scriptedEntityMethods.values().iterator().next());
+    }
+
     // Note that if any of these methods are called, a ScriptedMethod should exist for that method,
     // since only methods in scriptedEntityMethods.keySet() were reported to be available; thus if
     // the map has no entry for a method, it is an error.
 
     public String getDescription(Entity e) {
-        return invokeWithResultOrError(EntityMethod.GET_DESCRIPTION, String.class, "[error]", e);
+        final Object description = call(EntityMethod.GET_DESCRIPTION, e, null, null);
+        return description instanceof String ? (String) description : "[error]";
     }
 
     public void setDescription(TextSource description) {
@@ -54,70 +74,122 @@ public final class ScriptedEntityImpl implements EntityImpl
     }
 
     public void lookInRoom(Entity e) {
-        invokeMethod(EntityMethod.LOOK_IN_ROOM, e);
+        call(EntityMethod.LOOK_IN_ROOM, e, null, null);
     }
 
     public void enterScope(Entity e) {
-        invokeMethod(EntityMethod.ENTER_SCOPE, e);
+        call(EntityMethod.ENTER_SCOPE, e, null, null);
     }
 
     public void exitingScope(Entity e) {
-        invokeMethod(EntityMethod.EXITING_SCOPE, e);
+        call(EntityMethod.EXITING_SCOPE, e, null, null);
     }
 
     public void taken(Entity e) {
-        invokeMethod(EntityMethod.TAKEN, e);
+        call(EntityMethod.TAKEN, e, null, null);
     }
 
     public void dropped(Entity e) {
-        invokeMethod(EntityMethod.DROPPED, e);
+        call(EntityMethod.DROPPED, e, null, null);
     }
 
     @SuppressWarnings("unchecked")
     public List<MMActions.Action> getActions(Entity e) {
         // we use our own actionList here to ensure that it's modifiable, for callers of this method.
         actionList.clear();
-        actionList.addAll(invokeWithResultOrError(EntityMethod.GET_ACTIONS, List.class,
-                                                  Collections.<MMActions.Action>emptyList(), e));
+        final Object actions = call(EntityMethod.GET_ACTIONS, e, null, null);
+        if (actions instanceof List)
+            actionList.addAll((List<MMActions.Action>) actions);
         return actionList;
     }
 
     public boolean processAction(Entity e, MMActions.Action action) {
-        return invokeWithResultOrError(EntityMethod.PROCESS_ACTION, Boolean.class, Boolean.FALSE, e, action);
+        return Boolean.TRUE.equals(call(EntityMethod.PROCESS_ACTION, e, action, null));
     }
 
     public boolean objectAction(Entity e, MMActions.Action action, Entity selectedEntity) {
-        return invokeWithResultOrError(EntityMethod.OBJECT_ACTION, Boolean.class, Boolean.FALSE,
-                                       e, action, selectedEntity);
+        return Boolean.TRUE.equals(call(EntityMethod.OBJECT_ACTION, e, action, selectedEntity));
     }
 
     public Object getState(Entity e) {
-        return invokeWithResultOrError(EntityMethod.GET_STATE, Object.class, null, e);
+        return call(EntityMethod.GET_STATE, e, null, null);
     }
 
     public void restoreState(Entity e, Object state) {
-        invokeMethod(EntityMethod.RESTORE_STATE, e, state);
+        call(EntityMethod.RESTORE_STATE, e, state, null);
     }
 
     public void gameStarting(Entity e) {
-        invokeMethod(EntityMethod.GAME_STARTING, e);
-    }
-
-    // Invoke a method with no return value.
-    private void invokeMethod(EntityMethod method, Object... args) {
-        ScriptedMethod m = scriptedEntityMethods.get(method);
-        if (m != null)
-            m.invoke(args);
+        call(EntityMethod.GAME_STARTING, e, null, null);
+    }
+
+    /* Invoke a method, on the compiled implementation if the script has been compiled, and otherwise through
+       the interpreter, returning its result, or null if it failed or the script doesn't define it. Arguments
+       after the first that the method doesn't take are ignored. */
+    private Object call(EntityMethod method, Entity e, Object a, Object b) {
+        if (tier != null && tier.useCompiled()) {
+            try {
+                return callCompiled(tier.getImpl(), method, e, a, b);
+            } catch (RuntimeException ex) {
+                tier.logError(ex);
+                return null;
+            }
+        }
+        final ScriptedMethod m = scriptedEntityMethods.get(method);
+        if (m == null)
+            return null;
+        if (tier != null)
+            tier.enterInterpreter();
+        try {
+            switch (method) {
+            case PROCESS_ACTION:
+            case RESTORE_STATE:
+                return m.invoke2(e, a);
+            case OBJECT_ACTION:
+                return m.invoke3(e, a, b);
+            default:
+                return m.invoke1(e);
+            }
+        } finally {
+            if (tier != null)
+                tier.exitInterpreter();
+        }
     }
 
-    // Invoke a method that should return a non-null value.
-    @SuppressWarnings("unchecked")
-    private <T> T invokeWithResultOrError(EntityMethod method, Class<? extends T> resultClass,
-                                          T errorVal, Object... args) {
-        ScriptedMethod m = scriptedEntityMethods.get(method);
-        if (m == null)
-            return errorVal;
-        else
-            return m.invokeWithResultOrError(resultClass, errorVal, args);
+    private static Object callCompiled(EntityImpl impl, EntityMethod method, Entity e, Object a, Object b) {
+        switch (method) {
+        case GET_DESCRIPTION:
+            return impl.getDescription(e);
+        case LOOK_IN_ROOM:
+            impl.lookInRoom(e);
+            break;
+        case ENTER_SCOPE:
+            impl.enterScope(e);
+            break;
+        case EXITING_SCOPE:
+            impl.exitingScope(e);
+            break;
+        case TAKEN:
+            impl.taken(e);
+            break;
+        case DROPPED:
+            impl.dropped(e);
+            break;
+        case GET_ACTIONS:
+            return impl.getActions(e);
+        case PROCESS_ACTION:
+            return impl.processAction(e, (MMActions.Action) a);
+        case OBJECT_ACTION:
+            return impl.objectAction(e, (MMActions.Action) a, (Entity) b);
+        case GET_STATE:
+            return impl.getState(e);
+        case RESTORE_STATE:
+            impl.restoreState(e, a);
+            break;
+        case GAME_STARTING:
+            impl.gameStarting(e);
+            break;
+        }
+        return null;
     }
 }
@@ -1,17 +1,22 @@
 package com.illcode.meterman2.model;
 
 import com.illcode.meterman2.MMScript.ScriptedMethod;
+import com.illcode.meterman2.Meterman2;
 import com.illcode.meterman2.text.TextSource;
 
 import java.util.EnumMap;
 import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
 import static com.illcode.meterman2.MMLogging.logger;
 
 public final class ScriptedRoomImpl implements RoomImpl
 {
+    private final String id;
     private final EnumMap<RoomMethod,ScriptedMethod> scriptedRoomMethods;
+    private ScriptTier<RoomImpl> tier;  // null unless the script is to be compiled
 
     /**
      * Construct a scripted room implementation from methods given in a map.
@@ -19,6 +24,7 @@ public final class ScriptedRoomImpl implements RoomImpl
      * @param methodMap map from method name to scripted method
      */
     public ScriptedRoomImpl(String id, Map<String,ScriptedMethod> methodMap) {
+        this.id = id;
         scriptedRoomMethods = new EnumMap<>(RoomMethod.class);
         for (RoomMethod rm : RoomMethod.values()) {
             ScriptedMethod sm = methodMap.get(rm.getMethodName());
@@ -40,8 +46,24 @@ public final class ScriptedRoomImpl implements RoomImpl
         return methodSet;
     }
 
+    /**
+     * Mark the script for compilation, so that once it is hot its methods are invoked as bytecode
+     * rather than through the interpreter. See {@link com.illcode.meterman2.ScriptCompiler}.
+     * @param source the script source, which must also be valid as the body of a Java class
+     */
+    public void setCompilableSource(String source) {
+        if (!Meterman2.script.getCompiler().isEnabled() || scriptedRoomMethods.isEmpty())
+            return;
+        final Set<String> methodNames = new HashSet<>();
+        for (RoomMethod rm : scriptedRoomMethods.keySet())
+            methodNames.add(rm.getMethodName());
+        tier = new ScriptTier<>(id, source, RoomImpl.class, methodNames,
+            scriptedRoomMethods.values().iterator().next());
+    }
+
     public String getDescription(Room r) {
-        return invokeWithResultOrError(RoomMethod.GET_DESCRIPTION, String.class, "[error]", r);
+        final Object description = call(RoomMethod.GET_DESCRIPTION, r, null);
+        return description instanceof String ? (String) description : "[error]";
     }
 
     public void setDescription(TextSource description) {
@@ -49,44 +71,82 @@ public final class ScriptedRoomImpl implements RoomImpl
     }
 
     public void entered(Room r, Room fromRoom) {
-        invokeMethod(RoomMethod.ENTERED, r, fromRoom);
+        call(RoomMethod.ENTERED, r, fromRoom);
     }
 
     public boolean exiting(Room r, Room toRoom) {
-        return invokeWithResultOrError(RoomMethod.EXITING, Boolean.class, Boolean.FALSE, r, toRoom);
+        return Boolean.TRUE.equals(call(RoomMethod.EXITING, r, toRoom));
     }
 
     public void eachTurn(Room r) {
-        invokeMethod(RoomMethod.EACH_TURN, r);
+        call(RoomMethod.EACH_TURN, r, null);
     }
 
     public Object getState(Room r) {
-        return invokeWithResultOrError(RoomMethod.GET_STATE, Object.class, null, r);
+        return call(RoomMethod.GET_STATE, r, null);
     }
 
     public void restoreState(Room r, Object state) {
-        invokeMethod(RoomMethod.RESTORE_STATE, r, state);
+        call(RoomMethod.RESTORE_STATE, r, state);
     }
 
     public void gameStarting(Room r) {
-        invokeMethod(RoomMethod.GAME_STARTING, r);
+        call(RoomMethod.GAME_STARTING, r, null);
     }
 
-    // Invoke a method with no return value.
-    private void invokeMethod(RoomMethod method, Object... args) {
-        ScriptedMethod m = scriptedRoomMethods.get(method);
-        if (m != null)
-            m.invoke(args);
+    /* Invoke a method, on the compiled implementation if the script has been compiled, and otherwise through
+       the interpreter, returning its result, or null if it failed or the script doesn't define it. The second
+       argument is ignored if the method doesn't take one. */
+    private Object call(RoomMethod method, Room r, Object a) {
+        if (tier != null && tier.useCompiled()) {
+            try {
+                return callCompiled(tier.getImpl(), method, r, a);
+            } catch (RuntimeException ex) {
+                tier.logError(ex);
+                return null;
+            }
+        }
+        final ScriptedMethod m = scriptedRoomMethods.get(method);
+        if (m == null)
+            return null;
+        if (tier != null)
+            tier.enterInterpreter();
+        try {
+            switch (method) {
+            case ENTERED:
+            case EXITING:
+            case RESTORE_STATE:
+                return m.invoke2(r, a);
+            default:
+                return m.invoke1(r);
+            }
+        } finally {
+            if (tier != null)
+                tier.exitInterpreter();
+        }
     }
 
-    // Invoke a method that should return a non-null value.
-    @SuppressWarnings("unchecked")
-    private <T> T invokeWithResultOrError(RoomMethod method, Class<? extends T> resultClass,
-                                          T errorVal, Object... args) {
-        ScriptedMethod m = scriptedRoomMethods.get(method);
-        if (m == null)
-            return errorVal;
-        else
-            return m.invokeWithResultOrError(resultClass, errorVal, args);
+    private static Object callCompiled(RoomImpl impl, RoomMethod method, Room r, Object a) {
+        switch (method) {
+        case GET_DESCRIPTION:
+            return impl.getDescription(r);
+        case ENTERED:
+            impl.entered(r, (Room) a);
+            break;
+        case EXITING:
+            return impl.exiting(r, (Room) a);
+        case EACH_TURN:
+            impl.eachTurn(r);
+            break;
+        case GET_STATE:
+            return impl.getState(r);
+        case RESTORE_STATE:
+            impl.restoreState(r, a);
+            break;
+        case GAME_STARTING:
+            impl.gameStarting(r);
+            break;
+        }
+        return null;
     }
 }
@@ -46,7 +46,7 @@ public class SwitchableEntityImpl extends BaseEntityImpl
         if (action.equals(getSwitchOnAction()) || action.equals(getSwitchOffAction())) {
             final boolean on = attr.get(SystemAttributes.ON);
             if (switchedMethod != null)
-                return switchedMethod.invokeWithResultOrError(Boolean.class, false, e, on);
+                return switchedMethod.invokeBoolean(e, Boolean.valueOf(on));
             else
                 return switchedAction(e, on);
         } else {
@@ -84,7 +84,7 @@ public class SwitchableEntityImpl extends BaseEntityImpl
      */
     protected boolean switchedAction(Entity e, boolean on) {
         e.getAttributes().toggle(SystemAttributes.ON);
-        Meterman2.gm.entityChanged(e);
+        Meterman2.gm.entityAttributeChanged(e, SystemAttributes.ON);
         return false;
     }
 }
@@ -25,6 +25,7 @@ public final class TopicMap
     static final String OTHER_TOPIC_ID = "OTHER";
 
     private ObjectMap<String,Topic> topics;
+    private int modCount;  // incremented whenever the topics change
 
     public TopicMap() {
         topics = new ObjectMap<>(16);
@@ -38,11 +39,19 @@ public final class TopicMap
     /** Put a topic with a given ID. */
     public void putTopic(String id, Topic t) {
         topics.put(id, t);
+        modCount++;
     }
 
     /** Clear all topics. */
     public void clearTopics() {
         topics.clear();
+        modCount++;
+    }
+
+    /** Return a count that changes whenever the topics in this map change, so that users
+     *  can tell whether topics they've looked up are still current. */
+    int getModCount() {
+        return modCount;
     }
 
     /**
@@ -52,6 +61,7 @@ public final class TopicMap
      */
     public void loadFrom(Element el, XBundle b) {
         topics.clear();
+        modCount++;
         LoaderHelper helper = LoaderHelper.wrap(el);
         for (Element topicEl : el.getChildren("topic")) {
             helper.setWrappedElement(topicEl);
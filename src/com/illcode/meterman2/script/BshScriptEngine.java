@@ -0,0 +1,206 @@
+package com.illcode.meterman2.script;
+
+import bsh.*;
+import com.illcode.meterman2.MMScript;
+import com.illcode.meterman2.Utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+
+import static com.illcode.meterman2.MMLogging.logger;
+
+/**
+ * The BeanShell script engine.
+ * <p/>
+ * The system scope is the global namespace of a BeanShell interpreter, populated by the
+ * <tt>system-script.bsh</tt> resource; the game scope is a child namespace of it.
+ */
+public final class BshScriptEngine implements ScriptEngine
+{
+    /**
+     * The global BeanShell interpreter that is created once upon construction and used
+     * for all script evaluation.
+     */
+    private Interpreter intr;
+
+    /**
+     * The NameSpace that holds Meterman system imports, utility methods, and references
+     * to the various manager classes.
+     */
+    private NameSpace systemNameSpace;
+
+    /**
+     * The NameSpace used by an individual game, which is used as the parent namespace
+     * for all scripted objects. This namespace is populated by the game itself when it's
+     * loaded and should not be modified by scripts because it's not persisted.
+     */
+    private NameSpace gameNameSpace;
+
+    public BshScriptEngine() {
+        intr = new Interpreter();
+        systemNameSpace = intr.getNameSpace();
+        unimportUnneededDefaults(systemNameSpace);
+        gameNameSpace = new NameSpace(systemNameSpace, "gameNameSpace");
+    }
+
+    public String getName() {
+        return "BeanShell";
+    }
+
+    public void init(StringBuilder outputBuilder) {
+        try {
+            systemNameSpace.setTypedVariable("outputBuilder", StringBuilder.class, outputBuilder, null);
+            intr.eval(Utils.getStringResource("scripts/system-script.bsh"));
+        } catch (UtilEvalError|EvalError err) {
+            logger.log(Level.WARNING, "MMScript error:", err);
+        }
+    }
+
+    public void dispose() {
+        gameNameSpace = null;
+        systemNameSpace = null;
+        intr = null;
+    }
+
+    private void unimportUnneededDefaults(NameSpace ns) {
+        ns.unimportPackage("javax.swing.event");
+        ns.unimportPackage("javax.swing");
+        ns.unimportPackage("java.awt.event");
+        ns.unimportPackage("java.awt");
+        ns.unimportPackage("java.net");
+        ns.unimportPackage("java.io");
+        ns.unimportCommands("/bsh/commands");
+    }
+
+    public void setClassLoader(ClassLoader loader) {
+        intr.setClassLoader(loader);
+    }
+
+    public void putSystemBinding(String name, Object value) {
+        putBindingImpl(name, value, systemNameSpace);
+    }
+
+    public void putBinding(String name, Object value) {
+        putBindingImpl(name, value, gameNameSpace);
+    }
+
+    // Put a variable binding into a given namespace.
+    private static void putBindingImpl(String name, Object value, NameSpace ns) {
+        try {
+            ns.unsetVariable(name);
+            if (value != null)
+                ns.setTypedVariable(name, value.getClass(), value, null);
+        } catch (UtilEvalError err) {
+            logger.log(Level.WARNING, "MMScript error:", err);
+        }
+    }
+
+    public Object getBinding(String name) {
+        try {
+            final Object val = gameNameSpace.getVariable(name, false);
+            return val == Primitive.VOID ? null : val;
+        } catch (UtilEvalError err) {
+            logger.log(Level.WARNING, "MMScript error:", err);
+            return null;
+        }
+    }
+
+    public void clearBindings() {
+        gameNameSpace.clear();
+    }
+
+    public void importPackage(String name) {
+        gameNameSpace.importPackage(name);
+    }
+
+    public void importClass(String name) {
+        gameNameSpace.importClass(name);
+    }
+
+    public Object evalSystem(String source) throws ScriptException {
+        return eval(source, systemNameSpace);
+    }
+
+    public Object eval(String source) throws ScriptException {
+        return eval(source, gameNameSpace);
+    }
+
+    private Object eval(String source, NameSpace ns) throws ScriptException {
+        try {
+            return intr.eval(source, ns);
+        } catch (EvalError err) {
+            throw new ScriptException(err);
+        }
+    }
+
+    public List<Method> getMethods(String id, String source) throws ScriptException {
+        final NameSpace ns = new NameSpace(gameNameSpace, id);
+        eval(source, ns);
+        final BshMethod[] bshMethods = ns.getMethods();
+        final List<Method> methods = new ArrayList<>(bshMethods.length);
+        for (BshMethod m : bshMethods)
+            methods.add(new BshScriptMethod(m, ns));
+        return methods;
+    }
+
+    private final class BshScriptMethod implements Method
+    {
+        private final BshMethod bshMethod;
+        private final NameSpace ns;
+
+        private BshScriptMethod(BshMethod bshMethod, NameSpace ns) {
+            this.bshMethod = bshMethod;
+            this.ns = ns;
+        }
+
+        public String getName() {
+            return bshMethod.getName();
+        }
+
+        public void putBinding(String name, Object value) {
+            putBindingImpl(name, value, ns);
+        }
+
+        public Map<String,Object> getVariables() {
+            final String[] names = ns.getVariableNames();
+            final Map<String,Object> vars = new HashMap<>(names.length * 2);
+            for (String name : names) {
+                try {
+                    final Object val = ns.getVariable(name, false);
+                    if (val != Primitive.VOID)
+                        vars.put(name, Primitive.unwrap(val));
+                } catch (UtilEvalError err) {
+                    logger.log(Level.WARNING, "MMScript error:", err);
+                }
+            }
+            return vars;
+        }
+
+        public Object invoke(Object[] args) throws ScriptException {
+            final Object result;
+            try {
+                wrapNulls(args);
+                result = bshMethod.invoke(args, intr);
+            } catch (EvalError err) {
+                throw new ScriptException(err);
+            }
+            if (result instanceof Primitive) {
+                if (result == Primitive.VOID)
+                    return MMScript.VOID_RETURN;
+                else
+                    return ((Primitive) result).getValue();
+            }
+            return result;
+        }
+
+        // BeanShell needs null values wrapped as Primitive.NULL; the caller lets us do this in place.
+        private void wrapNulls(Object[] args) {
+            for (int i = 0; i < args.length; i++)
+                if (args[i] == null)
+                    args[i] = Primitive.NULL;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.illcode.meterman2.script;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The interface between {@link com.illcode.meterman2.MMScript} and the engine that actually runs scripts.
+ * <p/>
+ * An engine keeps two scopes of variables and imports: the <em>system</em> scope, which holds the engine's
+ * utility methods and references to the managers of the game system, and the <em>game</em> scope, a child of
+ * the system scope, which holds the state of the game being played and from which each script's own scope
+ * descends. Games select an engine in their glue file (see {@link com.illcode.meterman2.GamesList}); the
+ * default is {@link BshScriptEngine}.
+ * <p/>
+ * An engine is used only from the thread running the game, and so need not be thread-safe. Implementations
+ * must have a public no-argument constructor.
+ */
+public interface ScriptEngine
+{
+    /** Return the name of the engine, for log messages. */
+    String getName();
+
+    /**
+     * Prepare the system scope: define the engine's utility methods, and bind a variable named
+     * <tt>outputBuilder</tt> to which the output of scripts (by the <tt>out()</tt> utility method, say) is appended.
+     * This is called once, before any other method but {@link #getName()}.
+     * @param outputBuilder the string builder to which scripts emit text
+     */
+    void init(StringBuilder outputBuilder);
+
+    /** Free any resources allocated by the engine. */
+    void dispose();
+
+    /**
+     * Set the class loader through which scripts find classes.
+     * @param loader class loader
+     */
+    void setClassLoader(ClassLoader loader);
+
+    /**
+     * Set a variable in the system scope.
+     * @param name variable name
+     * @param value value; if null, the variable is unset
+     */
+    void putSystemBinding(String name, Object value);
+
+    /**
+     * Set a variable in the game scope.
+     * @param name variable name
+     * @param value value; if null, the variable is unset
+     */
+    void putBinding(String name, Object value);
+
+    /** Return the value of a variable in the game scope, or null if it is unset. */
+    Object getBinding(String name);
+
+    /** Unset all the variables in the game scope, and remove any imports made into it. */
+    void clearBindings();
+
+    /** Import a package into the game scope. */
+    void importPackage(String name);
+
+    /** Import a class into the game scope. */
+    void importClass(String name);
+
+    /**
+     * Evaluate a script in the system scope.
+     * @return the value of the last statement or expression in the script
+     */
+    Object evalSystem(String source) throws ScriptException;
+
+    /**
+     * Evaluate a script in the game scope.
+     * @return the value of the last statement or expression in the script
+     */
+    Object eval(String source) throws ScriptException;
+
+    /**
+     * Evaluate a script in a new scope, a child of the game scope, and return the methods it declares.
+     * @param id script ID, by which the new scope may be named
+     * @param source script source
+     * @return the methods declared by the script
+     */
+    List<Method> getMethods(String id, String source) throws ScriptException;
+
+    /** A method declared in a script. */
+    interface Method
+    {
+        /** Return the name of the method. */
+        String getName();
+
+        /**
+         * Set a variable in the scope in which the method was declared.
+         * @param name variable name
+         * @param value value; if null, the variable is unset
+         */
+        void putBinding(String name, Object value);
+
+        /**
+         * Return the variables set in the scope in which the method was declared, such as the top-level
+         * variables of its script, mapped from name to value, with primitives boxed.
+         */
+        Map<String,Object> getVariables();
+
+        /**
+         * Invoke the method.
+         * @param args arguments, any of which may be null. The array belongs to the caller, who will reuse
+         *          it for the next invocation; the engine may replace its elements (with its own representation
+         *          of null, say), but must not keep a reference to it.
+         * @return the value returned by the method, with primitives boxed, or
+         *          {@link com.illcode.meterman2.MMScript#VOID_RETURN} if the method's return type is void
+         */
+        Object invoke(Object[] args) throws ScriptException;
+    }
+}
@@ -0,0 +1,21 @@
+package com.illcode.meterman2.script;
+
+/**
+ * Thrown by a {@link ScriptEngine} when a script cannot be evaluated, or a scripted method fails.
+ */
+public class ScriptException extends Exception
+{
+    private static final long serialVersionUID = 1L;
+
+    public ScriptException(String message) {
+        super(message);
+    }
+
+    public ScriptException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public ScriptException(Throwable cause) {
+        super(cause);
+    }
+}
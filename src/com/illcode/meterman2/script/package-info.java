@@ -0,0 +1,5 @@
+/**
+ * The script engine interface through which {@link com.illcode.meterman2.MMScript} runs scripts,
+ * and its BeanShell implementation.
+ */
+package com.illcode.meterman2.script;
@@ -54,6 +54,18 @@ public final class GameState
      */
     public HashMap<String,String[]> gameHandlers;
 
+    /**
+     * Used to persist the event handlers registered in the GameManager with a scope, in the order in
+     * which they were registered.
+     */
+    public ScopedHandlerState[] scopedHandlers;
+
+    /**
+     * Used to persist the turns scheduled in the GameManager's turn scheduler, in the order
+     * in which they will be fired. As with {@link #gameHandlers}, handlers are identified by ID.
+     */
+    public ScheduledTurnState[] scheduledTurns;
+
     /** Persists the objects returned by {@link GameEventHandler#getHandlerState()}. */
     public HashMap<String,Object> handlerStateMap;
 
@@ -109,6 +121,35 @@ public final class GameState
         public Object stateObj;
     }
 
+    /** Container class for a handler registered with a {@link com.illcode.meterman2.event.HandlerScope}. */
+    public static final class ScopedHandlerState
+    {
+        /** The name of the registration list, as used in {@link #gameHandlers}. */
+        public String listName;
+
+        /** The ID of the handler. */
+        public String handlerId;
+
+        /** The name of the scope type. */
+        public String scopeType;
+
+        /** The IDs of the objects defining the scope. */
+        public String[] scopeIds;
+    }
+
+    /** Container class for a turn scheduled with {@link com.illcode.meterman2.event.TurnScheduler}. */
+    public static final class ScheduledTurnState
+    {
+        /** The ID of the scheduled TurnListener. */
+        public String handlerId;
+
+        /** The turn at which the listener will next be called. */
+        public int turn;
+
+        /** The repeat period, or zero if the listener will be called only once. */
+        public int period;
+    }
+
     /**
      * Container class for the standard properties of the player.
      */
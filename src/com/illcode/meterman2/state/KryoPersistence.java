@@ -32,6 +32,11 @@ public final class KryoPersistence
         kryo = null;
     }
 
+    /** Set the class loader used to find the classes of deserialized objects. */
+    public void setClassLoader(ClassLoader loader) {
+        kryo.setClassLoader(loader);
+    }
+
     /** Write serialized game state to an output stream. */
     public void saveGameState(GameState state, OutputStream out) {
         Output output = new Output(out);
@@ -71,7 +71,8 @@ public final class ScriptSource implements TextSource
     }
 
     private boolean ensureMethodInitialized() {
-        if (method == null) {  // this is the first time we're invoked
+        // the method is created the first time we're invoked, and again if the script engine has changed
+        if (method == null || method.isStale()) {
             StringBuilder sb = new StringBuilder(source.length() + 50);
             sb.append("void getScriptedText() {\n");
             sb.append(source);
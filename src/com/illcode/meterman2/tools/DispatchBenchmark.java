@@ -0,0 +1,160 @@
+package com.illcode.meterman2.tools;
+
+import com.illcode.meterman2.MMActions.Action;
+import com.illcode.meterman2.model.BaseEntityImpl;
+import com.illcode.meterman2.model.Entity;
+import com.illcode.meterman2.model.EntityImpl;
+import com.illcode.meterman2.model.EntityImpl.EntityMethod;
+
+import java.util.EnumSet;
+import java.util.List;
+
+/**
+ * Measures the cost of dispatching entity methods in a world with many delegated (for instance, scripted)
+ * entities, through {@link Entity}'s dispatch table, and for comparison through the per-call check of the
+ * delegate's method set that Entity did before.
+ * <p/>
+ * Half of the entities have a delegate for half of the methods called; the delegate does as little work as
+ * the base implementation, so that what's measured is the dispatch.
+ * <p/>
+ * Usage: <tt>DispatchBenchmark [&lt;num-entities&gt; [&lt;rounds&gt;]]</tt>
+ */
+public final class DispatchBenchmark
+{
+    private static final EnumSet<EntityMethod> DELEGATED_METHODS =
+        EnumSet.of(EntityMethod.LOOK_IN_ROOM, EntityMethod.GET_ACTIONS, EntityMethod.TAKEN);
+
+    private final Entity[] entities;
+    private final SetCheckEntity[] setCheckEntities;
+    private long sink;
+
+    private DispatchBenchmark(int numEntities) {
+        entities = new Entity[numEntities];
+        setCheckEntities = new SetCheckEntity[numEntities];
+        for (int i = 0; i < numEntities; i++) {
+            final Entity e = Entity.create("entity-" + i);
+            final SetCheckEntity se = new SetCheckEntity(e);
+            if (i % 2 == 0) {
+                final EnumSet<EntityMethod> methods = EnumSet.copyOf(DELEGATED_METHODS);  // one per entity, as loaded
+                e.setDelegate(new CountingImpl(), methods);
+                se.delegate = new CountingImpl();
+                se.delegateMethods = methods;
+            }
+            entities[i] = e;
+            setCheckEntities[i] = se;
+        }
+    }
+
+    public static void main(String[] args) {
+        final int numEntities = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        final int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        final DispatchBenchmark b = new DispatchBenchmark(numEntities);
+        for (int pass = 0; pass < 3; pass++) {  // the first passes warm up the JIT
+            final long t0 = System.nanoTime();
+            for (int r = 0; r < rounds; r++)
+                b.runTable();
+            final long t1 = System.nanoTime();
+            for (int r = 0; r < rounds; r++)
+                b.runSetCheck();
+            final long t2 = System.nanoTime();
+            final double calls = 5.0 * numEntities * rounds;
+            System.out.printf("pass %d: dispatch table %6.2f ns/call   method-set check %6.2f ns/call%n",
+                pass + 1, (t1 - t0) / calls, (t2 - t1) / calls);
+        }
+        if (b.sink == 42)
+            System.out.println();  // keep the results live
+    }
+
+    // Five calls per entity, through Entity.
+    private void runTable() {
+        for (Entity e : entities) {
+            e.lookInRoom();
+            e.taken();
+            sink += e.getActions().size();
+            if (e.objectAction(null, e))
+                sink++;
+            if (e.getState() != null)
+                sink++;
+        }
+    }
+
+    // The same calls, dispatched as Entity did before it had a dispatch table.
+    private void runSetCheck() {
+        for (SetCheckEntity se : setCheckEntities) {
+            se.lookInRoom();
+            se.taken();
+            sink += se.getActions().size();
+            if (se.objectAction(null, se.e))
+                sink++;
+            if (se.getState() != null)
+                sink++;
+        }
+    }
+
+    // The delegate fields and method bodies of Entity before it had a dispatch table.
+    private static final class SetCheckEntity
+    {
+        private final Entity e;
+        private final EntityImpl impl;
+        private EntityImpl delegate;
+        private EnumSet<EntityMethod> delegateMethods;
+
+        private SetCheckEntity(Entity e) {
+            this.e = e;
+            impl = e.getImpl();
+        }
+
+        void lookInRoom() {
+            if (delegate != null && delegateMethods.contains(EntityMethod.LOOK_IN_ROOM))
+                delegate.lookInRoom(e);
+            else
+                impl.lookInRoom(e);
+        }
+
+        void taken() {
+            if (delegate != null && delegateMethods.contains(EntityMethod.TAKEN))
+                delegate.taken(e);
+            else
+                impl.taken(e);
+        }
+
+        List<Action> getActions() {
+            if (delegate != null && delegateMethods.contains(EntityMethod.GET_ACTIONS))
+                return delegate.getActions(e);
+            else
+                return impl.getActions(e);
+        }
+
+        boolean objectAction(Action action, Entity selectedEntity) {
+            if (delegate != null && delegateMethods.contains(EntityMethod.OBJECT_ACTION))
+                return delegate.objectAction(e, action, selectedEntity);
+            else
+                return impl.objectAction(e, action, selectedEntity);
+        }
+
+        Object getState() {
+            if (delegate != null && delegateMethods.contains(EntityMethod.GET_STATE))
+                return delegate.getState(e);
+            else
+                return impl.getState(e);
+        }
+    }
+
+    private static final class CountingImpl extends BaseEntityImpl
+    {
+        private int calls;
+
+        public void lookInRoom(Entity e) {
+            calls++;
+        }
+
+        public void taken(Entity e) {
+            calls++;
+        }
+
+        public List<Action> getActions(Entity e) {
+            calls++;
+            return super.getActions(e);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.illcode.meterman2.tools;
+
+import com.illcode.meterman2.bundle.CompiledBundle;
+import com.illcode.meterman2.ui.GuiUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.jdom2.Document;
+import org.jdom2.JDOMException;
+import org.jdom2.input.SAXBuilder;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Packs a game's assets directory into a game archive, a ZIP file that the engine can use in place of the
+ * directory (see {@link com.illcode.meterman2.MMAssets}), and that loads faster than a plain ZIP of the directory:
+ * <ul>
+ *     <li>Each XBundle is accompanied by its {@link CompiledBundle}, so that bundles are loaded without XML parsing.
+ *         The XML is kept, for reloading elements while debugging.</li>
+ *     <li>Images are replaced by their packed form (see {@link GuiUtils#writePackedImage}), which is read
+ *         without decoding.</li>
+ *     <li>Entries that are already compressed, such as Ogg files, are stored rather than deflated, so that
+ *         they're read straight from the memory-mapped archive. Packed images are raw pixels, and are deflated.</li>
+ * </ul>
+ * Usage: <tt>GamePacker &lt;assets-dir&gt; &lt;archive.zip&gt;</tt>
+ */
+public final class GamePacker
+{
+    private static final String[] IMAGE_EXTENSIONS = {".png", ".jpg", ".jpeg", ".gif", ".bmp"};
+    private static final String[] STORED_EXTENSIONS = {".ogg", ".mp3", ".zip", ".jar", ".png", ".jpg", ".jpeg"};
+
+    private final Path assetsDir;
+    private final ZipOutputStream zout;
+    private final SAXBuilder saxBuilder;
+    private final ByteArrayOutputStream bout;  // reused to avoid allocation; always reset() before using
+    private int numBundles, numImages, numFiles;
+
+    private GamePacker(Path assetsDir, OutputStream out) {
+        this.assetsDir = assetsDir;
+        zout = new ZipOutputStream(out);
+        saxBuilder = new SAXBuilder();
+        bout = new ByteArrayOutputStream(256 * 1024);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: GamePacker <assets-dir> <archive.zip>");
+            System.exit(1);
+        }
+        final Path assetsDir = Paths.get(args[0]);
+        final Path archive = Paths.get(args[1]);
+        if (!Files.isDirectory(assetsDir)) {
+            System.err.println("Not a directory: " + assetsDir);
+            System.exit(1);
+        }
+        System.setProperty("java.awt.headless", "true");
+        try (OutputStream out = Files.newOutputStream(archive)) {
+            final GamePacker packer = new GamePacker(assetsDir, out);
+            packer.pack();
+            System.out.printf("Packed %d bundles, %d images, and %d other files into %s%n",
+                packer.numBundles, packer.numImages, packer.numFiles, archive);
+        }
+    }
+
+    private void pack() throws IOException {
+        final List<Path> files = new ArrayList<>();
+        Files.walkFileTree(assetsDir, new SimpleFileVisitor<Path>() {
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile())
+                    files.add(file);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        Collections.sort(files);  // so that archives are reproducible
+        for (Path file : files) {
+            final String name = entryName(file);
+            final byte[] data = Files.readAllBytes(file);
+            if (StringUtils.endsWithIgnoreCase(name, ".xml") && packBundle(name, data)) {
+                numBundles++;
+            } else if (StringUtils.endsWithAny(name.toLowerCase(Locale.ROOT), IMAGE_EXTENSIONS) && packImage(name, data)) {
+                numImages++;
+            } else {
+                putEntry(name, data, data.length);
+                numFiles++;
+            }
+        }
+        zout.finish();
+    }
+
+    // Returns false if the file is not an XBundle, in which case it should be packed as an ordinary file.
+    private boolean packBundle(String name, byte[] data) throws IOException {
+        final Document doc;
+        try {
+            doc = saxBuilder.build(new ByteArrayInputStream(data));
+        } catch (JDOMException ex) {
+            System.err.println("Not compiling " + name + ": " + ex.getMessage());
+            return false;
+        }
+        if (!doc.hasRootElement() || !doc.getRootElement().getName().equals("xbundle") ||
+                !CompiledBundle.canCompile(doc))
+            return false;
+        putEntry(name, data, data.length);
+        bout.reset();
+        CompiledBundle.write(doc, bout);
+        putEntry(name + CompiledBundle.EXTENSION, bout.toByteArray(), bout.size());
+        return true;
+    }
+
+    // Returns false if the image can't be decoded, in which case it should be packed as an ordinary file.
+    private boolean packImage(String name, byte[] data) throws IOException {
+        final BufferedImage img = ImageIO.read(new ByteArrayInputStream(data));
+        if (img == null)
+            return false;
+        bout.reset();
+        GuiUtils.writePackedImage(img, bout);
+        img.flush();
+        putEntry(name + GuiUtils.PACKED_IMAGE_EXTENSION, bout.toByteArray(), bout.size());
+        return true;
+    }
+
+    private void putEntry(String name, byte[] data, int len) throws IOException {
+        final ZipEntry entry = new ZipEntry(name);
+        if (StringUtils.endsWithAny(name.toLowerCase(Locale.ROOT), STORED_EXTENSIONS)) {
+            final CRC32 crc = new CRC32();
+            crc.update(data, 0, len);
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(len);
+            entry.setCompressedSize(len);
+            entry.setCrc(crc.getValue());
+        } else {
+            entry.setMethod(ZipEntry.DEFLATED);
+        }
+        zout.putNextEntry(entry);
+        zout.write(data, 0, len);
+        zout.closeEntry();
+    }
+
+    private String entryName(Path file) {
+        final StringBuilder sb = new StringBuilder();
+        for (Path part : assetsDir.relativize(file)) {
+            if (sb.length() > 0)
+                sb.append('/');
+            sb.append(part.toString());
+        }
+        return sb.toString();
+    }
+}
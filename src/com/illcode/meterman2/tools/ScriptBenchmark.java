@@ -0,0 +1,127 @@
+package com.illcode.meterman2.tools;
+
+import com.illcode.meterman2.MMLogging;
+import com.illcode.meterman2.MMScript;
+import com.illcode.meterman2.script.ScriptEngine;
+import com.illcode.meterman2.script.ScriptException;
+import org.jdom2.Document;
+import org.jdom2.Element;
+import org.jdom2.JDOMException;
+import org.jdom2.filter.Filters;
+import org.jdom2.input.SAXBuilder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compares script engines on the scripts of a game's bundles.
+ * <p/>
+ * For each engine, the benchmark times the engine's initialization (which evaluates its system script), and
+ * the evaluation of every <tt>script</tt> element in the bundles, as the loaders do when a game starts. Each is
+ * run a number of times, of which the first half are taken as warm-up, and the mean of the rest is reported.
+ * Invoking the scripted methods requires a running game, and so is not measured here.
+ * <p/>
+ * Usage: <tt>ScriptBenchmark [-n &lt;passes&gt;] [-p &lt;game-package&gt;] &lt;engine&gt;[,&lt;engine&gt;...]
+ * &lt;bundle.xml&gt;...</tt>, where each engine is named as in a glue file.
+ */
+public final class ScriptBenchmark
+{
+    private ScriptBenchmark() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        int passes = 20;
+        String packageName = null;
+        int argIdx = 0;
+        while (argIdx < args.length - 1 && args[argIdx].startsWith("-")) {
+            if (args[argIdx].equals("-n"))
+                passes = Math.max(2, Integer.parseInt(args[argIdx + 1]));
+            else if (args[argIdx].equals("-p"))
+                packageName = args[argIdx + 1];
+            argIdx += 2;
+        }
+        if (args.length - argIdx < 2) {
+            System.err.println("Usage: ScriptBenchmark [-n <passes>] [-p <game-package>] " +
+                               "<engine>[,<engine>...] <bundle.xml>...");
+            System.exit(1);
+        }
+        MMLogging.initSimpleLogging("ScriptBenchmark");
+        final String[] engineNames = args[argIdx++].split(",");
+        final List<String[]> scripts = new ArrayList<>();  // pairs of [id, source]
+        final SAXBuilder sax = new SAXBuilder();
+        for (String arg : Arrays.copyOfRange(args, argIdx, args.length)) {
+            try {
+                gatherScripts(sax, Paths.get(arg), scripts);
+            } catch (JDOMException ex) {
+                System.err.println("Error reading " + arg + ": " + ex.getMessage());
+                System.exit(1);
+            }
+        }
+        System.out.printf("%d scripts, %d passes%n", scripts.size(), passes);
+        for (String name : engineNames) {
+            final Class<? extends ScriptEngine> engineClass =
+                MMScript.getEngineClass(name, ScriptBenchmark.class.getClassLoader());
+            if (engineClass == null) {
+                System.err.println("No such engine: " + name);
+                continue;
+            }
+            long initNanos = 0, loadNanos = 0;
+            int numMethods = 0, numErrors = 0;
+            for (int pass = 0; pass < passes; pass++) {
+                final boolean measured = pass >= passes / 2;
+                long t = System.nanoTime();
+                final ScriptEngine engine;
+                try {
+                    engine = engineClass.getConstructor().newInstance();
+                } catch (Exception ex) {
+                    System.err.println("Cannot create engine " + name + ": " + ex);
+                    break;
+                }
+                engine.init(new StringBuilder());
+                if (packageName != null)
+                    engine.importPackage(packageName);
+                if (measured)
+                    initNanos += System.nanoTime() - t;
+                t = System.nanoTime();
+                numMethods = numErrors = 0;
+                for (String[] script : scripts) {
+                    try {
+                        numMethods += engine.getMethods(script[0], script[1]).size();
+                    } catch (ScriptException ex) {
+                        numErrors++;
+                    }
+                }
+                if (measured)
+                    loadNanos += System.nanoTime() - t;
+                engine.dispose();
+            }
+            final int measuredPasses = passes - passes / 2;
+            System.out.printf("%-40s init %8.2f ms   load %8.2f ms   (%d methods, %d errors)%n",
+                name, initNanos / 1e6 / measuredPasses, loadNanos / 1e6 / measuredPasses, numMethods, numErrors);
+        }
+    }
+
+    private static void gatherScripts(SAXBuilder sax, Path bundlePath, List<String[]> scripts)
+            throws IOException, JDOMException {
+        final Document doc = sax.build(bundlePath.toFile());
+        for (Element script : doc.getRootElement().getDescendants(Filters.element("script"))) {
+            final String fileRef = script.getAttributeValue("fileRef");
+            final String source;
+            if (fileRef != null)
+                source = new String(Files.readAllBytes(bundlePath.resolveSibling(fileRef)), StandardCharsets.UTF_8);
+            else
+                source = script.getText();
+            final Element parent = script.getParentElement();
+            String id = parent.getAttributeValue("id");
+            if (id == null)
+                id = parent.getName();
+            scripts.add(new String[] {id, source.trim()});
+        }
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * Build-time tools for preparing games for distribution.
+ */
+package com.illcode.meterman2.tools;
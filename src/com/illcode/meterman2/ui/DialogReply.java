@@ -0,0 +1,72 @@
+package com.illcode.meterman2.ui;
+
+import javax.swing.SwingUtilities;
+import java.awt.SecondaryLoop;
+import java.awt.Toolkit;
+
+/**
+ * The answer to a dialog handed to a {@link DialogResponder}, which the responder completes, from any thread,
+ * once it has one. The thread that asked for the dialog waits until then.
+ */
+public final class DialogReply<T>
+{
+    private T result;
+    private boolean done;
+    private SecondaryLoop loop;  // set while the event dispatch thread waits
+
+    DialogReply() {
+    }
+
+    /**
+     * Answer the dialog. Only the first answer counts; any after it are ignored.
+     * @param result the result the dialog method should return
+     */
+    public synchronized void complete(T result) {
+        if (done)
+            return;
+        this.result = result;
+        done = true;
+        notifyAll();
+        if (loop != null) {
+            final SecondaryLoop l = loop;
+            // Posted as an event, so that it can't overtake l.enter() in await().
+            SwingUtilities.invokeLater(new Runnable() {
+                public void run() {
+                    l.exit();
+                }
+            });
+        }
+    }
+
+    /** Return true if the dialog has been answered. */
+    public synchronized boolean isDone() {
+        return done;
+    }
+
+    // Wait for the answer. On the event dispatch thread, events continue to be dispatched meanwhile.
+    T await() {
+        if (SwingUtilities.isEventDispatchThread()) {
+            final SecondaryLoop l;
+            synchronized (this) {
+                if (done)
+                    return result;
+                l = loop = Toolkit.getDefaultToolkit().getSystemEventQueue().createSecondaryLoop();
+            }
+            l.enter();
+            synchronized (this) {
+                loop = null;
+                return result;
+            }
+        }
+        synchronized (this) {
+            try {
+                while (!done)
+                    wait();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for a dialog", ex);
+            }
+            return result;
+        }
+    }
+}
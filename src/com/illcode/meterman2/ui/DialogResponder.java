@@ -0,0 +1,43 @@
+package com.illcode.meterman2.ui;
+
+import java.util.List;
+
+/**
+ * Answers the dialogs that the game asks for, in place of the Swing dialogs that {@link MMUI} shows by default;
+ * a headless or remote front end would install one with {@link MMUI#setDialogResponder(DialogResponder)}.
+ * <p/>
+ * Each method is called on the thread that asked for the dialog, usually the game thread, and should return
+ * promptly. The responder completes the reply whenever it has an answer, from whatever thread it likes, and until
+ * it does, the game waits. A dialog that can't be answered should be completed as if the user had closed it.
+ */
+public interface DialogResponder
+{
+    /**
+     * Answer a text dialog.
+     * @param reply to be completed with the 0-based index of the button selected, or -1 (or null) if none was
+     * @see MMUI#showTextDialog(String, String, String...)
+     */
+    void textDialog(String header, String text, String[] buttonLabels, DialogReply<Integer> reply);
+
+    /**
+     * Answer an image dialog.
+     * @param reply to be completed with the 0-based index of the button selected, or -1 (or null) if none was
+     * @see MMUI#showImageDialog(String, String, int, String, String...)
+     */
+    void imageDialog(String header, String imageName, int scale, String text, String[] buttonLabels,
+                     DialogReply<Integer> reply);
+
+    /**
+     * Answer a list dialog.
+     * @param reply to be completed with the item selected, or null if none was
+     * @see MMUI#showListDialog(String, String, List, boolean)
+     */
+    <T> void listDialog(String header, String text, List<T> items, boolean showCancelButton, DialogReply<T> reply);
+
+    /**
+     * Answer a prompt dialog.
+     * @param reply to be completed with the text entered; null is taken as an empty string
+     * @see MMUI#showPromptDialog(String, String, String, String)
+     */
+    void promptDialog(String header, String text, String prompt, String initialText, DialogReply<String> reply);
+}
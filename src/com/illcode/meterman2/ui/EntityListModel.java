@@ -0,0 +1,136 @@
+package com.illcode.meterman2.ui;
+
+import javax.swing.AbstractListModel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A list model for the room and inventory entity lists, which keeps the entity ID of each
+ * row alongside the name displayed.
+ * <p/>
+ * In addition to single-item operations, it can be brought in line with a complete new list of
+ * entities via {@link #update(List, List)}, which changes only the rows that actually differ
+ * and notifies listeners with at most two events.
+ */
+final class EntityListModel extends AbstractListModel<String>
+{
+    private static final long serialVersionUID = 1L;
+
+    private List<String> ids;
+    private List<String> names;
+
+    EntityListModel() {
+        ids = new ArrayList<>(16);
+        names = new ArrayList<>(16);
+    }
+
+    public int getSize() {
+        return ids.size();
+    }
+
+    public String getElementAt(int index) {
+        return names.get(index);
+    }
+
+    /** Returns true if the model has no rows. */
+    boolean isEmpty() {
+        return ids.isEmpty();
+    }
+
+    /** Return the entity ID of the row at the given index. */
+    String getIdAt(int index) {
+        return ids.get(index);
+    }
+
+    /** Return the index of the row for a given entity ID, or -1 if not present. */
+    int indexOfId(String id) {
+        return ids.indexOf(id);
+    }
+
+    /** Remove all rows. */
+    void clear() {
+        final int size = ids.size();
+        if (size != 0) {
+            ids.clear();
+            names.clear();
+            fireIntervalRemoved(this, 0, size - 1);
+        }
+    }
+
+    /** Add a row to the end of the list. */
+    void add(String id, String name) {
+        ids.add(id);
+        names.add(name);
+        final int idx = ids.size() - 1;
+        fireIntervalAdded(this, idx, idx);
+    }
+
+    /** Remove the row for a given entity ID, if present. */
+    void remove(String id) {
+        final int idx = ids.indexOf(id);
+        if (idx != -1) {
+            ids.remove(idx);
+            names.remove(idx);
+            fireIntervalRemoved(this, idx, idx);
+        }
+    }
+
+    /** Change the name displayed for a given entity ID, if present. */
+    void set(String id, String name) {
+        final int idx = ids.indexOf(id);
+        if (idx != -1 && !names.get(idx).equals(name)) {
+            names.set(idx, name);
+            fireContentsChanged(this, idx, idx);
+        }
+    }
+
+    /**
+     * Bring the model in line with a new list of entities.
+     * <p/>
+     * We trim the rows common to the start and end of the old and new lists, and replace only the
+     * window in between. If that window holds the same entities in the same order (that is, only names
+     * changed) a single contents-changed event is fired; otherwise we fire one interval-removed event for
+     * the old window, and one interval-added event for the new window. If nothing has changed, no
+     * events are fired at all.
+     * @param newIds entity IDs, in display order
+     * @param newNames names to display, parallel to {@code newIds}
+     */
+    void update(List<String> newIds, List<String> newNames) {
+        final int oldSize = ids.size();
+        final int newSize = newIds.size();
+        final int minSize = Math.min(oldSize, newSize);
+        int start = 0;
+        while (start < minSize && rowEquals(start, newIds, newNames, start))
+            start++;
+        if (start == oldSize && start == newSize)
+            return;  // nothing to do
+        int oldEnd = oldSize, newEnd = newSize;  // exclusive
+        while (oldEnd > start && newEnd > start && rowEquals(oldEnd - 1, newIds, newNames, newEnd - 1)) {
+            oldEnd--;
+            newEnd--;
+        }
+        final List<String> oldWindowIds = ids.subList(start, oldEnd);
+        final List<String> newWindowIds = newIds.subList(start, newEnd);
+        if (oldWindowIds.equals(newWindowIds)) {
+            // Only names have changed.
+            for (int i = start; i < oldEnd; i++)
+                names.set(i, newNames.get(i));
+            fireContentsChanged(this, start, oldEnd - 1);
+        } else {
+            if (oldEnd > start) {
+                oldWindowIds.clear();
+                names.subList(start, oldEnd).clear();
+                fireIntervalRemoved(this, start, oldEnd - 1);
+            }
+            if (newEnd > start) {
+                ids.addAll(start, newWindowIds);
+                names.addAll(start, newNames.subList(start, newEnd));
+                fireIntervalAdded(this, start, newEnd - 1);
+            }
+        }
+    }
+
+    private boolean rowEquals(int idx, List<String> otherIds, List<String> otherNames, int otherIdx) {
+        return ids.get(idx).equals(otherIds.get(otherIdx)) && names.get(idx).equals(otherNames.get(otherIdx));
+    }
+}
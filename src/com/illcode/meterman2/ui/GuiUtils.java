@@ -11,7 +11,10 @@ import java.awt.event.KeyEvent;
 import java.awt.event.WindowEvent;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.logging.Level;
@@ -22,6 +25,10 @@ public final class GuiUtils
 {
     public static final KeyStroke ESCAPE_KEY_STROKE = KeyStroke.getKeyStroke(KeyEvent.VK_ESCAPE, 0);
 
+    /** The extension appended to an image's file name to form the name of its packed form. */
+    public static final String PACKED_IMAGE_EXTENSION = ".mmi";
+    private static final int PACKED_IMAGE_MAGIC = 0x4D4D4931;  // "MMI1"
+
     static GraphicsEnvironment graphicsEnvironment;
     static GraphicsConfiguration graphicsConfiguration;
     static Toolkit toolkit;
@@ -59,7 +66,7 @@ public final class GuiUtils
     public static BufferedImage loadOpaqueImage(Path p) {
         BufferedImage image;
         try {
-            BufferedImage bi = ImageIO.read(p.toUri().toURL());
+            BufferedImage bi = readImage(p);
             image = createOpaqueImage(bi.getWidth(), bi.getHeight());
             Graphics g = image.getGraphics();
             g.drawImage(bi, 0, 0, null);
@@ -76,7 +83,7 @@ public final class GuiUtils
     public static BufferedImage loadTranslucentImage(Path p) {
         BufferedImage image;
         try {
-            BufferedImage bi = ImageIO.read(p.toUri().toURL());
+            BufferedImage bi = readImage(p);
             image = createTranslucentImage(bi.getWidth(), bi.getHeight());
             Graphics g = image.getGraphics();
             g.drawImage(bi, 0, 0, null);
@@ -106,7 +113,7 @@ public final class GuiUtils
     public static BufferedImage loadBitmaskImage(Path path, int transparentColor) {
         BufferedImage image = null;
         try {
-            BufferedImage bi = ImageIO.read(path.toUri().toURL());
+            BufferedImage bi = readImage(path);
             int w = bi.getWidth();
             int h = bi.getHeight();
             if (transparentColor != -1) {
@@ -129,6 +136,51 @@ public final class GuiUtils
         return image;
     }
 
+    /**
+     * Write an image in the packed image format: the magic number, width, and height, followed by the
+     * pixels as ARGB ints, all big-endian. Packed images are larger than PNG or JPEG files, but can be read
+     * without decoding. The packer writes them in place of a game's images.
+     * @param img image
+     * @param out stream to which the image is written; it is not closed
+     */
+    public static void writePackedImage(BufferedImage img, OutputStream out) throws IOException {
+        final int w = img.getWidth();
+        final int h = img.getHeight();
+        final int[] argb = img.getRGB(0, 0, w, h, null, 0, w);
+        final ByteBuffer buf = ByteBuffer.allocate(12 + argb.length * 4);
+        buf.putInt(PACKED_IMAGE_MAGIC).putInt(w).putInt(h);
+        buf.asIntBuffer().put(argb);
+        out.write(buf.array());
+    }
+
+    // Read an image, in its packed form if there is one.
+    private static BufferedImage readImage(Path path) throws IOException {
+        final BufferedImage bi = readPackedImage(path);
+        return bi != null ? bi : ImageIO.read(Utils.pathToURL(path));
+    }
+
+    /* If the path is inside an archive that holds a packed form of the image (at the path with
+       PACKED_IMAGE_EXTENSION appended), read it and return it as a TYPE_INT_ARGB image; otherwise return null. */
+    private static BufferedImage readPackedImage(Path path) throws IOException {
+        if (path.getFileSystem() == FileSystems.getDefault())
+            return null;
+        final Path packedPath = path.resolveSibling(path.getFileName().toString() + PACKED_IMAGE_EXTENSION);
+        if (!Files.exists(packedPath))
+            return null;
+        final ByteBuffer buf = ByteBuffer.wrap(Utils.readAllBytes(packedPath));
+        if (buf.remaining() < 12 || buf.getInt() != PACKED_IMAGE_MAGIC)
+            throw new IOException("Not a packed image: " + packedPath);
+        final int w = buf.getInt();
+        final int h = buf.getInt();
+        if (w <= 0 || h <= 0 || (long) w * h * 4 != buf.remaining())
+            throw new IOException("Corrupt packed image: " + packedPath);
+        final int[] argb = new int[w * h];
+        buf.asIntBuffer().get(argb);
+        final BufferedImage bi = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+        bi.getRaster().setDataElements(0, 0, w, h, argb);
+        return bi;
+    }
+
     /**
      * Returns a scaled version of a buffered image.
      * @param img image to scale
@@ -201,7 +253,8 @@ public final class GuiUtils
         try {
             final Font font = Font.createFont(Font.TRUETYPE_FONT, fontPath.toFile());
             logger.config("Loaded Font: " + fontString(font));
-            graphicsEnvironment.registerFont(font);
+            // Not graphicsEnvironment, since fonts may be registered on a startup thread before initGraphics().
+            GraphicsEnvironment.getLocalGraphicsEnvironment().registerFont(font);
         } catch (FontFormatException|IOException ex) {
             logger.warning("registerFont(): " + ex.getMessage());
         }
@@ -211,7 +264,7 @@ public final class GuiUtils
      * Register all TrueType (ttf) fonts found in a given directory.
      * @param fontDir directory
      */
-    static void registerFontDir(Path fontDir) {
+    public static void registerFontDir(Path fontDir) {
         try (DirectoryStream<Path> dirStream = Files.newDirectoryStream(fontDir)) {
             for (Path p : dirStream) {
                 final String filename = p.getFileName().toString().toLowerCase();
@@ -0,0 +1,210 @@
+package com.illcode.meterman2.ui;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A cache of decoded images, bounded by the memory the images occupy rather than by their number.
+ * <p/>
+ * Images are kept in separate pools (see {@link Pool}), each with its own byte budget, so that a run of
+ * large frame images cannot push all the small entity images out of the cache, or vice versa.
+ * <p/>
+ * Eviction is cost-aware, using the GreedyDual-Size scheme: each entry is given a priority of
+ * <em>L + cost / size</em>, where <em>cost</em> is the time it took to decode the image, <em>size</em> is its
+ * footprint in bytes, and <em>L</em> is a per-pool "inflation" value that rises to the priority of each entry
+ * evicted. The entry of lowest priority is evicted first; an entry's priority is renewed whenever it's used.
+ * Thus images that are cheap to reload for the memory they occupy go first, while recency is still respected.
+ * <p/>
+ * Pinned images (those currently displayed) are never evicted, though they count against their pool's budget.
+ */
+final class ImageCache
+{
+    /** The pools into which images are divided. */
+    enum Pool
+    {
+        FRAME, ENTITY
+    }
+
+    private final Map<String,Entry> entries;
+    private final PoolState[] pools;
+    private String pinned1, pinned2;
+
+    /**
+     * Create a new image cache.
+     * @param frameBudget maximum number of bytes occupied by images in the frame pool
+     * @param entityBudget maximum number of bytes occupied by images in the entity pool
+     */
+    ImageCache(long frameBudget, long entityBudget) {
+        entries = new HashMap<>();
+        pools = new PoolState[Pool.values().length];
+        pools[Pool.FRAME.ordinal()] = new PoolState(frameBudget);
+        pools[Pool.ENTITY.ordinal()] = new PoolState(entityBudget);
+    }
+
+    /**
+     * Return a cached image, renewing its priority, or null if the image is not in the cache.
+     * @param name image name
+     */
+    BufferedImage get(String name) {
+        final Entry e = entries.get(name);
+        if (e == null)
+            return null;
+        final PoolState ps = pools[e.pool.ordinal()];
+        ps.hits++;
+        e.priority = ps.inflation + e.value;
+        return e.image;
+    }
+
+    /**
+     * Record that an image was not found in the cache, and had to be loaded into the given pool.
+     * Lookups made through {@link #get(String)} that return null are not counted as misses, since
+     * the caller may only be checking whether an image is loaded.
+     */
+    void recordMiss(Pool pool) {
+        pools[pool.ordinal()].misses++;
+    }
+
+    /** Return true if the named image is in the cache. This does not affect its priority. */
+    boolean contains(String name) {
+        return entries.containsKey(name);
+    }
+
+    /**
+     * Put an image into the cache, evicting other images from its pool as necessary.
+     * An image already present under the same name is replaced (but not flushed).
+     * @param name image name
+     * @param image image
+     * @param pool pool into which the image should go
+     * @param decodeNanos the time taken to decode the image, in nanoseconds
+     */
+    void put(String name, BufferedImage image, Pool pool, long decodeNanos) {
+        remove(name);
+        final PoolState ps = pools[pool.ordinal()];
+        final Entry e = new Entry(image, pool, imageBytes(image), decodeNanos);
+        e.priority = ps.inflation + e.value;
+        entries.put(name, e);
+        ps.bytes += e.bytes;
+        ps.count++;
+        trim(pool);
+    }
+
+    /**
+     * Remove an image from the cache. The image is not flushed.
+     * @param name image name
+     * @return the image removed, or null if it was not in the cache
+     */
+    BufferedImage remove(String name) {
+        final Entry e = entries.remove(name);
+        if (e == null)
+            return null;
+        final PoolState ps = pools[e.pool.ordinal()];
+        ps.bytes -= e.bytes;
+        ps.count--;
+        return e.image;
+    }
+
+    /**
+     * Set the names of the images that should not be evicted; either may be null. Any pool whose
+     * budget was exceeded only because of a previously pinned image is trimmed.
+     */
+    void setPinned(String name1, String name2) {
+        pinned1 = name1;
+        pinned2 = name2;
+        for (Pool pool : Pool.values())
+            trim(pool);
+    }
+
+    /** Flush and remove all images, and reset the statistics. */
+    void clear() {
+        for (Entry e : entries.values())
+            e.image.flush();
+        entries.clear();
+        for (int i = 0; i < pools.length; i++)
+            pools[i] = new PoolState(pools[i].budget);
+    }
+
+    /**
+     * Return a human-readable summary of the usage and hit rates of each pool,
+     * suitable for tuning the cache budgets.
+     */
+    String getStats() {
+        final StringBuilder sb = new StringBuilder(256);
+        for (Pool pool : Pool.values()) {
+            final PoolState ps = pools[pool.ordinal()];
+            final long lookups = ps.hits + ps.misses;
+            sb.append(pool.name().toLowerCase()).append(": ").append(ps.count).append(" images, ")
+              .append(ps.bytes / 1024).append(" / ").append(ps.budget / 1024).append(" KB; ")
+              .append(ps.hits).append(" hits, ").append(ps.misses).append(" misses");
+            if (lookups > 0)
+                sb.append(" (").append(ps.hits * 100 / lookups).append("% hit rate)");
+            sb.append(", ").append(ps.evictions).append(" evictions (")
+              .append(ps.evictedBytes / 1024).append(" KB)\n");
+        }
+        return sb.toString();
+    }
+
+    // Evict entries from a pool, lowest priority first, until it is within its budget.
+    private void trim(Pool pool) {
+        final PoolState ps = pools[pool.ordinal()];
+        while (ps.bytes > ps.budget) {
+            String victimName = null;
+            Entry victim = null;
+            for (Map.Entry<String,Entry> me : entries.entrySet()) {
+                final Entry e = me.getValue();
+                final String name = me.getKey();
+                if (e.pool != pool || name.equals(pinned1) || name.equals(pinned2))
+                    continue;
+                if (victim == null || e.priority < victim.priority) {
+                    victimName = name;
+                    victim = e;
+                }
+            }
+            if (victim == null)
+                break;  // only pinned images remain
+            entries.remove(victimName);
+            ps.bytes -= victim.bytes;
+            ps.count--;
+            ps.evictions++;
+            ps.evictedBytes += victim.bytes;
+            ps.inflation = victim.priority;
+            victim.image.flush();
+        }
+    }
+
+    /** Return the number of bytes occupied by the pixel data of an image. */
+    static long imageBytes(BufferedImage image) {
+        final DataBuffer db = image.getRaster().getDataBuffer();
+        return (long) db.getSize() * db.getNumBanks() * DataBuffer.getDataTypeSize(db.getDataType()) / 8;
+    }
+
+    private static final class Entry
+    {
+        final BufferedImage image;
+        final Pool pool;
+        final long bytes;
+        final double value;  // decode cost per byte
+        double priority;
+
+        Entry(BufferedImage image, Pool pool, long bytes, long decodeNanos) {
+            this.image = image;
+            this.pool = pool;
+            this.bytes = bytes;
+            this.value = (double) Math.max(decodeNanos, 1L) / Math.max(bytes, 1L);
+        }
+    }
+
+    private static final class PoolState
+    {
+        final long budget;
+        long bytes;
+        int count;
+        double inflation;
+        long hits, misses, evictions, evictedBytes;
+
+        PoolState(long budget) {
+            this.budget = budget;
+        }
+    }
+}
@@ -6,8 +6,6 @@ import com.illcode.meterman2.SystemActions;
 import com.illcode.meterman2.Utils;
 import com.illcode.meterman2.text.Markup;
 import com.illcode.meterman2.text.TextUtils;
-import org.apache.commons.collections4.MapIterator;
-import org.apache.commons.collections4.map.LRUMap;
 import org.jdom2.Element;
 
 import javax.swing.SwingUtilities;
@@ -20,13 +18,17 @@ import javax.swing.text.SimpleAttributeSet;
 import javax.swing.text.StyleConstants;
 import java.awt.Dimension;
 import java.awt.Font;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
 import java.lang.reflect.InvocationTargetException;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.*;
 import java.util.logging.Level;
 
 import static com.illcode.meterman2.MMLogging.logger;
@@ -43,25 +45,54 @@ public final class MMUI
 
     private SimpleAttributeSet emphAttributeSet;
 
-    List<String> roomEntityIds, inventoryEntityIds;
-
     private Map<String,Path> imageMap;
-    private LRUImageCacheMap loadedImages;
+    private ImageCache loadedImages;
     private BufferedImage defaultFrameImage;
     private String currentFrameImage, currentEntityImage;
 
+    // The last scaled image shown in an image dialog, kept so that showing it again needn't rescale it.
+    private BufferedImage dialogImageSource, scaledDialogImage;
+    private int dialogImageScale;
+
+    // Images are decoded in the background, if enabled; see prefetchImage(). pendingImages is
+    // only accessed on the EDT.
+    private ExecutorService imageDecoder;
+    private Map<String,DecodeTask> pendingImages;
+
     int maxBufferSize;
     int dialogTextColumns;
 
     UIHandler handler;
 
+    // UI updates made on the game thread are collected here until flushUpdates(); only the game thread touches it.
+    private UIBatch batch;
+    private volatile Thread gameThread;
+    private volatile int waitingCallers;  // the number of times the game thread is blocked in callOnEDT()
+    private volatile boolean disposed;
+    private volatile DialogResponder dialogResponder;  // null to show the Swing dialogs
+
+    // The images most recently set, as callers see them; currentFrameImage and currentEntityImage, which are
+    // the images shown, lag behind these while updates are pending.
+    private volatile String frameImageName, entityImageName;
+
     public MMUI(UIHandler handler) {
         this.handler = handler;
-        roomEntityIds = new ArrayList<>(16);
-        inventoryEntityIds = new ArrayList<>(16);
-        final int cacheSize = Utils.intPref("image-cache-size", 32);
-        imageMap = new HashMap<>(cacheSize * 2);
-        loadedImages = new LRUImageCacheMap(cacheSize);
+        frameImageName = entityImageName = UIConstants.NO_IMAGE;
+        imageMap = new HashMap<>(64);
+        loadedImages = new ImageCache(Utils.intPref("frame-image-cache-mb", 32) * 1024L * 1024L,
+                                      Utils.intPref("entity-image-cache-mb", 8) * 1024L * 1024L);
+        pendingImages = new HashMap<>();
+        if (Utils.booleanPref("async-image-loading", true)) {
+            imageDecoder = Executors.newFixedThreadPool(Math.max(1, Utils.intPref("image-decode-threads", 2)),
+                new ThreadFactory() {
+                    public Thread newThread(Runnable r) {
+                        final Thread t = new Thread(r, "image-decoder");
+                        t.setDaemon(true);
+                        t.setPriority(Thread.NORM_PRIORITY - 1);
+                        return t;
+                    }
+                });
+        }
         emphAttributeSet = new SimpleAttributeSet();
         StyleConstants.setItalic(emphAttributeSet, true);
     }
@@ -70,6 +101,15 @@ public final class MMUI
      * Initializes and displays the UI.
      */
     public void show() {
+        show(null);
+    }
+
+    /**
+     * Initializes and displays the UI, once the fonts in the font directory have been registered.
+     * @param fontsRegistered a future that completes when {@link GuiUtils#registerFontDir(Path)} has been
+     *              called on the font directory, or null if the UI should register the fonts itself
+     */
+    public void show(final Future<?> fontsRegistered) {
         SwingUtilities.invokeLater(new Runnable()
         {
             public void run() {
@@ -97,7 +137,15 @@ public final class MMUI
                 selectItemDialog = new SelectItemDialog(mainFrame.frame);
                 waitDialog = new WaitDialog(mainFrame.frame);
 
-                GuiUtils.registerFontDir(Meterman2.fontPath);
+                if (fontsRegistered == null) {
+                    GuiUtils.registerFontDir(Meterman2.fontPath);
+                } else {
+                    try {
+                        fontsRegistered.get();
+                    } catch (InterruptedException | ExecutionException ex) {
+                        logger.log(Level.WARNING, "MMUI.show()", ex);
+                    }
+                }
                 updateComponentFonts();
 
                 clearStatusLabels();
@@ -119,12 +167,27 @@ public final class MMUI
 
                 setGameName(null);
                 handler.uiInitialized();
+                mainFrame.frame.addWindowListener(new FirstFrameListener());
                 mainFrame.setVisible(true);
                 mainFrame.startup();
             }
         });
     }
 
+    // Reports the time to first frame once the main window opens. If the system property
+    // "meterman2.exit-after-startup" is set, it then exits, as for the class-list run of the
+    // "cds.archive" build target.
+    private final class FirstFrameListener extends WindowAdapter
+    {
+        public void windowOpened(WindowEvent e) {
+            mainFrame.frame.removeWindowListener(this);
+            final long elapsed = System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+            logger.info(String.format("Time to first frame: %d ms", elapsed));
+            if (Boolean.getBoolean("meterman2.exit-after-startup"))
+                System.exit(0);
+        }
+    }
+
     void updateComponentFonts() {
         final Font mainTextFont = Font.decode(Utils.pref("main-text-font", "Roboto Slab-PLAIN-14"));
         final Font headerFont = Font.decode(Utils.pref("header-font", "Roboto Slab-PLAIN-18"));
@@ -147,6 +210,7 @@ public final class MMUI
     public void dispose() {
         Runnable doRun = new Runnable() {
             public void run() {
+                disposed = true;
                 clearImages();
                 defaultFrameImage.flush();
                 defaultFrameImage = null;
@@ -168,17 +232,141 @@ public final class MMUI
                 logger.log(Level.WARNING, "MMUI.dispose()", e);
             }
         }
+        if (imageDecoder != null) {
+            imageDecoder.shutdownNow();
+            imageDecoder = null;
+        }
         loadedImages = null;
-        inventoryEntityIds = null;
-        roomEntityIds = null;
+        pendingImages = null;
         this.handler = null;
     }
 
+    boolean isDisposed() {
+        return disposed;
+    }
+
+    /*
+     * Methods that update the UI may be called from any thread. On the event dispatch thread they take effect
+     * immediately; on the game thread the updates are collected in a batch that's applied on the event dispatch
+     * thread by flushUpdates(); and on any other thread (a startup or loader thread, say) each update is handed
+     * to the event dispatch thread with invokeLater(). Dialogs, and the few methods that return something only
+     * the UI knows, are run on the event dispatch thread while the caller waits.
+     */
+
+    /**
+     * Tell the UI which thread runs the game's turns. UI updates made on that thread are batched until
+     * {@link #flushUpdates()}, and while it waits for a modal dialog, {@link #isCallerWaiting()} returns true.
+     * @param thread the game thread
+     */
+    public void setGameThread(Thread thread) {
+        gameThread = thread;
+    }
+
+    // Return true if UI updates made on this thread must be handed to the event dispatch thread.
+    private static boolean offEDT() {
+        return !SwingUtilities.isEventDispatchThread();
+    }
+
+    // Return true if UI updates made on this thread should be batched.
+    private boolean batching() {
+        return Thread.currentThread() == gameThread;
+    }
+
+    // Hand an update made off the event dispatch thread to it: in the batch, on the game thread, and
+    // otherwise right away.
+    private void defer(Runnable update) {
+        if (batching())
+            batch().add(update);
+        else
+            SwingUtilities.invokeLater(update);
+    }
+
+    private UIBatch batch() {
+        if (batch == null)
+            batch = new UIBatch(this);
+        return batch;
+    }
+
+    /**
+     * Send the UI updates made on the game thread since the last flush to the event dispatch thread, where
+     * they'll be applied all at once. The game thread does this at the end of each turn, and before showing a
+     * dialog. On any other thread, whose updates aren't batched, this does nothing.
+     */
+    public void flushUpdates() {
+        if (batching() && batch != null) {
+            if (!batch.isEmpty())
+                SwingUtilities.invokeLater(batch);
+            batch = null;
+        }
+    }
+
+    // Run something on the event dispatch thread, after flushing any pending updates, and wait for its result.
+    private <T> T callOnEDT(Callable<T> c) {
+        flushUpdates();
+        final FutureTask<T> task = new FutureTask<>(c);
+        final boolean counted = batching();
+        if (counted)
+            waitingCallers++;  // only ever changed by the game thread
+        try {
+            SwingUtilities.invokeLater(task);
+            return task.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the UI", ex);
+        } catch (ExecutionException ex) {
+            final Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new IllegalStateException(cause);
+        } finally {
+            if (counted)
+                waitingCallers--;
+        }
+    }
+
+    /* Wait for a dialog responder's answer, after flushing any pending updates. Unlike callOnEDT(), this doesn't
+       count as a waiting caller: the window stays usable meanwhile, so the user could start a new game, say, and
+       that must wait for the turn that asked for the dialog to finish. */
+    private <T> T awaitReply(DialogReply<T> reply) {
+        flushUpdates();
+        return reply.await();
+    }
+
+    /**
+     * Have dialogs answered by a responder rather than shown in the window, as a headless or remote front end
+     * would. The thread that asks for a dialog waits until the responder completes its reply; the window stays
+     * usable meanwhile, but commands given through it wait until the turn that asked for the dialog is over.
+     * @param responder the responder, or null to show the Swing dialogs again
+     */
+    public void setDialogResponder(DialogResponder responder) {
+        dialogResponder = responder;
+    }
+
+    /**
+     * Return true if the game thread is blocked waiting for the event dispatch thread, as it is while a
+     * modal dialog it asked for is showing. Until the dialog closes, that thread does nothing else and the user
+     * can't reach the main window, and so the event dispatch thread may do work that would otherwise have to be
+     * run on it. A thread waiting for a {@link DialogResponder} doesn't count, since the window stays usable.
+     */
+    public boolean isCallerWaiting() {
+        return waitingCallers > 0;
+    }
+
     /**
      * Sets the frame title (or equivalent) and About menu text to show the game name.
      * @param name game name, or null if no game loaded
      */
-    public void setGameName(String name) {
+    public void setGameName(final String name) {
+        if (offEDT()) {
+            defer(new Runnable() {
+                public void run() {
+                    setGameName(name);
+                }
+            });
+            return;
+        }
         if (name == null) {
             mainFrame.frame.setTitle("Meterman2 (no game loaded)");
             mainFrame.aboutMenuItem.setText("About...");
@@ -193,6 +381,14 @@ public final class MMUI
     /** Set the text of the Look and Wait UI buttons to the text of the
      *  LOOK and WAIT system actions, respectively. */
     public void setGlobalActionButtonText() {
+        if (offEDT()) {
+            defer(new Runnable() {
+                public void run() {
+                    setGlobalActionButtonText();
+                }
+            });
+            return;
+        }
         mainFrame.setGlobalActionButtonText(SystemActions.LOOK, SystemActions.WAIT);
     }
 
@@ -201,16 +397,46 @@ public final class MMUI
      * @param a action
      * @param keystroke keystroke, as specified by {@link javax.swing.KeyStroke#getKeyStroke(java.lang.String)}.
      */
-    public void putActionBinding(Action a, String keystroke) { mainFrame.putActionBinding(a, keystroke); }
+    public void putActionBinding(final Action a, final String keystroke) {
+        if (offEDT()) {
+            defer(new Runnable() {
+                public void run() {
+                    putActionBinding(a, keystroke);
+                }
+            });
+            return;
+        }
+        mainFrame.putActionBinding(a, keystroke);
+    }
 
     /**
      * Remove an action keyboard shortcut.
      * @param a action
      */
-    public void removeActionBinding(Action a) { mainFrame.removeActionBinding(a); }
+    public void removeActionBinding(final Action a) {
+        if (offEDT()) {
+            defer(new Runnable() {
+                public void run() {
+                    removeActionBinding(a);
+                }
+            });
+            return;
+        }
+        mainFrame.removeActionBinding(a);
+    }
 
     /** Clear all action keyboard shortcuts. */
-    public void clearActionBindings() { mainFrame.clearActionBindings(); }
+    public void clearActionBindings() {
+        if (offEDT()) {
+            defer(new Runnable() {
+                public void run() {
+                    clearActionBindings();
+                }
+            });
+            return;
+        }
+        mainFrame.clearActionBindings();
+    }
 
     /**
      * Opens a web browser to the given URL, if applicable. If the UI doesn't
@@ -226,7 +452,15 @@ public final class MMUI
      * @param name name by which the image will be referenced
      * @param path path to the image file. JPEG and PNG (with bitmask transparency) are supported.
      */
-    public void addImageMapping(String name, Path path) {
+    public void addImageMapping(final String name, final Path path) {
+        if (offEDT()) {
+            defer(new Runnable() {
+                public void run() {
+                    addImageMapping(name, path);
+                }
+            });
+            return;
+        }
         imageMap.put(name, path);
     }
 
@@ -234,7 +468,15 @@ public final class MMUI
      * Remove an image mapping. If the image is loaded, it will be unloaded.
      * @param name name under which the image was added.
      */
-    public void removeImageMapping(String name) {
+    public void removeImageMapping(final String name) {
+        if (offEDT()) {
+            defer(new Runnable() {
+                public void run() {
+                    removeImageMapping(name);
+                }
+            });
+            return;
+        }
         unloadImage(name);
         imageMap.remove(name);
     }
@@ -271,28 +513,157 @@ public final class MMUI
     }
 
     /**
-     * Load an image, if it's not already loaded.
+     * Load an image, if it's not already loaded. Images loaded through this method are
+     * cached along with frame images.
      * @param name image name, as given in {@link #addImageMapping(String, Path)}
      * @return image thus loaded, or null if it could not be loaded
      */
-    public BufferedImage loadImage(String name) {
+    public BufferedImage loadImage(final String name) {
+        if (offEDT()) {
+            return callOnEDT(new Callable<BufferedImage>() {
+                public BufferedImage call() {
+                    return loadImage(name);
+                }
+            });
+        }
+        return loadImage(name, ImageCache.Pool.FRAME);
+    }
+
+    private BufferedImage loadImage(String name, ImageCache.Pool pool) {
         BufferedImage img = loadedImages.get(name);
         if (img == null) {
-            Path p = imageMap.get(name);
-            if (p == null)
-                return null;
-            img = GuiUtils.loadBitmaskImage(p);
-            if (img != null)
-                loadedImages.put(name, img);
+            long decodeNanos = 0;
+            final DecodeTask pending = pendingImages.remove(name);
+            if (pending != null) {
+                // It's already being decoded, so we wait for it rather than decoding it twice.
+                try {
+                    img = pending.get();
+                    decodeNanos = pending.decodeNanos();
+                    pool = pending.pool;
+                } catch (InterruptedException | ExecutionException | CancellationException ex) {
+                    img = null;
+                }
+            }
+            if (img == null) {
+                Path p = imageMap.get(name);
+                if (p == null)
+                    return null;
+                final long start = System.nanoTime();
+                img = GuiUtils.loadBitmaskImage(p);
+                decodeNanos = System.nanoTime() - start;
+            }
+            if (img != null) {
+                loadedImages.recordMiss(pool);
+                loadedImages.put(name, img, pool, decodeNanos);
+            }
         }
         return img;
     }
 
+    /**
+     * Begin loading a frame image in the background, if it's not already loaded, so that it's ready when
+     * it's needed. If background loading is disabled, this does nothing.
+     * @param name image name, as given in {@link #addImageMapping(String, Path)}
+     */
+    public void prefetchFrameImage(String name) {
+        prefetchImage(name, ImageCache.Pool.FRAME);
+    }
+
+    /**
+     * Begin loading an entity image in the background, if it's not already loaded.
+     * @param name image name, as given in {@link #addImageMapping(String, Path)}
+     * @see #prefetchFrameImage(String)
+     */
+    public void prefetchEntityImage(String name) {
+        prefetchImage(name, ImageCache.Pool.ENTITY);
+    }
+
+    private void prefetchImage(final String name, final ImageCache.Pool pool) {
+        if (offEDT()) {
+            defer(new Runnable() {
+                public void run() {
+                    prefetchImage(name, pool);
+                }
+            });
+            return;
+        }
+        if (imageDecoder == null || name == UIConstants.NO_IMAGE || name == UIConstants.DEFAULT_FRAME_IMAGE)
+            return;
+        if (loadedImages.contains(name) || pendingImages.containsKey(name))
+            return;
+        final Path p = imageMap.get(name);
+        if (p != null)
+            decodeImageAsync(name, p, pool);
+    }
+
+    private void decodeImageAsync(final String name, Path p, ImageCache.Pool pool) {
+        final DecodeTask task = new DecodeTask(p, pool);
+        pendingImages.put(name, task);
+        imageDecoder.execute(new Runnable() {
+            public void run() {
+                task.run();
+                SwingUtilities.invokeLater(new Runnable() {
+                    public void run() {
+                        imageDecoded(name, task);
+                    }
+                });
+            }
+        });
+    }
+
+    // Called on the EDT when a background decode has finished.
+    private void imageDecoded(String name, DecodeTask task) {
+        if (pendingImages == null || pendingImages.get(name) != task)
+            return;  // it was loaded synchronously, unloaded, or we've been disposed in the meantime
+        pendingImages.remove(name);
+        BufferedImage img;
+        try {
+            img = task.get();
+        } catch (InterruptedException | ExecutionException ex) {
+            img = null;
+        }
+        if (img == null)
+            return;
+        loadedImages.recordMiss(task.pool);
+        loadedImages.put(name, img, task.pool, task.decodeNanos());
+        // Swap the image in if it's wanted now.
+        if (currentFrameImage.equals(name))
+            mainFrame.setFrameImage(img);
+        if (currentEntityImage.equals(name))
+            mainFrame.setEntityImage(img);
+    }
+
+    /* Return the image if it's already loaded; otherwise, if background loading is enabled, start loading
+       it and return null, so that the caller shows no image until imageDecoded() swaps it in. */
+    private BufferedImage getImageOrPlaceholder(String name, ImageCache.Pool pool) {
+        if (imageDecoder == null)
+            return loadImage(name, pool);
+        final BufferedImage img = loadedImages.get(name);
+        if (img == null)
+            prefetchImage(name, pool);
+        return img;
+    }
+
     /**
      * Unload an image.
      * @param name name of image
      */
-    public void unloadImage(String name) {
+    public void unloadImage(final String name) {
+        if (frameImageName.equals(name))
+            frameImageName = UIConstants.NO_IMAGE;
+        if (entityImageName.equals(name))
+            entityImageName = UIConstants.NO_IMAGE;
+        if (offEDT()) {
+            defer(new Runnable() {
+                public void run() {
+                    unloadImage(name);
+                }
+            });
+            return;
+        }
+        final Future<BufferedImage> pending = pendingImages.remove(name);
+        if (pending != null)
+            pending.cancel(false);
         BufferedImage img = loadedImages.remove(name);
         if (img != null) {
             if (currentFrameImage.equals(name)) {
@@ -303,27 +674,62 @@ public final class MMUI
                 currentEntityImage = UIConstants.NO_IMAGE;
                 mainFrame.setEntityImage(null);
             }
+            loadedImages.setPinned(currentFrameImage, currentEntityImage);
+            if (img == dialogImageSource)
+                clearScaledDialogImage();
             img.flush();
         }
     }
 
     /** Unload all images and remove all mappings. */
     public void clearImages() {
+        frameImageName = entityImageName = UIConstants.NO_IMAGE;
+        if (offEDT()) {
+            defer(new Runnable() {
+                public void run() {
+                    clearImages();
+                }
+            });
+            return;
+        }
         mainFrame.setFrameImage(null);
         currentFrameImage = UIConstants.NO_IMAGE;
         mainFrame.setEntityImage(null);
         currentEntityImage = UIConstants.NO_IMAGE;
-        MapIterator<String,BufferedImage> iter = loadedImages.mapIterator();
-        while (iter.hasNext()) {
-            iter.next();
-            iter.getValue().flush();
-        }
+        loadedImages.setPinned(null, null);
         loadedImages.clear();
+        clearScaledDialogImage();
+        for (Future<BufferedImage> pending : pendingImages.values())
+            pending.cancel(false);
+        pendingImages.clear();
         imageMap.clear();
     }
 
+    /**
+     * Return a summary of the image cache's usage and hit rates, for use in tuning
+     * the "frame-image-cache-mb" and "entity-image-cache-mb" config properties.
+     */
+    public String getImageCacheStats() {
+        if (offEDT()) {
+            return callOnEDT(new Callable<String>() {
+                public String call() {
+                    return getImageCacheStats();
+                }
+            });
+        }
+        return loadedImages.getStats();
+    }
+
     /** Set whether the frame image panel is visible. */
-    public void setFrameImageVisible(boolean visible) {
+    public void setFrameImageVisible(final boolean visible) {
+        if (offEDT()) {
+            defer(new Runnable() {
+                public void run() {
+                    setFrameImageVisible(visible);
+                }
+            });
+            return;
+        }
         mainFrame.imagePanel.setVisible(visible);
     }
 
@@ -331,19 +737,32 @@ public final class MMUI
      * Sets the image displayed in the main UI frame. The recommended size for
      * frame images is 150x400 pixels, or an integer fraction of that, in which
      * case the image will be scaled up.
+     * <p/>
+     * If the image is not yet loaded and background loading is enabled, the frame shows no image until
+     * the image has been decoded. Use {@link #prefetchFrameImage(String)} to avoid this.
      * @param imageName name of the image
      */
-    public void setFrameImage(String imageName) {
+    public void setFrameImage(final String imageName) {
+        frameImageName = imageName;
+        if (offEDT()) {
+            defer(new Runnable() {
+                public void run() {
+                    setFrameImage(imageName);
+                }
+            });
+            return;
+        }
         if (currentFrameImage.equals(imageName))
             return;
         currentFrameImage = imageName;
+        loadedImages.setPinned(currentFrameImage, currentEntityImage);
         BufferedImage img;
         if (imageName == UIConstants.DEFAULT_FRAME_IMAGE)
             img = defaultFrameImage;
         else if (imageName == UIConstants.NO_IMAGE)
             img = null;
         else
-            img = loadImage(imageName);
+            img = getImageOrPlaceholder(imageName, ImageCache.Pool.FRAME);
         mainFrame.setFrameImage(img);
     }
 
@@ -353,24 +772,35 @@ public final class MMUI
      * @return the name of the current frame image.
      */
     public String getFrameImage() {
-        return currentFrameImage;
+        return frameImageName;
     }
 
     /**
      * Sets the entity image that will be drawn inset in the frame image. The recommended size for entity
      * images is 140x140 pixels, or an integer fraction of that, in which case the image will be scaled up;
      * the image itself should have a border to visually separate it from the frame image.
+     * As with {@link #setFrameImage(String)}, an image not yet loaded is swapped in once it's decoded.
      * @param imageName name of the image
      */
-    public void setEntityImage(String imageName) {
+    public void setEntityImage(final String imageName) {
+        entityImageName = imageName;
+        if (offEDT()) {
+            defer(new Runnable() {
+                public void run() {
+                    setEntityImage(imageName);
+                }
+            });
+            return;
+        }
         if (currentEntityImage.equals(imageName))
             return;
         currentEntityImage = imageName;
+        loadedImages.setPinned(currentFrameImage, currentEntityImage);
         BufferedImage img;
         if (imageName == UIConstants.NO_IMAGE)
             img = null;
         else
-            img = loadImage(imageName);
+            img = getImageOrPlaceholder(imageName, ImageCache.Pool.ENTITY);
         mainFrame.setEntityImage(img);
     }
 
@@ -380,21 +810,39 @@ public final class MMUI
      * @return the name of the current entity image.
      */
     public String getEntityImage() {
-        return currentEntityImage;
+        return entityImageName;
     }
 
     /**
      * Sets the room name displayed in the UI
      * @param name room name
      */
-    public void setRoomName(String name) {
-        mainFrame.roomNameLabel.setText(name);
+    public void setRoomName(final String name) {
+        if (batching()) {
+            batch().setRoomName(name);
+        } else if (offEDT()) {
+            defer(new Runnable() {
+                public void run() {
+                    setRoomName(name);
+                }
+            });
+        } else {
+            mainFrame.roomNameLabel.setText(name);
+        }
     }
 
     /**
      * Clears the main text area.
      */
     public void clearText() {
+        if (offEDT()) {
+            defer(new Runnable() {
+                public void run() {
+                    clearText();
+                }
+            });
+            return;
+        }
         mainFrame.textPane.setText(null);
     }
 
@@ -404,7 +852,18 @@ public final class MMUI
      * @param text text to append
      * @param emph true if text should be emphasized (italic)
      */
-    public void appendText(String text, boolean emph) {
+    public void appendText(final String text, final boolean emph) {
+        if (batching()) {
+            batch().appendText(text, emph);
+            return;
+        } else if (offEDT()) {
+            defer(new Runnable() {
+                public void run() {
+                    appendText(text, emph);
+                }
+            });
+            return;
+        }
         final DefaultStyledDocument doc = mainFrame.document;
         try {
             doc.insertString(doc.getLength(), text, emph ? emphAttributeSet : null);
@@ -453,7 +912,14 @@ public final class MMUI
      * Clears the list displaying Entities in the current room.
      */
     public void clearRoomEntities() {
-        roomEntityIds.clear();
+        if (offEDT()) {
+            defer(new Runnable() {
+                public void run() {
+                    clearRoomEntities();
+                }
+            });
+            return;
+        }
         mainFrame.roomListModel.clear();
     }
 
@@ -462,21 +928,32 @@ public final class MMUI
      * @param id entity ID
      * @param name name to show in the list
      */
-    public void addRoomEntity(String id, String name) {
-        roomEntityIds.add(id);
-        mainFrame.roomListModel.addElement(name);
+    public void addRoomEntity(final String id, final String name) {
+        if (offEDT()) {
+            defer(new Runnable() {
+                public void run() {
+                    addRoomEntity(id, name);
+                }
+            });
+            return;
+        }
+        mainFrame.roomListModel.add(id, name);
     }
 
     /**
      * Removes an entity from the list of entities in the current room.
      * @param id entity ID
      */
-    public void removeRoomEntity(String id) {
-        int idx = roomEntityIds.indexOf(id);
-        if (idx != -1) {
-            roomEntityIds.remove(idx);
-            mainFrame.roomListModel.remove(idx);
+    public void removeRoomEntity(final String id) {
+        if (offEDT()) {
+            defer(new Runnable() {
+                public void run() {
+                    removeRoomEntity(id);
+                }
+            });
+            return;
         }
+        mainFrame.roomListModel.remove(id);
     }
 
     /**
@@ -484,17 +961,50 @@ public final class MMUI
      * @param id entity ID
      * @param name name to show in the list
      */
-    public void updateRoomEntity(String id, String name) {
-        int idx = roomEntityIds.indexOf(id);
-        if (idx != -1)
-            mainFrame.roomListModel.set(idx, name);
+    public void updateRoomEntity(final String id, final String name) {
+        if (offEDT()) {
+            defer(new Runnable() {
+                public void run() {
+                    updateRoomEntity(id, name);
+                }
+            });
+            return;
+        }
+        mainFrame.roomListModel.set(id, name);
+    }
+
+    /**
+     * Sets the complete list of entities in the current room. Only those list items that differ
+     * from what is currently shown will be changed, so the list does not flicker and any selection
+     * on an unchanged item is kept.
+     * @param ids entity IDs, in display order
+     * @param names names to show in the list, parallel to {@code ids}
+     */
+    public void setRoomEntities(List<String> ids, List<String> names) {
+        if (offEDT()) {
+            final List<String> idsCopy = new ArrayList<>(ids), namesCopy = new ArrayList<>(names);
+            defer(new Runnable() {
+                public void run() {
+                    setRoomEntities(idsCopy, namesCopy);
+                }
+            });
+            return;
+        }
+        mainFrame.roomListModel.update(ids, names);
     }
 
     /**
      * Clears the list displaying Entities in the player's inventory.
      */
     public void clearInventoryEntities() {
-        inventoryEntityIds.clear();
+        if (offEDT()) {
+            defer(new Runnable() {
+                public void run() {
+                    clearInventoryEntities();
+                }
+            });
+            return;
+        }
         mainFrame.inventoryListModel.clear();
     }
 
@@ -503,21 +1013,32 @@ public final class MMUI
      * @param id entity ID
      * @param name name to show in the list
      */
-    public void addInventoryEntity(String id, String name) {
-        inventoryEntityIds.add(id);
-        mainFrame.inventoryListModel.addElement(name);
+    public void addInventoryEntity(final String id, final String name) {
+        if (offEDT()) {
+            defer(new Runnable() {
+                public void run() {
+                    addInventoryEntity(id, name);
+                }
+            });
+            return;
+        }
+        mainFrame.inventoryListModel.add(id, name);
     }
 
     /**
      * Removes an entity from the list of entities in the player's inventory.
      * @param id entity ID
      */
-    public void removeInventoryEntity(String id) {
-        int idx = inventoryEntityIds.indexOf(id);
-        if (idx != -1) {
-            inventoryEntityIds.remove(idx);
-            mainFrame.inventoryListModel.remove(idx);
+    public void removeInventoryEntity(final String id) {
+        if (offEDT()) {
+            defer(new Runnable() {
+                public void run() {
+                    removeInventoryEntity(id);
+                }
+            });
+            return;
         }
+        mainFrame.inventoryListModel.remove(id);
     }
 
     /**
@@ -525,10 +1046,35 @@ public final class MMUI
      * @param id entity ID
      * @param name name to show in the list
      */
-    public void updateInventoryEntity(String id, String name) {
-        int idx = inventoryEntityIds.indexOf(id);
-        if (idx != -1)
-            mainFrame.inventoryListModel.set(idx, name);
+    public void updateInventoryEntity(final String id, final String name) {
+        if (offEDT()) {
+            defer(new Runnable() {
+                public void run() {
+                    updateInventoryEntity(id, name);
+                }
+            });
+            return;
+        }
+        mainFrame.inventoryListModel.set(id, name);
+    }
+
+    /**
+     * Sets the complete list of entities in the player's inventory.
+     * @param ids entity IDs, in display order
+     * @param names names to show in the list, parallel to {@code ids}
+     * @see #setRoomEntities(List, List)
+     */
+    public void setInventoryEntities(List<String> ids, List<String> names) {
+        if (offEDT()) {
+            final List<String> idsCopy = new ArrayList<>(ids), namesCopy = new ArrayList<>(names);
+            defer(new Runnable() {
+                public void run() {
+                    setInventoryEntities(idsCopy, namesCopy);
+                }
+            });
+            return;
+        }
+        mainFrame.inventoryListModel.update(ids, names);
     }
 
     /**
@@ -536,12 +1082,20 @@ public final class MMUI
      * or inventory lists.
      * @param id entity ID
      */
-    public void selectEntity(String id) {
-        int idx = roomEntityIds.indexOf(id);
+    public void selectEntity(final String id) {
+        if (offEDT()) {
+            defer(new Runnable() {
+                public void run() {
+                    selectEntity(id);
+                }
+            });
+            return;
+        }
+        int idx = mainFrame.roomListModel.indexOfId(id);
         if (idx != -1) {
             mainFrame.roomList.setSelectedIndex(idx);
         } else {
-            idx = inventoryEntityIds.indexOf(id);
+            idx = mainFrame.inventoryListModel.indexOfId(id);
             if (idx != -1)
                 mainFrame.inventoryList.setSelectedIndex(idx);
         }
@@ -551,6 +1105,14 @@ public final class MMUI
      * Clears any selection in the room and inventory entity lists.
      */
     public void clearEntitySelection() {
+        if (offEDT()) {
+            defer(new Runnable() {
+                public void run() {
+                    clearEntitySelection();
+                }
+            });
+            return;
+        }
         mainFrame.roomList.clearSelection();
         mainFrame.inventoryList.clearSelection();
     }
@@ -560,7 +1122,17 @@ public final class MMUI
      * Clears the exit button list.
      */
     public void clearExits() {
-        mainFrame.clearExits();
+        if (batching()) {
+            batch().clearExits();
+        } else if (offEDT()) {
+            defer(new Runnable() {
+                public void run() {
+                    clearExits();
+                }
+            });
+        } else {
+            mainFrame.clearExits();
+        }
     }
 
     /**
@@ -568,23 +1140,68 @@ public final class MMUI
      * @param buttonPos one of the constants indicating a button position (ex. {@link UIConstants#N_BUTTON})
      * @param label label to use for the specified exit button; if null, the given button will be hidden.
      */
-    public void setExitLabel(int buttonPos, String label) {
-        mainFrame.setExitLabel(buttonPos, label);
+    public void setExitLabel(final int buttonPos, final String label) {
+        if (batching()) {
+            batch().setExitLabel(buttonPos, label);
+        } else if (offEDT()) {
+            defer(new Runnable() {
+                public void run() {
+                    setExitLabel(buttonPos, label);
+                }
+            });
+        } else {
+            mainFrame.setExitLabel(buttonPos, label);
+        }
     }
 
     /**
      * Clears the action button group.
      */
     public void clearActions() {
+        if (offEDT()) {
+            defer(new Runnable() {
+                public void run() {
+                    clearActions();
+                }
+            });
+            return;
+        }
         mainFrame.clearActions();
     }
 
+    /**
+     * Show a list of actions in the action button group, in place of those shown now. This is cheaper
+     * than {@link #clearActions()} followed by {@link #addAction(Action)} for each action, since only the
+     * buttons whose actions differ from those shown are changed.
+     * @param actions actions to show
+     */
+    public void setActions(List<Action> actions) {
+        if (offEDT()) {
+            final List<Action> actionsCopy = new ArrayList<>(actions);
+            defer(new Runnable() {
+                public void run() {
+                    setActions(actionsCopy);
+                }
+            });
+            return;
+        }
+        mainFrame.setActions(actions);
+    }
+
     /**
      * Add an action to the action button list. If the action is already present,
      * this method will return without any effect.
      * @param action action to add
      */
-    public void addAction(Action action) {
+    public void addAction(final Action action) {
+        if (offEDT()) {
+            defer(new Runnable() {
+                public void run() {
+                    addAction(action);
+                }
+            });
+            return;
+        }
         mainFrame.addAction(action);
     }
 
@@ -592,7 +1209,15 @@ public final class MMUI
      * Removes an action from the action button list.
      * @param action action to remove
      */
-    public void removeAction(Action action) {
+    public void removeAction(final Action action) {
+        if (offEDT()) {
+            defer(new Runnable() {
+                public void run() {
+                    removeAction(action);
+                }
+            });
+            return;
+        }
         mainFrame.removeAction(action);
     }
 
@@ -602,7 +1227,18 @@ public final class MMUI
      *           {@link UIConstants#CENTER_LABEL}, {@link UIConstants#RIGHT_LABEL}
      * @param label the text to show for the given label; if null, the label is cleared.
      */
-    public void setStatusLabel(int labelPosition, String label) {
+    public void setStatusLabel(final int labelPosition, final String label) {
+        if (batching()) {
+            batch().setStatusLabel(labelPosition, label);
+            return;
+        } else if (offEDT()) {
+            defer(new Runnable() {
+                public void run() {
+                    setStatusLabel(labelPosition, label);
+                }
+            });
+            return;
+        }
         switch (labelPosition) {
         case UIConstants.LEFT_LABEL:
             mainFrame.leftStatusLabel.setText(label);
@@ -639,7 +1275,21 @@ public final class MMUI
     }
 
     /** Like {@link #showTextDialog} but without transcribing. Intended for use by the game system. */
-    public int showTextDialogImpl(String header, String text, String... buttonLabels) {
+    public int showTextDialogImpl(final String header, final String text, final String... buttonLabels) {
+        final DialogResponder responder = dialogResponder;
+        if (responder != null) {
+            final DialogReply<Integer> reply = new DialogReply<>();
+            responder.textDialog(header, text, buttonLabels, reply);
+            final Integer r = awaitReply(reply);
+            return r != null ? r : -1;
+        }
+        if (offEDT()) {
+            return callOnEDT(new Callable<Integer>() {
+                public Integer call() {
+                    return showTextDialogImpl(header, text, buttonLabels);
+                }
+            });
+        }
         return textDialog.show(header, formatDialogText(text), buttonLabels);
     }
 
@@ -662,13 +1312,45 @@ public final class MMUI
     }
 
     /** Like {@link #showImageDialog} but without transcribing. Intended for use by the game system. */
-    public int showImageDialogImpl(String header, String imageName, int scale, String text, String... buttonLabels) {
+    public int showImageDialogImpl(final String header, final String imageName, final int scale, final String text,
+                                   final String... buttonLabels) {
+        final DialogResponder responder = dialogResponder;
+        if (responder != null) {
+            final DialogReply<Integer> reply = new DialogReply<>();
+            responder.imageDialog(header, imageName, scale, text, buttonLabels, reply);
+            final Integer r = awaitReply(reply);
+            return r != null ? r : -1;
+        }
+        if (offEDT()) {
+            return callOnEDT(new Callable<Integer>() {
+                public Integer call() {
+                    return showImageDialogImpl(header, imageName, scale, text, buttonLabels);
+                }
+            });
+        }
         BufferedImage image = imageName == UIConstants.NO_IMAGE ? null : loadImage(imageName);
         if (image != null && scale > 1)
-            image = GuiUtils.getScaledImage(image, scale);
+            image = getScaledDialogImage(image, scale);
         return imageDialog.show(header, image, formatDialogText(text), buttonLabels);
     }
 
+    private BufferedImage getScaledDialogImage(BufferedImage image, int scale) {
+        if (image != dialogImageSource || scale != dialogImageScale) {
+            clearScaledDialogImage();
+            dialogImageSource = image;
+            dialogImageScale = scale;
+            scaledDialogImage = GuiUtils.getScaledImage(image, scale);
+        }
+        return scaledDialogImage;
+    }
+
+    private void clearScaledDialogImage() {
+        if (scaledDialogImage != null)
+            scaledDialogImage.flush();
+        dialogImageSource = scaledDialogImage = null;
+        dialogImageScale = 0;
+    }
+
     /**
      * Shows a dialog allowing the user to select one of a list of items.
      * @param header header surmounted above the text passage
@@ -687,7 +1369,21 @@ public final class MMUI
     }
 
     /** Like {@link #showListDialog} but without transcribing. Intended for use by the game system. */
-    public <T> T showListDialogImpl(String header, String text, List<T> items, boolean showCancelButton) {
+    public <T> T showListDialogImpl(final String header, final String text, final List<T> items,
+                                    final boolean showCancelButton) {
+        final DialogResponder responder = dialogResponder;
+        if (responder != null) {
+            final DialogReply<T> reply = new DialogReply<>();
+            responder.listDialog(header, text, items, showCancelButton, reply);
+            return awaitReply(reply);
+        }
+        if (offEDT()) {
+            return callOnEDT(new Callable<T>() {
+                public T call() {
+                    return showListDialogImpl(header, text, items, showCancelButton);
+                }
+            });
+        }
         return listDialog.showListDialog(header, formatDialogText(text), items, showCancelButton);
     }
 
@@ -709,7 +1405,22 @@ public final class MMUI
     }
 
     /** Like {@link #showPromptDialog} but without transcribing. Intended for use by the game system. */
-    public String showPromptDialogImpl(String header, String text, String prompt, String initialText) {
+    public String showPromptDialogImpl(final String header, final String text, final String prompt,
+                                       final String initialText) {
+        final DialogResponder responder = dialogResponder;
+        if (responder != null) {
+            final DialogReply<String> reply = new DialogReply<>();
+            responder.promptDialog(header, text, prompt, initialText, reply);
+            final String s = awaitReply(reply);
+            return s != null ? s : "";
+        }
+        if (offEDT()) {
+            return callOnEDT(new Callable<String>() {
+                public String call() {
+                    return showPromptDialogImpl(header, text, prompt, initialText);
+                }
+            });
+        }
         return promptDialog.show(header, formatDialogText(text), prompt, initialText);
     }
 
@@ -718,7 +1429,16 @@ public final class MMUI
      * intended to inform the user when a potentially long-running operation is taking place.
      * @param message message to show
      */
-    public void showWaitDialog(String message) {
+    public void showWaitDialog(final String message) {
+        if (offEDT()) {
+            defer(new Runnable() {
+                public void run() {
+                    showWaitDialog(message);
+                }
+            });
+            flushUpdates();  // so that it's shown while the caller is busy
+            return;
+        }
         waitDialog.show(message);
     }
 
@@ -726,12 +1446,21 @@ public final class MMUI
      * Hides the dialog previously shown by {@link #showWaitDialog(String)}.
      */
     public void hideWaitDialog() {
+        if (offEDT()) {
+            defer(new Runnable() {
+                public void run() {
+                    hideWaitDialog();
+                }
+            });
+            return;
+        }
         waitDialog.hide();
     }
 
     /** Prompts the user to choose a new game, load a game, or quit, until a game is successfully
      *  running or the program exits. */
     public void noGameLoop() {
+        flushUpdates();
         SwingUtilities.invokeLater(new Runnable()
         {
             public void run() {
@@ -742,6 +1471,15 @@ public final class MMUI
 
     /** Programmatically invokes the "Save Transcript" function of the UI. */
     public void doSaveTranscript() {
+        if (offEDT()) {
+            callOnEDT(new Callable<Void>() {
+                public Void call() {
+                    doSaveTranscript();
+                    return null;
+                }
+            });
+            return;
+        }
         mainFrame.saveTranscriptMenuItem.doClick();
     }
 
@@ -756,22 +1494,42 @@ public final class MMUI
         return TextUtils.wrapText(Markup.plainTextMarkup(text), dialogTextColumns);
     }
 
-    private class LRUImageCacheMap extends LRUMap<String,BufferedImage>
+    // A background decode, which records how long it took so that the image cache can weigh its cost.
+    private static final class DecodeTask extends FutureTask<BufferedImage>
     {
-        LRUImageCacheMap(int maxSize) {
-            super(maxSize, true);
-        }
-
-        protected boolean removeLRU(LinkEntry<String,BufferedImage> entry) {
-            final String name = entry.getKey();
-            final BufferedImage image = entry.getValue();
-            // Don't evict a currently-used image.
-            if (!name.equals(currentFrameImage) && !name.equals(currentEntityImage)) {
-                image.flush();
-                return true;
-            } else {
-                return false;
-            }
+        final ImageCache.Pool pool;
+        private final DecodeCallable callable;
+
+        DecodeTask(Path p, ImageCache.Pool pool) {
+            this(new DecodeCallable(p), pool);
+        }
+
+        private DecodeTask(DecodeCallable callable, ImageCache.Pool pool) {
+            super(callable);
+            this.callable = callable;
+            this.pool = pool;
+        }
+
+        // Only meaningful once the task has completed.
+        long decodeNanos() {
+            return callable.decodeNanos;
+        }
+    }
+
+    private static final class DecodeCallable implements Callable<BufferedImage>
+    {
+        private final Path p;
+        private long decodeNanos;  // visible to other threads once the FutureTask has completed
+
+        DecodeCallable(Path p) {
+            this.p = p;
+        }
+
+        public BufferedImage call() {
+            final long start = System.nanoTime();
+            final BufferedImage img = GuiUtils.loadBitmaskImage(p);
+            decodeNanos = System.nanoTime() - start;
+            return img;
         }
     }
 }
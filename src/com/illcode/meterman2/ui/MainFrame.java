@@ -16,7 +16,6 @@ import javax.swing.event.ListSelectionListener;
 import javax.swing.text.DefaultStyledDocument;
 import java.awt.Font;
 import java.awt.Graphics;
-import java.awt.Graphics2D;
 import java.awt.Point;
 import java.awt.event.*;
 import java.awt.image.BufferedImage;
@@ -60,7 +59,7 @@ final class MainFrame implements ActionListener, ListSelectionListener
     JFileChooser fc;
     File currentSaveFile;
 
-    DefaultListModel<String> roomListModel, inventoryListModel;
+    EntityListModel roomListModel, inventoryListModel;
 
     private InputMap inputMap;    // key binding maps for the frame's root pane
     private ActionMap actionMap;
@@ -69,7 +68,9 @@ final class MainFrame implements ActionListener, ListSelectionListener
     private Set<KeyStroke> boundKeystrokes;
 
     private BufferedImage frameImage, entityImage;
+    private ScaledImage scaledFrameImage, scaledEntityImage;  // what we actually paint
     private List<Action> actions;
+    private List<Action> pendingActions;  // used in removeAction(); always clear() after using
     private Action lastAction;
 
     private boolean suppressValueChanged;
@@ -130,13 +131,15 @@ final class MainFrame implements ActionListener, ListSelectionListener
             rightStatusLabel = cr.getLabel("rightStatusLabel");
 
             imageComponent = new FrameImageComponent();
+            scaledFrameImage = new ScaledImage();
+            scaledEntityImage = new ScaledImage();
             imagePanel.add(imageComponent);
 
             frame.getRootPane().setDoubleBuffered(true);
             frame.addWindowListener(new FrameWindowListener());
 
-            roomListModel = new DefaultListModel<>();
-            inventoryListModel = new DefaultListModel<>();
+            roomListModel = new EntityListModel();
+            inventoryListModel = new EntityListModel();
             roomList.setModel(roomListModel);
             inventoryList.setModel(inventoryListModel);
 
@@ -158,6 +161,7 @@ final class MainFrame implements ActionListener, ListSelectionListener
             moreActionCombo.addActionListener(this);
             toolTipBuilder = new StringBuilder(96);
             actions = new ArrayList<>(16);
+            pendingActions = new ArrayList<>(16);
 
             fc = new JFileChooser();
             fc.setCurrentDirectory(Meterman2.savesPath.toFile());
@@ -181,6 +185,8 @@ final class MainFrame implements ActionListener, ListSelectionListener
         GuiUtils.saveBoundsToPref(frame, "main-window-size");
         frameImage = null;
         entityImage = null;
+        scaledFrameImage.reset();
+        scaledEntityImage.reset();
         setVisible(false);
         frame.dispose();
     }
@@ -370,12 +376,16 @@ final class MainFrame implements ActionListener, ListSelectionListener
 
     void setFrameImage(BufferedImage image) {
         frameImage = image;
+        if (image == null)
+            scaledFrameImage.reset();  // otherwise it's rebuilt on the next paint
         if (imagePanel.isVisible())
             imageComponent.repaint();
     }
 
     void setEntityImage(BufferedImage image) {
         entityImage = image;
+        if (image == null)
+            scaledEntityImage.reset();
         if (imagePanel.isVisible())
             imageComponent.repaint();
     }
@@ -398,15 +408,55 @@ final class MainFrame implements ActionListener, ListSelectionListener
     }
 
     void clearActions() {
-        actions.clear();
-        for (JButton b : actionButtons) {
-            b.setVisible(false);
-            b.setToolTipText(null);
+        setActions(Collections.<Action>emptyList());
+    }
+
+    /**
+     * Show a list of actions in place of those shown now. The buttons and "More..." combo box are reused, and
+     * only the text, tooltips, and visibility that differ from what's displayed are changed, so that showing the
+     * same or a similar list again costs little; Swing coalesces the resulting layout into a single validation.
+     */
+    void setActions(List<Action> newActions) {
+        final int n = newActions.size();
+        for (int i = 0; i < NUM_ACTION_BUTTONS; i++) {
+            final JButton b = actionButtons[i];
+            if (i < n) {
+                final Action a = newActions.get(i);
+                final String text = a.getText();
+                if (!text.equals(b.getText()))
+                    b.setText(text);
+                final String toolTipText = getActionToolTipText(a);
+                if (!Objects.equals(toolTipText, b.getToolTipText()))
+                    b.setToolTipText(toolTipText);
+                if (!b.isVisible())
+                    b.setVisible(true);
+            } else if (b.isVisible()) {
+                b.setVisible(false);
+                b.setToolTipText(null);
+            }
+        }
+        // The combo box holds "More..." followed by the actions that don't fit on the buttons. We keep
+        // the items that are unchanged, and replace those after the first that differs.
+        final int numItems = Math.max(n - NUM_ACTION_BUTTONS, 0) + 1;
+        int firstDiff = 1;
+        while (firstDiff < numItems && firstDiff < moreActionCombo.getItemCount() &&
+                moreActionCombo.getItemAt(firstDiff).equals(newActions.get(firstDiff - 1 + NUM_ACTION_BUTTONS).getText()))
+            firstDiff++;
+        if (moreActionCombo.getSelectedIndex() >= firstDiff)
+            moreActionCombo.setSelectedIndex(0);  // removing the selected item would select, and fire, another
+        for (int i = moreActionCombo.getItemCount() - 1; i >= firstDiff; i--)
+            moreActionCombo.removeItemAt(i);
+        if (moreActionCombo.getItemCount() == 0)
+            moreActionCombo.addItem("More...");
+        for (int i = firstDiff; i < numItems; i++)
+            moreActionCombo.addItem(newActions.get(i - 1 + NUM_ACTION_BUTTONS).getText());
+        if (moreActionCombo.isVisible() != numItems > 1)
+            moreActionCombo.setVisible(numItems > 1);
+        if (newActions != actions) {
+            actions.clear();
+            actions.addAll(newActions);
         }
-        moreActionCombo.setVisible(false);
-        moreActionCombo.removeAllItems();
-        moreActionCombo.addItem("More...");
-        moreActionCombo.setToolTipText(null);
+        updateMoreActionsToolTip();
     }
 
     void addAction(Action action) {
@@ -420,26 +470,33 @@ final class MainFrame implements ActionListener, ListSelectionListener
         } else {
             moreActionCombo.addItem(action.getText());
             moreActionCombo.setVisible(true);
-            // Construct a tooltip of all the actions in the combo box
-            toolTipBuilder.setLength(0);
-            for (int i = NUM_ACTION_BUTTONS; i < n; i++) {
-                final Action a = actions.get(i);
-                final String ttt = getActionToolTipText(a);
-                if (ttt != null) {
-                    if (toolTipBuilder.length() == 0)
-                        toolTipBuilder.append("<html>");
-                    else
-                        toolTipBuilder.append("<br/>");
-                    toolTipBuilder.append(a.getText()).append(" - ").append(ttt);
-                }
-            }
-            if (toolTipBuilder.length() != 0) {
-                toolTipBuilder.append("</html>");
-                moreActionCombo.setToolTipText(toolTipBuilder.toString());
-            } else {
-                moreActionCombo.setToolTipText(null);
+            updateMoreActionsToolTip();
+        }
+    }
+
+    // Construct a tooltip of all the actions in the combo box
+    private void updateMoreActionsToolTip() {
+        toolTipBuilder.setLength(0);
+        for (int i = NUM_ACTION_BUTTONS; i < actions.size(); i++) {
+            final Action a = actions.get(i);
+            final String ttt = getActionToolTipText(a);
+            if (ttt != null) {
+                if (toolTipBuilder.length() == 0)
+                    toolTipBuilder.append("<html>");
+                else
+                    toolTipBuilder.append("<br/>");
+                toolTipBuilder.append(a.getText()).append(" - ").append(ttt);
             }
         }
+        final String toolTipText;
+        if (toolTipBuilder.length() != 0) {
+            toolTipBuilder.append("</html>");
+            toolTipText = toolTipBuilder.toString();
+        } else {
+            toolTipText = null;
+        }
+        if (!Objects.equals(toolTipText, moreActionCombo.getToolTipText()))
+            moreActionCombo.setToolTipText(toolTipText);
     }
 
     private String getActionToolTipText(Action action) {
@@ -451,10 +508,11 @@ final class MainFrame implements ActionListener, ListSelectionListener
     }
 
     void removeAction(Action action) {
-        if (actions.remove(action)) {
-            clearActions();
-            for (Action a : actions)
-                addAction(a);
+        if (actions.contains(action)) {
+            pendingActions.addAll(actions);
+            pendingActions.remove(action);
+            setActions(pendingActions);
+            pendingActions.clear();
         }
     }
 
@@ -580,13 +638,13 @@ final class MainFrame implements ActionListener, ListSelectionListener
             inventoryList.clearSelection();
             suppressValueChanged = false;
             int idx = roomList.getSelectedIndex();
-            ui.handler.entitySelected(idx == -1 ? null : ui.roomEntityIds.get(idx));
+            ui.handler.entitySelected(idx == -1 ? null : roomListModel.getIdAt(idx));
         } else if (source == inventoryList) {
             suppressValueChanged = true;
             roomList.clearSelection();
             suppressValueChanged = false;
             int idx = inventoryList.getSelectedIndex();
-            ui.handler.entitySelected(idx == -1 ? null : ui.inventoryEntityIds.get(idx));
+            ui.handler.entitySelected(idx == -1 ? null : inventoryListModel.getIdAt(idx));
         }
     }
 
@@ -597,33 +655,66 @@ final class MainFrame implements ActionListener, ListSelectionListener
 
     private class FrameImageComponent extends JComponent {
         protected void paintComponent(Graphics g) {
-            Graphics2D g2d = (Graphics2D) g;
             int cw = getWidth();
             int ch = getHeight();
-            int x, y, width, height;
+            int x, y;
             if (frameImage != null) {
                 int iw = frameImage.getWidth();
                 int ih = frameImage.getHeight();
                 int scale = Utils.clamp(cw / iw, 1, ch / ih);
-                width = iw * scale;
-                height = ih * scale;
-                x = Math.max(0, (cw - width) / 2);
-                y = Math.max(0, (ch - height) / 2);
-                g2d.drawImage(frameImage, x, y, width, height, null);
+                BufferedImage img = scaledFrameImage.get(frameImage, scale);
+                x = Math.max(0, (cw - img.getWidth()) / 2);
+                y = Math.max(0, (ch - img.getHeight()) / 2);
+                g.drawImage(img, x, y, null);
             }
             if (entityImage != null) {
                 int iw = entityImage.getWidth();
                 int ih = entityImage.getHeight();
                 y = ch / 3;
                 int scale = Utils.clamp(cw / iw, 1, (ch-y) / ih);
-                width = iw * scale;
-                height = ih * scale;
-                x = Math.max(0, (cw - width) / 2);
-                g2d.drawImage(entityImage, x, y, width, height, null);
+                BufferedImage img = scaledEntityImage.get(entityImage, scale);
+                x = Math.max(0, (cw - img.getWidth()) / 2);
+                g.drawImage(img, x, y, null);
             }
         }
     }
 
+    /**
+     * Holds a copy of an image, scaled by an integer factor and in a format compatible with the screen,
+     * so that painting it is a straight blit. The copy is rebuilt only when the source image or the scale
+     * changes, as when the image panel is resized.
+     */
+    private static final class ScaledImage
+    {
+        private BufferedImage source, scaled;
+        private int scale;
+
+        BufferedImage get(BufferedImage source, int scale) {
+            if (source != this.source || scale != this.scale) {
+                reset();
+                this.source = source;
+                this.scale = scale;
+                if (scale == 1 && isCompatible(source))
+                    scaled = source;
+                else
+                    scaled = GuiUtils.getSubImage(source, 0, 0, source.getWidth(), source.getHeight(), scale);
+            }
+            return scaled;
+        }
+
+        void reset() {
+            if (scaled != null && scaled != source)
+                scaled.flush();
+            source = scaled = null;
+            scale = 0;
+        }
+
+        private static boolean isCompatible(BufferedImage img) {
+            return img.getColorModel().equals(
+                GuiUtils.graphicsConfiguration.getColorModel(img.getTransparency()));
+        }
+    }
+
     private class FrameWindowListener extends WindowAdapter
     {
         public void windowClosing(WindowEvent e) {
@@ -714,11 +805,11 @@ final class MainFrame implements ActionListener, ListSelectionListener
     private class SelectItemAction extends AbstractAction
     {
         private JList<String> entityList;
-        private DefaultListModel<String> entityListModel;
+        private EntityListModel entityListModel;
         private List<Action> actionsList;
         private String header, prompt;
 
-        private SelectItemAction(JList<String> entityList, DefaultListModel<String> entityListModel,
+        private SelectItemAction(JList<String> entityList, EntityListModel entityListModel,
                                  String header, String prompt) {
             this.entityList = entityList;
             this.entityListModel = entityListModel;
@@ -734,10 +825,10 @@ final class MainFrame implements ActionListener, ListSelectionListener
 
         public void actionPerformed(ActionEvent e) {
             if (entityListModel != null && !entityListModel.isEmpty()) {
-                int n = entityListModel.size();
+                int n = entityListModel.getSize();
                 List<String> l = new ArrayList<>(n);
                 for (int i = 0; i < n; i++)
-                    l.add(entityListModel.get(i));
+                    l.add(entityListModel.getElementAt(i));
                 int idx = ui.selectItemDialog.showSelectItemDialog(header, prompt, l, entityList.getSelectedIndex());
                 if (idx != -1)
                     entityList.setSelectedIndex(idx);
@@ -0,0 +1,106 @@
+package com.illcode.meterman2.ui;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The UI updates made from the game thread during a turn, collected so that the event dispatch thread can apply
+ * them all at once when the turn ends; see {@link MMUI#flushUpdates()}.
+ * <p/>
+ * Most updates are kept, in order, as commands. Consecutive text appended with the same emphasis is joined into
+ * a single run. The room name, exit labels, and status labels, of which only the last value set matters, are kept
+ * in slots that are applied after the commands. Once a batch has been handed to the event dispatch thread, it is
+ * no longer modified.
+ */
+final class UIBatch implements Runnable
+{
+    private final MMUI ui;
+    private final List<Runnable> commands;
+    private TextRun lastRun;  // the run to which more text may be appended, or null if a command followed it
+
+    private String roomName;
+    private boolean roomNameSet;
+    private final String[] exitLabels;
+    private int exitMask;  // bit n is set if exitLabels[n] has been set
+    private final String[] statusLabels;
+    private int statusMask;
+
+    UIBatch(MMUI ui) {
+        this.ui = ui;
+        commands = new ArrayList<>();
+        exitLabels = new String[UIConstants.NUM_EXIT_BUTTONS];
+        statusLabels = new String[UIConstants.NUM_LABELS];
+    }
+
+    /** Add a command, to be run on the event dispatch thread after those already added. */
+    void add(Runnable command) {
+        commands.add(command);
+        lastRun = null;
+    }
+
+    void appendText(String text, boolean emph) {
+        if (lastRun == null || lastRun.emph != emph) {
+            lastRun = new TextRun(emph);
+            commands.add(lastRun);
+        }
+        lastRun.text.append(text);
+    }
+
+    void setRoomName(String name) {
+        roomName = name;
+        roomNameSet = true;
+    }
+
+    void setExitLabel(int buttonPos, String label) {
+        if (buttonPos < 0 || buttonPos >= UIConstants.NUM_EXIT_BUTTONS)
+            return;
+        exitLabels[buttonPos] = label;
+        exitMask |= 1 << buttonPos;
+    }
+
+    void clearExits() {
+        for (int pos = 0; pos < UIConstants.NUM_EXIT_BUTTONS; pos++)
+            setExitLabel(pos, null);
+    }
+
+    void setStatusLabel(int labelPos, String label) {
+        if (labelPos < 0 || labelPos >= UIConstants.NUM_LABELS)
+            return;
+        statusLabels[labelPos] = label;
+        statusMask |= 1 << labelPos;
+    }
+
+    boolean isEmpty() {
+        return commands.isEmpty() && !roomNameSet && exitMask == 0 && statusMask == 0;
+    }
+
+    /** Apply the batch to the UI. This must be called on the event dispatch thread. */
+    public void run() {
+        if (ui.isDisposed())
+            return;
+        for (Runnable command : commands)
+            command.run();
+        if (roomNameSet)
+            ui.setRoomName(roomName);
+        for (int pos = 0; pos < UIConstants.NUM_EXIT_BUTTONS; pos++)
+            if ((exitMask & (1 << pos)) != 0)
+                ui.setExitLabel(pos, exitLabels[pos]);
+        for (int pos = 0; pos < UIConstants.NUM_LABELS; pos++)
+            if ((statusMask & (1 << pos)) != 0)
+                ui.setStatusLabel(pos, statusLabels[pos]);
+    }
+
+    private final class TextRun implements Runnable
+    {
+        final StringBuilder text = new StringBuilder();
+        final boolean emph;
+
+        TextRun(boolean emph) {
+            this.emph = emph;
+        }
+
+        public void run() {
+            ui.appendText(text.toString(), emph);
+        }
+    }
+}
@@ -8,6 +8,9 @@ import java.util.List;
 
 /**
  * Interface between the UI and the rest of the game system.
+ * <p/>
+ * The UI calls these methods on the event dispatch thread. A handler may carry out commands on another thread
+ * and return at once, but methods that return a value or take a stream must finish before returning.
  */
 public interface UIHandler
 {